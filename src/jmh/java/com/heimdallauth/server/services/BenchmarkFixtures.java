@@ -0,0 +1,91 @@
+package com.heimdallauth.server.services;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heimdallauth.server.configuration.HeimdallBifrostCacheConfiguration;
+import com.heimdallauth.server.models.bifrost.EmailContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Templates and email contexts shared by the benchmarks.
+ */
+final class BenchmarkFixtures {
+    static final int DEEP_VARIABLE_DEPTH = 8;
+    static final int LARGE_TEMPLATE_ITEMS = 200;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private BenchmarkFixtures() {
+    }
+
+    static HeimdallBifrostCacheConfiguration cacheConfiguration(long compiledTemplateMaxSize) {
+        HeimdallBifrostCacheConfiguration cacheConfiguration = new HeimdallBifrostCacheConfiguration();
+        cacheConfiguration.setCompiledTemplateMaxSize(compiledTemplateMaxSize);
+        return cacheConfiguration;
+    }
+
+    static String smallTemplate() {
+        return "Hello {{variables.firstName}}, your verification code is {{variables.code}}.";
+    }
+
+    /**
+     * An order confirmation style HTML body with a table rendered from a list of items.
+     */
+    static String largeTemplate() {
+        StringBuilder template = new StringBuilder("<html><body><h1>Hi {{variables.firstName}} {{variables.lastName}}</h1>");
+        for (int section = 0; section < 20; section++) {
+            template.append("<p>Section ").append(section).append(": thank you for your order with {{variables.company}}.</p>");
+        }
+        template.append("<table>{{#each variables.items}}<tr><td>{{@index}}</td><td>{{name}}</td><td>{{quantity}}</td><td>{{price}}</td></tr>{{/each}}</table>");
+        template.append("{{#if variables.footer}}<footer>{{variables.footer}}</footer>{{/if}}</body></html>");
+        return template.toString();
+    }
+
+    static String deepTemplate() {
+        StringBuilder path = new StringBuilder("variables");
+        for (int level = 1; level <= DEEP_VARIABLE_DEPTH; level++) {
+            path.append(".level").append(level);
+        }
+        return "Deep value: {{" + path + ".value}}, again: {{" + path + ".value}}";
+    }
+
+    static String template(String templateSize) {
+        return switch (templateSize) {
+            case "small" -> smallTemplate();
+            case "large" -> largeTemplate();
+            case "deep" -> deepTemplate();
+            default -> throw new IllegalArgumentException("Unknown template size: " + templateSize);
+        };
+    }
+
+    /**
+     * Build an email context through Jackson, the same way request payloads are bound.
+     */
+    static EmailContext emailContext() {
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("firstName", "Ada");
+        variables.put("lastName", "Lovelace");
+        variables.put("code", "482913");
+        variables.put("company", "Heimdall");
+        variables.put("footer", "You are receiving this email because you have an account with us.");
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int item = 0; item < LARGE_TEMPLATE_ITEMS; item++) {
+            items.add(Map.of("name", "Item " + item, "quantity", item % 5 + 1, "price", "%.2f".formatted(item * 1.25)));
+        }
+        variables.put("items", items);
+        Map<String, Object> deepest = new LinkedHashMap<>(Map.of("value", "found"));
+        for (int level = DEEP_VARIABLE_DEPTH; level >= 1; level--) {
+            deepest = new LinkedHashMap<>(Map.of("level" + level, deepest));
+        }
+        variables.putAll(deepest);
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("user", Map.of("firstName", "Ada", "lastName", "Lovelace", "email", "ada@example.com"));
+        context.put("organizationContext", Map.of("name", "Heimdall"));
+        context.put("variables", variables);
+        return OBJECT_MAPPER.convertValue(context, EmailContext.class);
+    }
+}
@@ -0,0 +1,49 @@
+package com.heimdallauth.server.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering cost of {@link EmailTemplatingService#processString(UUID, String, Map)}, with the compiled template
+ * served from the cache and with a compile on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmailTemplatingServiceBenchmark {
+    @Param({"small", "large", "deep"})
+    public String templateSize;
+
+    private EmailTemplatingService emailTemplatingService;
+    private String template;
+    private Map<String, Object> context;
+    private UUID cachedTemplateId;
+    private long uncachedTemplateSequence;
+
+    @Setup
+    public void setUp() throws IOException {
+        emailTemplatingService = new EmailTemplatingService(new SimpleMeterRegistry(), BenchmarkFixtures.cacheConfiguration(1024));
+        template = BenchmarkFixtures.template(templateSize);
+        context = SendEmailProcessor.convertContextToMap(BenchmarkFixtures.emailContext());
+        cachedTemplateId = UUID.randomUUID();
+        emailTemplatingService.processString(cachedTemplateId, template, context);
+    }
+
+    @Benchmark
+    public String processStringCachedCompile() throws IOException {
+        return emailTemplatingService.processString(cachedTemplateId, template, context);
+    }
+
+    /**
+     * Every call uses a new template ID, so the template is compiled each time.
+     */
+    @Benchmark
+    public String processStringUncachedCompile() throws IOException {
+        return emailTemplatingService.processString(new UUID(0L, ++uncachedTemplateSequence), template, context);
+    }
+}
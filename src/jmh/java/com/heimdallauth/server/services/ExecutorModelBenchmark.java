@@ -0,0 +1,106 @@
+package com.heimdallauth.server.services;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load comparison of the platform and virtual thread modes of {@link TaskExecutorFactory}: bursts of concurrent sends
+ * that each block on a simulated SMTP conversation. Both modes run at the same concurrency, every send of a burst on
+ * its own thread, so the comparison is between the thread models rather than between pool sizes.
+ * Besides the burst throughput, {@link SendCounter} reports the sends per second and {@link ResourceCounters} the live
+ * platform threads and the used heap, sampled while every send of a burst is in flight. Virtual threads keep their
+ * stacks on the heap and platform threads off it, so the two counters are read together; run with {@code -prof gc} for
+ * allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class ExecutorModelBenchmark {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final MemoryMXBean MEMORY_MX_BEAN = ManagementFactory.getMemoryMXBean();
+
+    @Param({"platform", "virtual"})
+    public String threadModel;
+
+    @Param({"200", "2000", "10000"})
+    public int inFlightSends;
+
+    @Param({"20"})
+    public int smtpLatencyMillis;
+
+    private TaskExecutorFactory taskExecutorFactory;
+    private AsyncTaskExecutor sendExecutor;
+
+    /**
+     * The highest values sampled during an iteration, reported as they are.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ResourceCounters {
+        public long peakPlatformThreads;
+        public long peakHeapUsedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakPlatformThreads = 0;
+            peakHeapUsedBytes = 0;
+        }
+    }
+
+    /**
+     * The sends completed during an iteration, reported as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class SendCounter {
+        public long sends;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            sends = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        taskExecutorFactory = new TaskExecutorFactory("virtual".equals(threadModel));
+        sendExecutor = taskExecutorFactory.createExecutor("benchmark-send-", inFlightSends);
+    }
+
+    @TearDown
+    public void tearDown() {
+        taskExecutorFactory.shutdownExecutors();
+    }
+
+    @Benchmark
+    public void sendBurst(ResourceCounters resourceCounters, SendCounter sendCounter) throws InterruptedException {
+        CountDownLatch allInFlight = new CountDownLatch(inFlightSends);
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[inFlightSends];
+        for (int send = 0; send < inFlightSends; send++) {
+            sends[send] = CompletableFuture.runAsync(() -> simulatedSmtpConversation(allInFlight), sendExecutor);
+        }
+        allInFlight.await();
+        resourceCounters.peakPlatformThreads = Math.max(resourceCounters.peakPlatformThreads, THREAD_MX_BEAN.getThreadCount());
+        resourceCounters.peakHeapUsedBytes = Math.max(resourceCounters.peakHeapUsedBytes, MEMORY_MX_BEAN.getHeapMemoryUsage().getUsed());
+        CompletableFuture.allOf(sends).join();
+        sendCounter.sends += inFlightSends;
+    }
+
+    private void simulatedSmtpConversation(CountDownLatch allInFlight) {
+        allInFlight.countDown();
+        try {
+            Thread.sleep(smtpLatencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
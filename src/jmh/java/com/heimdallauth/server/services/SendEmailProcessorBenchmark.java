@@ -0,0 +1,62 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.models.bifrost.EmailContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context conversion and multipart MIME assembly as done by {@link SendEmailProcessor} for every message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SendEmailProcessorBenchmark {
+    private static final String[] RECIPIENTS = {"ada@example.com"};
+    private static final String FROM_ADDRESS = "noreply@example.com";
+
+    private EmailContext emailContext;
+    private JavaMailSenderImpl mailSender;
+    private String subject;
+    private String htmlBody;
+    private String plainTextBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        emailContext = BenchmarkFixtures.emailContext();
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setDefaultEncoding("UTF-8");
+        EmailTemplatingService emailTemplatingService = new EmailTemplatingService(new SimpleMeterRegistry(), BenchmarkFixtures.cacheConfiguration(16));
+        Map<String, Object> context = SendEmailProcessor.convertContextToMap(emailContext);
+        subject = emailTemplatingService.processString(BenchmarkFixtures.smallTemplate(), context);
+        htmlBody = emailTemplatingService.processString(BenchmarkFixtures.largeTemplate(), context);
+        plainTextBody = htmlBody.replaceAll("<[^>]+>", " ");
+    }
+
+    @Benchmark
+    public Map<String, Object> convertContextToMap() {
+        return SendEmailProcessor.convertContextToMap(emailContext);
+    }
+
+    @Benchmark
+    public MimeMessage buildMimeMessage() throws MessagingException {
+        return SendEmailProcessor.buildMimeMessage(mailSender, RECIPIENTS, subject, htmlBody, plainTextBody, FROM_ADDRESS);
+    }
+
+    /**
+     * Assembly followed by serialization, which is where the multipart encoding work is actually done.
+     */
+    @Benchmark
+    public MimeMessage buildAndWriteMimeMessage() throws MessagingException, IOException {
+        MimeMessage mimeMessage = SendEmailProcessor.buildMimeMessage(mailSender, RECIPIENTS, subject, htmlBody, plainTextBody, FROM_ADDRESS);
+        mimeMessage.writeTo(OutputStream.nullOutputStream());
+        return mimeMessage;
+    }
+}
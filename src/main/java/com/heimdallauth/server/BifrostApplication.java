@@ -1,6 +1,18 @@
 package com.heimdallauth.server;
 
+import com.heimdallauth.server.configuration.HeimdallBifrostAuditConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostBulkSendConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostCacheConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostIdempotencyConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostOutboxConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostRateLimitConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostRetryConfiguration;
 import com.heimdallauth.server.configuration.HeimdallBifrostRoleConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostSmtpCircuitBreakerConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostSmtpPoolConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostSuppressionGcConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostSuppressionImportConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostSuppressionSnapshotConfiguration;
 import com.heimdallauth.server.configuration.HeimdallOauth2ClientConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -9,7 +21,19 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 @SpringBootApplication
 @EnableConfigurationProperties({
         HeimdallBifrostRoleConfiguration.class,
-        HeimdallOauth2ClientConfiguration.class
+        HeimdallOauth2ClientConfiguration.class,
+        HeimdallBifrostOutboxConfiguration.class,
+        HeimdallBifrostSmtpPoolConfiguration.class,
+        HeimdallBifrostBulkSendConfiguration.class,
+        HeimdallBifrostCacheConfiguration.class,
+        HeimdallBifrostRateLimitConfiguration.class,
+        HeimdallBifrostRetryConfiguration.class,
+        HeimdallBifrostSmtpCircuitBreakerConfiguration.class,
+        HeimdallBifrostIdempotencyConfiguration.class,
+        HeimdallBifrostSuppressionGcConfiguration.class,
+        HeimdallBifrostSuppressionImportConfiguration.class,
+        HeimdallBifrostSuppressionSnapshotConfiguration.class,
+        HeimdallBifrostAuditConfiguration.class
 })
 public class BifrostApplication {
 
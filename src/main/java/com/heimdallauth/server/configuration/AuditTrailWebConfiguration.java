@@ -0,0 +1,20 @@
+package com.heimdallauth.server.configuration;
+
+import com.heimdallauth.server.services.audit.AuditTrailInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class AuditTrailWebConfiguration implements WebMvcConfigurer {
+    private final AuditTrailInterceptor auditTrailInterceptor;
+
+    public AuditTrailWebConfiguration(AuditTrailInterceptor auditTrailInterceptor) {
+        this.auditTrailInterceptor = auditTrailInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(auditTrailInterceptor).addPathPatterns("/api/**");
+    }
+}
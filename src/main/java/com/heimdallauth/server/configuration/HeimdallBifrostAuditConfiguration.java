@@ -0,0 +1,42 @@
+package com.heimdallauth.server.configuration;
+
+import com.heimdallauth.server.constants.AuditOverflowPolicy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.audit")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostAuditConfiguration {
+    /**
+     * Whether management changes and send requests are recorded in the audit trail.
+     */
+    private boolean enabled = true;
+    /**
+     * Number of audit events buffered in memory before the overflow policy applies. Rounded up to a power of two.
+     */
+    private int bufferCapacity = 65_536;
+    /**
+     * Maximum number of audit events written with one insert.
+     */
+    private int batchSize = 500;
+    /**
+     * Maximum time a buffered audit event waits before its batch is written, even if the batch is not full.
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+    /**
+     * What happens to an audit event when the buffer is full.
+     */
+    private AuditOverflowPolicy overflowPolicy = AuditOverflowPolicy.DROP;
+    /**
+     * How long shutdown waits for the buffered audit events to be written.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
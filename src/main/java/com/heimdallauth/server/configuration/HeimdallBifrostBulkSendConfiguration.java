@@ -0,0 +1,37 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.bulk")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostBulkSendConfiguration {
+    /**
+     * Maximum number of recipients accepted in a single bulk request.
+     */
+    private int maxRecipients = 10000;
+    /**
+     * Number of messages sent over one SMTP connection before it is handed back to the pool.
+     */
+    private int deliveryBatchSize = 50;
+    /**
+     * Number of delivery batches sent in parallel.
+     */
+    private int deliveryConcurrency = 4;
+    /**
+     * Number of threads rendering the messages of bulk requests.
+     */
+    private int renderConcurrency = Runtime.getRuntime().availableProcessors();
+    /**
+     * Time a bulk request may spend rendering and delivering. Recipients not done by then are reported as failed.
+     */
+    private Duration timeout = Duration.ofMinutes(5);
+}
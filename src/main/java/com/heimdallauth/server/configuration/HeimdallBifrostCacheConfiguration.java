@@ -0,0 +1,66 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.cache")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostCacheConfiguration {
+    /**
+     * How long a resolved configuration set is served from the local cache.
+     */
+    private Duration configurationSetTtl = Duration.ofMinutes(30);
+    /**
+     * Maximum number of configuration sets held in the local cache.
+     */
+    private long configurationSetMaxSize = 10000;
+    /**
+     * Templates older than this are reloaded in the background on their next read, while the cached copy is still served.
+     */
+    private Duration templateRefreshAfter = Duration.ofMinutes(5);
+    /**
+     * Templates older than this are no longer served and are loaded synchronously.
+     */
+    private Duration templateTtl = Duration.ofHours(1);
+    /**
+     * Maximum number of templates held in the local cache.
+     */
+    private long templateMaxSize = 10000;
+    /**
+     * Maximum number of compiled Handlebars templates held in memory, one per template field and version.
+     */
+    private long compiledTemplateMaxSize = 10000;
+    /**
+     * Evict local caches from MongoDB change streams so that writes on other nodes are picked up. Requires a replica set.
+     */
+    private boolean changeStreamsEnabled = false;
+    /**
+     * Identity under which this node stores its change stream resume tokens. Must be stable across restarts and unique
+     * per replica, e.g. the pod name of a stateful set, so that a restarted node resumes from its own tokens.
+     */
+    private String changeStreamNodeId = "bifrost";
+    /**
+     * Delay before a failed change stream subscription is opened again.
+     */
+    private Duration changeStreamRetryDelay = Duration.ofSeconds(5);
+    /**
+     * A change stream resume token is stored after this many events, or once the save interval has passed.
+     */
+    private int changeStreamResumeTokenSaveEvents = 100;
+    /**
+     * Longest time a processed change stream resume token stays unsaved while events keep arriving.
+     */
+    private Duration changeStreamResumeTokenSaveInterval = Duration.ofSeconds(10);
+    /**
+     * Stored resume tokens not updated for this long are removed, e.g. those of nodes that crashed.
+     */
+    private Duration changeStreamResumeTokenRetention = Duration.ofDays(7);
+}
@@ -0,0 +1,30 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.idempotency")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostIdempotencyConfiguration {
+    /**
+     * How long the result of a send is remembered for its Idempotency-Key.
+     */
+    private Duration keyTtl = Duration.ofHours(24);
+    /**
+     * How long a key stays reserved by a request that has not completed. A reservation left behind by a crashed node is
+     * taken over by the next request with the same key once it has passed, so it must outlast the slowest send.
+     */
+    private Duration reservationLease = Duration.ofMinutes(2);
+    /**
+     * Maximum number of completed keys kept in the local cache in front of Mongo.
+     */
+    private long localCacheMaxSize = 100_000;
+}
@@ -0,0 +1,81 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import com.heimdallauth.server.constants.SendPriority;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.outbox")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostOutboxConfiguration {
+    /**
+     * When enabled, POST /api/v1/email/send persists the request to the outbox and returns 202.
+     */
+    private boolean enabled = false;
+    /**
+     * Number of outbox messages delivered in parallel by this node, including the workers reserved for the lanes.
+     */
+    private int workerConcurrency = 8;
+    /**
+     * How long a claimed message stays locked before another worker may pick it up again.
+     */
+    private Duration lockTimeout = Duration.ofMinutes(5);
+    /**
+     * How long a sent message is kept so that its status can still be read, e.g. by a client replaying an idempotent send.
+     */
+    private Duration sentRetention = Duration.ofHours(24);
+    /**
+     * How often the queue depth of each lane is read from Mongo for the lane metrics and queue bounds.
+     */
+    private Duration queueDepthRefreshInterval = Duration.ofSeconds(5);
+    /**
+     * Worker reservations and queue bounds per priority lane.
+     */
+    private Map<SendPriority, Lane> lanes = new EnumMap<>(Map.of(
+            SendPriority.TRANSACTIONAL, new Lane(2, 100_000),
+            SendPriority.STANDARD, new Lane(1, 100_000),
+            SendPriority.BULK, new Lane(1, 1_000_000)
+    ));
+
+    /**
+     * Share of the outbox workers given to tenants without their own weight, relative to the other tenants in a lane.
+     */
+    private double defaultTenantWeight = 1.0;
+    /**
+     * Weights keyed by tenant ID. A tenant with weight 2 is served twice as many messages per round as a tenant with weight 1.
+     */
+    private Map<String, Double> tenantWeights = new HashMap<>();
+
+    public Lane getLane(SendPriority priority) {
+        return lanes.getOrDefault(priority, new Lane(0, Long.MAX_VALUE));
+    }
+
+    public double getTenantWeight(String tenantId) {
+        return tenantWeights.getOrDefault(tenantId, defaultTenantWeight);
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Lane {
+        /**
+         * Workers that only this lane may use. Workers that are not reserved are shared, higher lanes first.
+         */
+        private int reservedWorkers;
+        /**
+         * Maximum number of pending messages in the lane, further sends are rejected until the lane drains.
+         */
+        private long maxQueueDepth;
+    }
+}
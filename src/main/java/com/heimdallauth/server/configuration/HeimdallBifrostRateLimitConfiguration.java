@@ -0,0 +1,64 @@
+package com.heimdallauth.server.configuration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.rate-limit")
+@Validated
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostRateLimitConfiguration {
+    /**
+     * Whether sends are rate limited per configuration set.
+     */
+    private boolean enabled = false;
+    /**
+     * Limit applied to configuration sets without their own entry, and to sends through the platform sender.
+     */
+    @Valid
+    @NotNull
+    private Limit defaultLimit = new Limit(50, 100);
+    /**
+     * Limits keyed by configuration set ID.
+     */
+    private Map<String, @Valid Limit> configurationSets = new HashMap<>();
+    /**
+     * Buckets not used for this long are dropped, and start with a full burst on their next use.
+     */
+    private Duration bucketIdleTimeout = Duration.ofMinutes(10);
+
+    public Limit getLimit(String configurationSetId) {
+        return configurationSets.getOrDefault(configurationSetId, defaultLimit);
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Limit {
+        /**
+         * Sustained number of messages per second.
+         */
+        @Positive
+        private double messagesPerSecond;
+        /**
+         * Number of messages that may be sent back to back before the sustained rate applies.
+         */
+        @Min(1)
+        private int burst;
+    }
+}
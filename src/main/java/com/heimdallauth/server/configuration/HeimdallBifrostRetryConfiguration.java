@@ -0,0 +1,42 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.retry")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostRetryConfiguration {
+    /**
+     * Whether transient send failures are retried through the outbox instead of failing the caller.
+     */
+    private boolean enabled = false;
+    /**
+     * How often the outbox is polled for due retries when the outbox itself is disabled.
+     * Retries wait at least the initial backoff, so this can be much longer than the outbox poll interval.
+     */
+    private Duration pollInterval = Duration.ofSeconds(15);
+    /**
+     * Number of delivery attempts, including the first, before a message is moved to the dead-letter collection.
+     */
+    private int maxAttempts = 8;
+    /**
+     * Backoff before the first retry.
+     */
+    private Duration initialBackoff = Duration.ofSeconds(30);
+    /**
+     * Upper bound of the backoff between two attempts.
+     */
+    private Duration maxBackoff = Duration.ofHours(1);
+    /**
+     * Factor the backoff grows by after every attempt.
+     */
+    private double backoffMultiplier = 2.0;
+}
@@ -0,0 +1,36 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.smtp.circuit-breaker")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostSmtpCircuitBreakerConfiguration {
+    /**
+     * Whether sends to an SMTP host fail fast after repeated connection failures.
+     */
+    private boolean enabled = true;
+    /**
+     * Consecutive connection failures after which the circuit of a host opens.
+     */
+    private int failureThreshold = 5;
+    /**
+     * How long the circuit stays open before a trial send is let through.
+     */
+    private Duration openDuration = Duration.ofSeconds(30);
+    /**
+     * IDs of the configuration sets that may send through the platform SMTP server while the circuit of their own host is open.
+     * Kept here rather than on the configuration set, whose model is shared with other Heimdall services.
+     */
+    private Set<String> failoverConfigurationSets = new HashSet<>();
+}
@@ -0,0 +1,66 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.smtp.pool")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostSmtpPoolConfiguration {
+    /**
+     * Pool size used when the SMTP properties do not define a positive connectionLimit.
+     */
+    private int defaultConnectionLimit = 4;
+    /**
+     * Idle connections older than this are closed by the eviction task.
+     */
+    private Duration maxIdleTime = Duration.ofMinutes(2);
+    /**
+     * Idle connections older than this are checked with NOOP before they are reused.
+     */
+    private Duration validateAfterIdle = Duration.ofSeconds(15);
+    /**
+     * How long a send waits for a free connection when the pool is exhausted.
+     */
+    private Duration borrowTimeout = Duration.ofSeconds(30);
+    /**
+     * Timeout for opening the TCP connection to the SMTP server.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    /**
+     * Timeout for reading a reply from the SMTP server.
+     */
+    private Duration readTimeout = Duration.ofSeconds(30);
+    /**
+     * Timeout for writing a command or message to the SMTP server.
+     */
+    private Duration writeTimeout = Duration.ofSeconds(30);
+    /**
+     * Whether the number of parallel sessions per SMTP server adapts to its latency and 421/451 replies,
+     * between minConcurrency and the connectionLimit of the server. When disabled the connectionLimit is used as is.
+     */
+    private boolean adaptiveConcurrencyEnabled = true;
+    /**
+     * Number of parallel sessions a new pool starts with.
+     */
+    private int initialConcurrency = 4;
+    /**
+     * Lower bound of the adaptive concurrency limit.
+     */
+    private int minConcurrency = 1;
+    /**
+     * Factor the concurrency limit is multiplied by after a 421/451 reply or a slow send.
+     */
+    private double concurrencyBackoffRatio = 0.7;
+    /**
+     * A send slower than this multiple of the fastest observed send counts as a sign of overload.
+     */
+    private double latencyTolerance = 3.0;
+}
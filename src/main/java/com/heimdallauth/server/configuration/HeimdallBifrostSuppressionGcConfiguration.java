@@ -0,0 +1,37 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.suppression-gc")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostSuppressionGcConfiguration {
+    /**
+     * Whether suppression entries no configuration set references are deleted periodically.
+     */
+    private boolean enabled = true;
+    /**
+     * Number of suppression entries examined per batch.
+     */
+    private int batchSize = 500;
+    /**
+     * Pause between two batches, so the collection does not compete with send-path queries.
+     */
+    private Duration batchPause = Duration.ofMillis(200);
+    /**
+     * How long a node holds the collection lease without renewing it. The lease is renewed after every batch.
+     */
+    private Duration leaseDuration = Duration.ofMinutes(5);
+    /**
+     * Entries younger than this are never collected, so an entry created just before it is attached to a configuration set survives.
+     */
+    private Duration minimumEntryAge = Duration.ofHours(1);
+}
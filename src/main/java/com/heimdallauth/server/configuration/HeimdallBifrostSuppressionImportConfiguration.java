@@ -0,0 +1,33 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.suppression-import")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostSuppressionImportConfiguration {
+    /**
+     * Number of entries written per unordered bulk insert.
+     */
+    private int batchSize = 1000;
+    /**
+     * Maximum number of row errors recorded on an import job. Further errors are only counted.
+     */
+    private int maxReportedErrors = 1000;
+    /**
+     * Number of imports processed at the same time.
+     */
+    private int concurrentImports = 2;
+    /**
+     * How long import jobs are kept for status queries.
+     */
+    private Duration jobRetention = Duration.ofDays(7);
+}
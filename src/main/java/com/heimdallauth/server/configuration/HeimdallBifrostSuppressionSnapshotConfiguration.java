@@ -0,0 +1,25 @@
+package com.heimdallauth.server.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+@ConfigurationProperties(prefix = "heimdall.bifrost.suppression-snapshot")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HeimdallBifrostSuppressionSnapshotConfiguration {
+    /**
+     * Directory the memory-mapped suppression snapshots are kept in. Snapshots are kept on heap when it is not writable.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "bifrost-suppression-snapshots");
+    /**
+     * Number of entries added or removed since the last snapshot after which the snapshot is rewritten.
+     */
+    private int compactionThreshold = 10_000;
+}
@@ -19,7 +19,7 @@ public class JavaMailSenderConfiguration {
     @Value("${spring.mail.starttls}")
     private boolean starttls;
     @Bean
-    public JavaMailSender javaMailSender() {
+    public JavaMailSender javaMailSender(HeimdallBifrostSmtpPoolConfiguration smtpPoolConfiguration) {
         JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
         javaMailSender.setHost(host);
         javaMailSender.setPort(port);
@@ -27,6 +27,9 @@ public class JavaMailSenderConfiguration {
         javaMailSender.setPassword(password);
         javaMailSender.getJavaMailProperties().put("mail.smtp.starttls.enable", starttls);
         javaMailSender.getJavaMailProperties().put("mail.smtp.auth", true);
+        javaMailSender.getJavaMailProperties().put("mail.smtp.connectiontimeout", smtpPoolConfiguration.getConnectTimeout().toMillis());
+        javaMailSender.getJavaMailProperties().put("mail.smtp.timeout", smtpPoolConfiguration.getReadTimeout().toMillis());
+        javaMailSender.getJavaMailProperties().put("mail.smtp.writetimeout", smtpPoolConfiguration.getWriteTimeout().toMillis());
         return javaMailSender;
     }
 }
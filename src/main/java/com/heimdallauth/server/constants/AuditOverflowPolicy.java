@@ -0,0 +1,15 @@
+package com.heimdallauth.server.constants;
+
+/**
+ * What happens to an audit event when the write-behind buffer is full.
+ */
+public enum AuditOverflowPolicy {
+    /**
+     * Discard the event and count it, so the request is never slowed down by the audit trail.
+     */
+    DROP,
+    /**
+     * Insert the event synchronously on the calling thread, so no event is lost while Mongo keeps up.
+     */
+    WRITE_THROUGH
+}
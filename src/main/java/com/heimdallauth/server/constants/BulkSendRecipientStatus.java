@@ -0,0 +1,7 @@
+package com.heimdallauth.server.constants;
+
+public enum BulkSendRecipientStatus {
+    SENT,
+    FAILED,
+    SUPPRESSED,
+}
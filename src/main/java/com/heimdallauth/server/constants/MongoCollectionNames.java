@@ -5,5 +5,15 @@ public class MongoCollectionNames {
     public static final String EMAILS_TEMPLATE_COLLECTION = "email_templates";
     public static final String SMTP_CONFIGURATION_COLLECTION = "smtp_configurations";
     public static final String SUPPRESSION_LIST_COLLECTION = "suppression_list";
+    public static final String EMAIL_OUTBOX_COLLECTION = "email_outbox";
+    public static final String SMTP_PROPERTIES_COLLECTION = "smtp_properties";
+    public static final String TEMPLATES_COLLECTION = "templates_collection";
+    public static final String CHANGE_STREAM_RESUME_TOKEN_COLLECTION = "change_stream_resume_tokens";
+    public static final String EMAIL_DEAD_LETTER_COLLECTION = "email_dead_letters";
+    public static final String IDEMPOTENCY_KEY_COLLECTION = "idempotency_keys";
+    public static final String SEND_PROFILE_COLLECTION = "send_profiles";
+    public static final String MAINTENANCE_LEASE_COLLECTION = "maintenance_leases";
+    public static final String SUPPRESSION_IMPORT_JOB_COLLECTION = "suppression_import_jobs";
+    public static final String AUDIT_TRAIL_COLLECTION = "audit_trail";
 
 }
@@ -0,0 +1,8 @@
+package com.heimdallauth.server.constants;
+
+public enum OutboxMessageStatus {
+    PENDING,
+    PROCESSING,
+    SENT,
+    DEAD_LETTERED,
+}
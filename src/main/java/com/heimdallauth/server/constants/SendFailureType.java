@@ -0,0 +1,6 @@
+package com.heimdallauth.server.constants;
+
+public enum SendFailureType {
+    TRANSIENT,
+    PERMANENT,
+}
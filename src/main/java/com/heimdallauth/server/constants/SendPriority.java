@@ -0,0 +1,38 @@
+package com.heimdallauth.server.constants;
+
+import java.util.Arrays;
+
+/**
+ * Priority lanes of the outbox, declared from highest to lowest priority.
+ */
+public enum SendPriority {
+    TRANSACTIONAL,
+    STANDARD,
+    BULK;
+
+    /**
+     * Resolve the lane of a send request from its priority header, which names either a lane or the
+     * {@link EmailTemplateAction} the email is sent for.
+     *
+     * @param priority The header value, may be null.
+     * @return The lane, {@link #STANDARD} when no priority is given.
+     * @throws IllegalArgumentException If the value names neither a lane nor a template action.
+     */
+    public static SendPriority fromHeader(String priority) {
+        if (priority == null || priority.isBlank()) {
+            return STANDARD;
+        }
+        String normalizedPriority = priority.trim().toUpperCase();
+        if (Arrays.stream(values()).anyMatch(lane -> lane.name().equals(normalizedPriority))) {
+            return valueOf(normalizedPriority);
+        }
+        return forTemplateAction(EmailTemplateAction.valueOf(normalizedPriority));
+    }
+
+    public static SendPriority forTemplateAction(EmailTemplateAction templateAction) {
+        return switch (templateAction) {
+            case USER_PASSWORD_RESET, USER_EMAIL_VERIFICATION, USER_ACCOUNT_LOCKED -> TRANSACTIONAL;
+            case USER_PROVISIONED, USER_PASSWORD_EXPIRING, USER_PASSWORD_EXPIRED -> STANDARD;
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package com.heimdallauth.server.constants;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Upload formats of the suppression import. CSV rows are {@code value[,entryType[,reason]]} with an optional header row,
+ * NDJSON lines are suppression entry objects.
+ */
+public enum SuppressionImportFormat {
+    CSV,
+    NDJSON;
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    public static SuppressionImportFormat fromContentType(MediaType contentType) {
+        return MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType) ? NDJSON : CSV;
+    }
+}
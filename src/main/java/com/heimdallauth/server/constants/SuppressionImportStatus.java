@@ -0,0 +1,8 @@
+package com.heimdallauth.server.constants;
+
+public enum SuppressionImportStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,58 @@
+package com.heimdallauth.server.controllers.v1.management;
+
+import com.heimdallauth.server.documents.EmailDeadLetterDocument;
+import com.heimdallauth.server.dto.KeysetPage;
+import com.heimdallauth.server.exceptions.DeadLetterNotFound;
+import com.heimdallauth.server.exceptions.InvalidPageCursor;
+import com.heimdallauth.server.services.EmailOutboxService;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/management/dead-letters")
+@Tag(name = "ManagementController", description = "Controller for Managing Configuration for Service")
+public class DeadLetterManagementController {
+    private final EmailOutboxService emailOutboxService;
+
+    @Autowired
+    public DeadLetterManagementController(EmailOutboxService emailOutboxService) {
+        this.emailOutboxService = emailOutboxService;
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_READ)")
+    public ResponseEntity<KeysetPage<EmailDeadLetterDocument>> getDeadLetters(@RequestParam(required = false) String after, @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(this.emailOutboxService.getDeadLetters(after, limit));
+    }
+
+    @GetMapping("/{messageId}")
+    @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_READ)")
+    public ResponseEntity<EmailDeadLetterDocument> getDeadLetterById(@PathVariable UUID messageId) throws DeadLetterNotFound {
+        return ResponseEntity.ok(this.emailOutboxService.getDeadLetter(messageId));
+    }
+
+    @PostMapping("/{messageId}/replay")
+    @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_WRITE)")
+    public ResponseEntity<Void> replayDeadLetter(@PathVariable UUID messageId) throws DeadLetterNotFound {
+        this.emailOutboxService.replayDeadLetter(messageId);
+        return ResponseEntity.accepted().location(ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/v1/email/messages/{messageId}").buildAndExpand(messageId).toUri()).build();
+    }
+
+    @DeleteMapping("/{messageId}")
+    @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_WRITE)")
+    public ResponseEntity<Void> deleteDeadLetter(@PathVariable UUID messageId) {
+        this.emailOutboxService.deleteDeadLetter(messageId);
+        return ResponseEntity.ok().build();
+    }
+
+    @ExceptionHandler(InvalidPageCursor.class)
+    public ResponseEntity<Void> handleInvalidPageCursor(InvalidPageCursor e) {
+        return ResponseEntity.badRequest().build();
+    }
+}
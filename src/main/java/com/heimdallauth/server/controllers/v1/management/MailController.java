@@ -1,30 +1,159 @@
 package com.heimdallauth.server.controllers.v1.management;
 
+import com.heimdallauth.server.configuration.HeimdallBifrostOutboxConfiguration;
+import com.heimdallauth.server.constants.OutboxMessageStatus;
+import com.heimdallauth.server.constants.SendPriority;
+import com.heimdallauth.server.dto.BulkSendEmailDTO;
+import com.heimdallauth.server.dto.BulkSendEmailResponse;
+import com.heimdallauth.server.dto.SendEmailResponse;
 import com.heimdallauth.server.dto.bifrost.SendEmailDTO;
+import com.heimdallauth.server.exceptions.HeimdallBifrostBadDataException;
+import com.heimdallauth.server.exceptions.IdempotencyKeyInProgress;
+import com.heimdallauth.server.exceptions.IdempotencyKeyReused;
+import com.heimdallauth.server.exceptions.OutboxLaneFull;
+import com.heimdallauth.server.exceptions.OutboxMessageNotFound;
+import com.heimdallauth.server.exceptions.SendRateLimitExceeded;
+import com.heimdallauth.server.services.EmailOutboxService;
+import com.heimdallauth.server.services.IdempotencyKeyService;
+import com.heimdallauth.server.services.IdempotencyKeyService.IdempotentSendResult;
 import com.heimdallauth.server.services.SendEmailProcessor;
+import com.heimdallauth.server.services.SendRetryPolicy;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.mail.MessagingException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/email")
 @Tag(name = "Email API", description = "Email API for sending emails")
 public class MailController {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final String PRIORITY_HEADER = "X-Bifrost-Priority";
     private final SendEmailProcessor sendEmailProcessor;
+    private final EmailOutboxService emailOutboxService;
+    private final HeimdallBifrostOutboxConfiguration outboxConfiguration;
+    private final SendRetryPolicy sendRetryPolicy;
+    private final IdempotencyKeyService idempotencyKeyService;
 
-    public MailController(SendEmailProcessor sendEmailProcessor) {
+    public MailController(SendEmailProcessor sendEmailProcessor, EmailOutboxService emailOutboxService, HeimdallBifrostOutboxConfiguration outboxConfiguration, SendRetryPolicy sendRetryPolicy, IdempotencyKeyService idempotencyKeyService) {
         this.sendEmailProcessor = sendEmailProcessor;
+        this.emailOutboxService = emailOutboxService;
+        this.outboxConfiguration = outboxConfiguration;
+        this.sendRetryPolicy = sendRetryPolicy;
+        this.idempotencyKeyService = idempotencyKeyService;
     }
 
     @PostMapping("/send")
     @PreAuthorize("hasAuthority(@heimdallBifrostRoleConfiguration.SCOPE_SEND_EMAIL)")
-    public ResponseEntity<Void> sendEmailWithConfiguration(@RequestBody SendEmailDTO sendEmailDTO) {
-        this.sendEmailProcessor.processSendEmail(sendEmailDTO);
+    public ResponseEntity<SendEmailResponse> sendEmailWithConfiguration(@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey, @RequestHeader(value = PRIORITY_HEADER, required = false) String priority, @RequestBody SendEmailDTO sendEmailDTO, Principal principal) {
+        SendPriority sendPriority;
+        try {
+            sendPriority = SendPriority.fromHeader(priority);
+        } catch (IllegalArgumentException e) {
+            throw new HeimdallBifrostBadDataException("Unknown priority: %s".formatted(priority), e);
+        }
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return sendEmail(sendEmailDTO, sendPriority);
+        }
+        String scopedKey = IdempotencyKeyService.scopedKey(principal != null ? principal.getName() : "anonymous", idempotencyKey);
+        String requestHash = this.idempotencyKeyService.requestHash(sendPriority, sendEmailDTO);
+        Optional<IdempotentSendResult> originalResult = this.idempotencyKeyService.reserve(scopedKey, requestHash);
+        if (originalResult.isPresent()) {
+            ResponseEntity.BodyBuilder replayedResponse = ResponseEntity.status(originalResult.get().httpStatus()).header(IDEMPOTENT_REPLAYED_HEADER, "true");
+            if (originalResult.get().messageId() == null) {
+                return replayedResponse.build();
+            }
+            return replayedResponse.location(messageLocation(originalResult.get().messageId()))
+                    .body(new SendEmailResponse(originalResult.get().messageId(), originalResult.get().status()));
+        }
+        ResponseEntity<SendEmailResponse> response;
+        try {
+            response = sendEmail(sendEmailDTO, sendPriority);
+        } catch (RuntimeException e) {
+            this.idempotencyKeyService.release(scopedKey);
+            throw e;
+        }
+        SendEmailResponse responseBody = response.getBody();
+        this.idempotencyKeyService.complete(scopedKey, requestHash, new IdempotentSendResult(response.getStatusCode().value(), responseBody != null ? responseBody.messageId() : null, responseBody != null ? responseBody.status() : null));
+        return response;
+    }
+
+    private ResponseEntity<SendEmailResponse> sendEmail(SendEmailDTO sendEmailDTO, SendPriority sendPriority) {
+        if (outboxConfiguration.isEnabled()) {
+            return acceptedForDelivery(this.emailOutboxService.enqueue(sendEmailDTO, sendPriority));
+        }
+        try {
+            this.sendEmailProcessor.processSendEmail(sendEmailDTO);
+        } catch (HeimdallBifrostBadDataException e) {
+            if (!sendRetryPolicy.shouldRetry(e, 1)) {
+                throw e;
+            }
+            // The request was valid but the SMTP server was unavailable, hand it to the outbox workers instead of failing it
+            return acceptedForDelivery(this.emailOutboxService.enqueueRetry(sendEmailDTO, sendPriority, e.getMessage(), sendRetryPolicy.nextAttemptAt(1)));
+        }
         return ResponseEntity.ok().build();
     }
+
+    private static ResponseEntity<SendEmailResponse> acceptedForDelivery(UUID messageId) {
+        return ResponseEntity.accepted()
+                .location(messageLocation(messageId))
+                .body(new SendEmailResponse(messageId, OutboxMessageStatus.PENDING));
+    }
+
+    private static URI messageLocation(UUID messageId) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/v1/email/messages/{messageId}").buildAndExpand(messageId).toUri();
+    }
+
+    @PostMapping("/send/bulk")
+    @PreAuthorize("hasAuthority(@heimdallBifrostRoleConfiguration.SCOPE_SEND_EMAIL)")
+    public ResponseEntity<BulkSendEmailResponse> sendBulkEmailWithConfiguration(@RequestBody BulkSendEmailDTO bulkSendEmailDTO) {
+        return ResponseEntity.ok(this.sendEmailProcessor.processBulkSendEmail(bulkSendEmailDTO));
+    }
+
+    @GetMapping("/messages/{messageId}")
+    @PreAuthorize("hasAuthority(@heimdallBifrostRoleConfiguration.SCOPE_SEND_EMAIL)")
+    public ResponseEntity<SendEmailResponse> getQueuedEmailStatus(@PathVariable UUID messageId) throws OutboxMessageNotFound {
+        return ResponseEntity.ok(new SendEmailResponse(messageId, this.emailOutboxService.getMessageStatus(messageId)));
+    }
+
+    @ExceptionHandler(OutboxLaneFull.class)
+    public ResponseEntity<Void> handleOutboxLaneFull(OutboxLaneFull e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(e.getRetryAfter())))
+                .build();
+    }
+
+    @ExceptionHandler(IdempotencyKeyInProgress.class)
+    public ResponseEntity<Void> handleIdempotencyKeyInProgress(IdempotencyKeyInProgress e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @ExceptionHandler(IdempotencyKeyReused.class)
+    public ResponseEntity<Void> handleIdempotencyKeyReused(IdempotencyKeyReused e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build();
+    }
+
+    @ExceptionHandler(SendRateLimitExceeded.class)
+    public ResponseEntity<Void> handleSendRateLimitExceeded(SendRateLimitExceeded e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(e.getRetryAfter())))
+                .build();
+    }
+
+    /**
+     * Retry-After takes whole seconds, round up so that clients do not come back too early.
+     */
+    private static long retryAfterSeconds(Duration retryAfter) {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
 }
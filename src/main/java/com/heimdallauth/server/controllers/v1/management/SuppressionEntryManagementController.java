@@ -1,17 +1,30 @@
 package com.heimdallauth.server.controllers.v1.management;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heimdallauth.server.constants.SuppressionImportFormat;
+import com.heimdallauth.server.documents.SuppressionImportJobDocument;
+import com.heimdallauth.server.dto.KeysetPage;
 import com.heimdallauth.server.dto.bifrost.CreateSuppressionEntryDTO;
+import com.heimdallauth.server.exceptions.ConfigurationSetNotFound;
+import com.heimdallauth.server.exceptions.SuppressionEntryAlreadyExists;
+import com.heimdallauth.server.exceptions.SuppressionImportNotFound;
 import com.heimdallauth.server.exceptions.SuppressionListNotFound;
 import com.heimdallauth.server.models.bifrost.SuppressionEntryModel;
 import com.heimdallauth.server.services.EmailSuppressionManagementService;
+import com.heimdallauth.server.services.SuppressionImportService;
+import com.heimdallauth.server.utils.NdjsonStreamingResponseBody;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.util.List;
+import java.io.IOException;
 import java.util.UUID;
 
 @RestController
@@ -19,16 +32,28 @@ import java.util.UUID;
 @Tag(name = "ManagementController", description = "Controller for Managing Configuration for Service")
 public class SuppressionEntryManagementController {
     private final EmailSuppressionManagementService emailSuppressionManagementService;
+    private final SuppressionImportService suppressionImportService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public SuppressionEntryManagementController(EmailSuppressionManagementService emailSuppressionManagementService) {
+    public SuppressionEntryManagementController(EmailSuppressionManagementService emailSuppressionManagementService, SuppressionImportService suppressionImportService, ObjectMapper objectMapper) {
         this.emailSuppressionManagementService = emailSuppressionManagementService;
+        this.suppressionImportService = suppressionImportService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
     @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_SUPPRESSION_ENTRY_READ)")
-    public ResponseEntity<List<SuppressionEntryModel>> getAllSuppressionEntries() {
-        return ResponseEntity.ok(emailSuppressionManagementService.getAllSuppressionEntries());
+    public ResponseEntity<KeysetPage<SuppressionEntryModel>> getAllSuppressionEntries(@RequestParam(required = false) String after, @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(emailSuppressionManagementService.getSuppressionEntriesPage(after, limit));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_SUPPRESSION_ENTRY_READ)")
+    public ResponseEntity<StreamingResponseBody> streamAllSuppressionEntries() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(NdjsonStreamingResponseBody.of(objectMapper, emailSuppressionManagementService::streamAllSuppressionEntries));
     }
 
     @GetMapping("/{suppressionEntryId}")
@@ -50,4 +75,33 @@ public class SuppressionEntryManagementController {
         this.emailSuppressionManagementService.deleteSuppressionEntryById(suppressionEntryId);
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping(value = "/imports", consumes = {SuppressionImportFormat.TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_SUPPRESSION_ENTRY_WRITE)")
+    public ResponseEntity<SuppressionImportJobDocument> importSuppressionEntries(@RequestParam("configurationSetId") UUID configurationSetId, HttpServletRequest request) throws IOException, ConfigurationSetNotFound {
+        SuppressionImportFormat format = SuppressionImportFormat.fromContentType(MediaType.parseMediaType(request.getContentType()));
+        SuppressionImportJobDocument importJob = this.suppressionImportService.startImport(request.getInputStream(), format, configurationSetId);
+        return ResponseEntity.accepted().location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{importJobId}").buildAndExpand(importJob.getId()).toUri()).body(importJob);
+    }
+
+    @GetMapping("/imports/{importJobId}")
+    @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_SUPPRESSION_ENTRY_READ)")
+    public ResponseEntity<SuppressionImportJobDocument> getSuppressionImport(@PathVariable UUID importJobId) throws SuppressionImportNotFound {
+        return ResponseEntity.ok(this.suppressionImportService.getImportJob(importJobId));
+    }
+
+    @ExceptionHandler(SuppressionEntryAlreadyExists.class)
+    public ResponseEntity<Void> handleSuppressionEntryAlreadyExists(SuppressionEntryAlreadyExists e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @ExceptionHandler(ConfigurationSetNotFound.class)
+    public ResponseEntity<Void> handleConfigurationSetNotFound(ConfigurationSetNotFound e) {
+        return ResponseEntity.notFound().build();
+    }
+
+    @ExceptionHandler(SuppressionImportNotFound.class)
+    public ResponseEntity<Void> handleSuppressionImportNotFound(SuppressionImportNotFound e) {
+        return ResponseEntity.notFound().build();
+    }
 }
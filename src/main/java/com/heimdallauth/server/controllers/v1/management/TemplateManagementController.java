@@ -1,12 +1,17 @@
 package com.heimdallauth.server.controllers.v1.management;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heimdallauth.server.dto.KeysetPage;
 import com.heimdallauth.server.dto.bifrost.CreateEmailTemplateDTO;
 import com.heimdallauth.server.models.bifrost.Template;
 import com.heimdallauth.server.services.TemplateManagementService;
+import com.heimdallauth.server.utils.NdjsonStreamingResponseBody;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.util.List;
@@ -17,9 +22,11 @@ import java.util.UUID;
 @Tag(name = "Template Management", description = "Management of email templates")
 public class TemplateManagementController {
     private final TemplateManagementService templateManagementService;
+    private final ObjectMapper objectMapper;
 
-    public TemplateManagementController(TemplateManagementService templateManagementService) {
+    public TemplateManagementController(TemplateManagementService templateManagementService, ObjectMapper objectMapper) {
         this.templateManagementService = templateManagementService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -30,8 +37,16 @@ public class TemplateManagementController {
 
     @GetMapping("/all")
     @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_EMAIL_TEMPLATE_WRITE_TENANT)")
-    public ResponseEntity<List<Template>> getAllHostedTemplates() {
-        return ResponseEntity.ok(templateManagementService.getAllTemplates());
+    public ResponseEntity<KeysetPage<Template>> getAllHostedTemplates(@RequestParam(required = false) String after, @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(templateManagementService.getTemplatesPage(after, limit));
+    }
+
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole(@heimdallBifrostRoleConfiguration.ROLE_MANAGEMENT_EMAIL_TEMPLATE_WRITE_TENANT)")
+    public ResponseEntity<StreamingResponseBody> streamAllHostedTemplates() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(NdjsonStreamingResponseBody.of(objectMapper, templateManagementService::streamAllTemplates));
     }
 
     @PostMapping("/create")
@@ -1,12 +1,11 @@
 package com.heimdallauth.server.documents;
 
-import com.heimdallauth.server.utils.HeimdallMetadata;
 import lombok.*;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
-import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Builder
@@ -20,8 +19,9 @@ public class AuditTrailDocument {
     private UUID id;
     private UUID transactionId;
     private String auditClassName;
-    private List<HeimdallMetadata> metadata;
-    private Class<?> oldValue;
-    private Class<?> newValue;
+    private String action;
+    private String actor;
+    private int statusCode;
+    private Map<String, String> metadata;
     private Instant updateTimestamp;
 }
@@ -0,0 +1,22 @@
+package com.heimdallauth.server.documents;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ChangeStreamResumeTokenDocument {
+    @Id
+    private String id;
+    private String nodeId;
+    private String collectionName;
+    private String resumeToken;
+    private Instant updatedAt;
+}
@@ -6,14 +6,11 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.SuperBuilder;
 
-import java.util.List;
-
 @SuperBuilder
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
 @Setter
 public class ConfigurationSetAggregationModel extends ConfigurationSetMasterDocument {
-    private List<SuppressionEntryDocument> suppressionEntries;
     private SmtpPropertiesDocument smtpProperties;
 }
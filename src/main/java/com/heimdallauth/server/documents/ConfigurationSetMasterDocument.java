@@ -10,7 +10,6 @@ import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
-import java.util.List;
 
 @Document
 @SuperBuilder
@@ -26,8 +25,6 @@ public class ConfigurationSetMasterDocument {
     private String configurationSetDescription;
     @Indexed
     private String tenantId;
-    @Indexed
-    private List<String> suppressionListIds;
     private String smtpPropertiesId;
     private Instant createdAt;
     private Instant updatedAt;
@@ -0,0 +1,35 @@
+package com.heimdallauth.server.documents;
+
+import com.heimdallauth.server.constants.SendFailureType;
+import com.heimdallauth.server.constants.SendPriority;
+import com.heimdallauth.server.models.bifrost.EmailContent;
+import com.heimdallauth.server.models.bifrost.EmailContext;
+import com.heimdallauth.server.models.bifrost.EmailDestination;
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class EmailDeadLetterDocument {
+    @Id
+    private String id;
+    private String templateId;
+    private String configurationSetId;
+    private String tenantId;
+    private EmailContent content;
+    private EmailDestination destination;
+    private EmailContext context;
+    private SendPriority priority;
+    private int attempts;
+    private String lastError;
+    private SendFailureType failureType;
+    private Instant createdAt;
+    private Instant deadLetteredAt;
+}
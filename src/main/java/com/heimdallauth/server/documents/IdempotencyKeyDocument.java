@@ -0,0 +1,27 @@
+package com.heimdallauth.server.documents;
+
+import com.heimdallauth.server.constants.OutboxMessageStatus;
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Document
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class IdempotencyKeyDocument {
+    @Id
+    private String id;
+    private String requestHash;
+    private boolean completed;
+    private Instant reservedUntil;
+    private int httpStatus;
+    private UUID messageId;
+    private OutboxMessageStatus status;
+    private Instant createdAt;
+}
@@ -0,0 +1,23 @@
+package com.heimdallauth.server.documents;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class MaintenanceLeaseDocument {
+    @Id
+    private String id;
+    private String holder;
+    private Instant leasedUntil;
+    private String checkpoint;
+    private Instant lastCompletedAt;
+    private Instant updatedAt;
+}
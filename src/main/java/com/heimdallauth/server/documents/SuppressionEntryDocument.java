@@ -7,6 +7,7 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
+import java.util.List;
 
 @Document
 @Builder
@@ -19,7 +20,13 @@ public class SuppressionEntryDocument {
     private String id;
     private SuppressionListEntryType entryType;
     private String value;
+    private String normalizedValue;
     private SuppressionReason reason;
+    /**
+     * The configuration sets the entry is attached to. The reference lives on the entry, where it is bounded by the
+     * number of configuration sets, rather than on the configuration set, where it would grow with every import.
+     */
+    private List<String> configurationSetIds;
     private Instant createdAt;
     private Instant updatedAt;
 }
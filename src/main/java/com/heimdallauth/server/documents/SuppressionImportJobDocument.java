@@ -0,0 +1,36 @@
+package com.heimdallauth.server.documents;
+
+import com.heimdallauth.server.constants.SuppressionImportFormat;
+import com.heimdallauth.server.constants.SuppressionImportStatus;
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+@Document
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class SuppressionImportJobDocument {
+    @Id
+    private String id;
+    private SuppressionImportStatus status;
+    private SuppressionImportFormat format;
+    private String configurationSetId;
+    private long processedRows;
+    private long insertedCount;
+    private long duplicateCount;
+    private long failedCount;
+    private List<RowError> errors;
+    private String failureReason;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private Instant completedAt;
+
+    public record RowError(long lineNumber, String message) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.heimdallauth.server.dto;
+
+import com.heimdallauth.server.models.bifrost.EmailContext;
+import com.heimdallauth.server.models.bifrost.EmailDestination;
+
+public record BulkEmailRecipient(
+        EmailDestination destination,
+        EmailContext context
+) {
+}
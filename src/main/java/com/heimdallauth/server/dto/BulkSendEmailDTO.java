@@ -0,0 +1,11 @@
+package com.heimdallauth.server.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public record BulkSendEmailDTO(
+        UUID templateId,
+        UUID configurationSetId,
+        List<BulkEmailRecipient> recipients
+) {
+}
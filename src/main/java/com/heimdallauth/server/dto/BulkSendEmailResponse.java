@@ -0,0 +1,18 @@
+package com.heimdallauth.server.dto;
+
+import com.heimdallauth.server.constants.BulkSendRecipientStatus;
+
+import java.util.List;
+
+public record BulkSendEmailResponse(
+        long sentCount,
+        long failedCount,
+        long suppressedCount,
+        List<BulkSendRecipientResult> results
+) {
+    public static BulkSendEmailResponse of(List<BulkSendRecipientResult> results) {
+        long sentCount = results.stream().filter(result -> result.status() == BulkSendRecipientStatus.SENT).count();
+        long suppressedCount = results.stream().filter(result -> result.status() == BulkSendRecipientStatus.SUPPRESSED).count();
+        return new BulkSendEmailResponse(sentCount, results.size() - sentCount - suppressedCount, suppressedCount, results);
+    }
+}
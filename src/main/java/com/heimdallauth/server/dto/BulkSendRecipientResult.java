@@ -0,0 +1,21 @@
+package com.heimdallauth.server.dto;
+
+import com.heimdallauth.server.constants.BulkSendRecipientStatus;
+
+public record BulkSendRecipientResult(
+        int recipientIndex,
+        BulkSendRecipientStatus status,
+        String error
+) {
+    public static BulkSendRecipientResult sent(int recipientIndex) {
+        return new BulkSendRecipientResult(recipientIndex, BulkSendRecipientStatus.SENT, null);
+    }
+
+    public static BulkSendRecipientResult failed(int recipientIndex, String error) {
+        return new BulkSendRecipientResult(recipientIndex, BulkSendRecipientStatus.FAILED, error);
+    }
+
+    public static BulkSendRecipientResult suppressed(int recipientIndex) {
+        return new BulkSendRecipientResult(recipientIndex, BulkSendRecipientStatus.SUPPRESSED, null);
+    }
+}
@@ -0,0 +1,37 @@
+package com.heimdallauth.server.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a listing in keyset order, by document ID unless the listing says otherwise. The next page is requested
+ * with {@code nextCursor} as the {@code after} parameter, which is null on the last page. Unlike offset pagination,
+ * every page is an index range scan from the cursor.
+ */
+public record KeysetPage<T>(
+        List<T> items,
+        String nextCursor
+) {
+    public static final int MAX_LIMIT = 1000;
+
+    public static int clampLimit(int limit) {
+        return Math.clamp(limit, 1, MAX_LIMIT);
+    }
+
+    /**
+     * Build a page from documents fetched with a limit of one more than the page size, so that a following page
+     * can be detected without a count query.
+     *
+     * @param fetchedDocuments The documents in keyset order, at most {@code pageSize + 1} of them.
+     * @param pageSize         The number of items to return.
+     * @param idExtractor      Extracts the cursor of a document, usually its ID.
+     * @param mapper           Maps a document to the returned item.
+     * @return The page.
+     */
+    public static <D, T> KeysetPage<T> of(List<D> fetchedDocuments, int pageSize, Function<D, String> idExtractor, Function<D, T> mapper) {
+        boolean hasNextPage = fetchedDocuments.size() > pageSize;
+        List<D> pageDocuments = hasNextPage ? fetchedDocuments.subList(0, pageSize) : fetchedDocuments;
+        String nextCursor = hasNextPage ? idExtractor.apply(pageDocuments.getLast()) : null;
+        return new KeysetPage<>(pageDocuments.stream().map(mapper).toList(), nextCursor);
+    }
+}
@@ -0,0 +1,11 @@
+package com.heimdallauth.server.dto;
+
+import com.heimdallauth.server.constants.OutboxMessageStatus;
+
+import java.util.UUID;
+
+public record SendEmailResponse(
+        UUID messageId,
+        OutboxMessageStatus status
+) {
+}
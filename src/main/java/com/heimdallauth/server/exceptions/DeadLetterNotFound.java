@@ -0,0 +1,7 @@
+package com.heimdallauth.server.exceptions;
+
+public class DeadLetterNotFound extends RuntimeException {
+    public DeadLetterNotFound(String message) {
+        super(message);
+    }
+}
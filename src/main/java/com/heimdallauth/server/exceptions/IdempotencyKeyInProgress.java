@@ -0,0 +1,7 @@
+package com.heimdallauth.server.exceptions;
+
+public class IdempotencyKeyInProgress extends RuntimeException {
+    public IdempotencyKeyInProgress(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.heimdallauth.server.exceptions;
+
+public class IdempotencyKeyReused extends RuntimeException {
+    public IdempotencyKeyReused(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.heimdallauth.server.exceptions;
+
+public class InvalidPageCursor extends RuntimeException {
+    public InvalidPageCursor(String message) {
+        super(message);
+    }
+}
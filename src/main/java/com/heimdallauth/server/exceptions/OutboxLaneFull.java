@@ -0,0 +1,15 @@
+package com.heimdallauth.server.exceptions;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public class OutboxLaneFull extends RuntimeException {
+    private final Duration retryAfter;
+
+    public OutboxLaneFull(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
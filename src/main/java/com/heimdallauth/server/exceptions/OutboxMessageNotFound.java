@@ -0,0 +1,7 @@
+package com.heimdallauth.server.exceptions;
+
+public class OutboxMessageNotFound extends RuntimeException {
+    public OutboxMessageNotFound(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.heimdallauth.server.exceptions;
+
+import jakarta.mail.MessagingException;
+
+/**
+ * Raised instead of connecting when the circuit breaker of an SMTP host is open.
+ */
+public class SmtpCircuitOpen extends MessagingException {
+    public SmtpCircuitOpen(String message) {
+        super(message);
+    }
+}
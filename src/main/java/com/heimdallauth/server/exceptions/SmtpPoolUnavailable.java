@@ -0,0 +1,17 @@
+package com.heimdallauth.server.exceptions;
+
+import jakarta.mail.MessagingException;
+
+/**
+ * Raised when no SMTP transport could be borrowed from a pool because the pool is saturated or closed.
+ * It says nothing about the health of the SMTP server, so it does not count against the server's circuit breaker.
+ */
+public class SmtpPoolUnavailable extends MessagingException {
+    public SmtpPoolUnavailable(String message) {
+        super(message);
+    }
+
+    public SmtpPoolUnavailable(String message, Exception cause) {
+        super(message, cause);
+    }
+}
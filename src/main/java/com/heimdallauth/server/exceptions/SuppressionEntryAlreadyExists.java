@@ -0,0 +1,7 @@
+package com.heimdallauth.server.exceptions;
+
+public class SuppressionEntryAlreadyExists extends RuntimeException {
+    public SuppressionEntryAlreadyExists(String message) {
+        super(message);
+    }
+}
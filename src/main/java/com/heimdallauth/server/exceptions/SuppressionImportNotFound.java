@@ -0,0 +1,7 @@
+package com.heimdallauth.server.exceptions;
+
+public class SuppressionImportNotFound extends RuntimeException {
+    public SuppressionImportNotFound(String message) {
+        super(message);
+    }
+}
@@ -22,4 +22,8 @@ public interface ConfigurationSetManagementService {
     ConfigurationSetModel getConfigurationSetByNameAndTenantId(String configurationSetName, String tenantId) throws ConfigurationSetNotFound;
 
     ConfigurationSetModel updateConfigurationSetMasterData(String configurationSetId, String configurationSetName, String configurationSetDescription) throws ConfigurationSetNotFound;
+
+    boolean configurationSetExists(UUID configurationSetId);
+
+    void refreshConfigurationSet(UUID configurationSetId);
 }
@@ -0,0 +1,85 @@
+package com.heimdallauth.server.services;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Deficit round robin over per-tenant sub-queues. Every turn a tenant is credited its weight in messages and may send
+ * as many whole messages as its credit covers; unused credit carries over to its next turn, so a tenant with weight 0.5
+ * sends every other round and a tenant with weight 4 sends four messages per round. A tenant whose queue runs empty
+ * leaves the rotation and loses its credit, so idle tenants cannot save up for a burst.
+ * Not thread-safe, each instance is driven by a single dispatcher thread.
+ */
+class DeficitRoundRobinScheduler {
+    private static final double MIN_WEIGHT = 0.01;
+    private final ToDoubleFunction<String> tenantWeights;
+    private final Deque<String> activeTenants = new ArrayDeque<>();
+    private final Map<String, Double> deficits = new HashMap<>();
+    private boolean headTenantCredited = false;
+
+    DeficitRoundRobinScheduler(ToDoubleFunction<String> tenantWeights) {
+        this.tenantWeights = tenantWeights;
+    }
+
+    /**
+     * Add tenants with due messages to the back of the rotation, tenants already in the rotation keep their position.
+     *
+     * @param backloggedTenants The tenants that currently have due messages.
+     */
+    void activate(Collection<String> backloggedTenants) {
+        for (String tenantId : backloggedTenants) {
+            if (deficits.putIfAbsent(tenantId, 0.0) == null) {
+                activeTenants.addLast(tenantId);
+            }
+        }
+    }
+
+    /**
+     * Dispatch messages in deficit round robin order until no worker is available or every sub-queue is empty.
+     *
+     * @param dispatcher Dispatches the next message of a tenant.
+     * @return The number of dispatched messages.
+     */
+    int drain(TenantDispatcher dispatcher) {
+        int dispatchedMessages = 0;
+        while (!activeTenants.isEmpty()) {
+            String tenantId = activeTenants.peekFirst();
+            double deficit = deficits.get(tenantId);
+            if (!headTenantCredited) {
+                deficit += Math.max(MIN_WEIGHT, tenantWeights.applyAsDouble(tenantId));
+                headTenantCredited = true;
+            }
+            while (deficit >= 1) {
+                DispatchResult result = dispatcher.dispatch(tenantId);
+                if (result == DispatchResult.NO_CAPACITY) {
+                    deficits.put(tenantId, deficit);
+                    return dispatchedMessages;
+                }
+                if (result == DispatchResult.EMPTY) {
+                    break;
+                }
+                deficit -= 1;
+                dispatchedMessages++;
+            }
+            activeTenants.pollFirst();
+            headTenantCredited = false;
+            if (deficit >= 1) {
+                // The loop only leaves with credit to spare when the tenant's queue ran empty
+                deficits.remove(tenantId);
+            } else {
+                deficits.put(tenantId, deficit);
+                activeTenants.addLast(tenantId);
+            }
+        }
+        return dispatchedMessages;
+    }
+
+    enum DispatchResult {
+        DISPATCHED, EMPTY, NO_CAPACITY
+    }
+
+    @FunctionalInterface
+    interface TenantDispatcher {
+        DispatchResult dispatch(String tenantId);
+    }
+}
@@ -0,0 +1,153 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostOutboxConfiguration;
+import com.heimdallauth.server.constants.SendPriority;
+import com.heimdallauth.server.documents.EmailOutboxDocument;
+import com.heimdallauth.server.exceptions.SendRateLimitExceeded;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Component
+@Slf4j
+public class EmailOutboxDispatcher {
+    private final EmailOutboxService emailOutboxService;
+    private final SendEmailProcessor sendEmailProcessor;
+    private final HeimdallBifrostOutboxConfiguration outboxConfiguration;
+    private final SendRetryPolicy sendRetryPolicy;
+    private final OutboxPriorityLanes outboxPriorityLanes;
+    private final SendPipelineMetrics sendPipelineMetrics;
+    private final Map<SendPriority, DeficitRoundRobinScheduler> tenantSchedulers = new EnumMap<>(SendPriority.class);
+    private final AsyncTaskExecutor outboxWorkerExecutor;
+    private final String workerId = UUID.randomUUID().toString();
+    private long nextRetryDrainNanos = System.nanoTime();
+
+    public EmailOutboxDispatcher(EmailOutboxService emailOutboxService, SendEmailProcessor sendEmailProcessor, HeimdallBifrostOutboxConfiguration outboxConfiguration, SendRetryPolicy sendRetryPolicy, OutboxPriorityLanes outboxPriorityLanes, SendPipelineMetrics sendPipelineMetrics, TaskExecutorFactory taskExecutorFactory) {
+        this.emailOutboxService = emailOutboxService;
+        this.sendEmailProcessor = sendEmailProcessor;
+        this.outboxConfiguration = outboxConfiguration;
+        this.sendRetryPolicy = sendRetryPolicy;
+        this.outboxPriorityLanes = outboxPriorityLanes;
+        this.sendPipelineMetrics = sendPipelineMetrics;
+        for (SendPriority lane : SendPriority.values()) {
+            this.tenantSchedulers.put(lane, new DeficitRoundRobinScheduler(outboxConfiguration::getTenantWeight));
+        }
+        // Workers are handed out by the lanes, so the queue only absorbs tasks whose worker was released before their thread finished
+        this.outboxWorkerExecutor = taskExecutorFactory.createExecutor("bifrost-outbox-", outboxPriorityLanes.totalWorkers(), outboxPriorityLanes.totalWorkers());
+    }
+
+    /**
+     * Drain due outbox messages into the worker pool lane by lane, highest priority first, claiming at most as many
+     * messages as the lane has workers available. Within a lane tenants are served in weighted deficit round robin
+     * order, so a burst from one tenant does not delay the mail of the others. With the outbox disabled the workers
+     * still drain retries of failed synchronous sends, polling only every retry poll interval.
+     */
+    @Scheduled(fixedDelayString = "${heimdall.bifrost.outbox.poll-interval:PT1S}")
+    void drainOutbox() {
+        if (!outboxConfiguration.isEnabled() && !isRetryDrainDue()) {
+            return;
+        }
+        for (SendPriority lane : SendPriority.values()) {
+            if (!drainLane(lane)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if the worker pool rejected a message and draining should stop until the next poll.
+     */
+    private boolean drainLane(SendPriority lane) {
+        if (!outboxPriorityLanes.hasAvailableWorker(lane)) {
+            return true;
+        }
+        DeficitRoundRobinScheduler tenantScheduler = tenantSchedulers.get(lane);
+        tenantScheduler.activate(this.emailOutboxService.findTenantsWithDueMessages(lane));
+        AtomicBoolean rejected = new AtomicBoolean(false);
+        tenantScheduler.drain(tenantId -> {
+            if (!outboxPriorityLanes.tryAcquireWorker(lane)) {
+                return DeficitRoundRobinScheduler.DispatchResult.NO_CAPACITY;
+            }
+            Optional<EmailOutboxDocument> claimedMessage = this.emailOutboxService.claimNextMessage(workerId, lane, tenantId);
+            if (claimedMessage.isEmpty()) {
+                outboxPriorityLanes.releaseWorker(lane);
+                return DeficitRoundRobinScheduler.DispatchResult.EMPTY;
+            }
+            outboxPriorityLanes.recordWait(lane, Duration.between(claimedMessage.get().getNextAttemptAt(), Instant.now()));
+            try {
+                this.outboxWorkerExecutor.execute(() -> deliver(claimedMessage.get(), lane));
+                return DeficitRoundRobinScheduler.DispatchResult.DISPATCHED;
+            } catch (TaskRejectedException e) {
+                log.warn("Outbox worker pool rejected message ID: {}, it will be picked up after the lock expires", claimedMessage.get().getId());
+                outboxPriorityLanes.releaseWorker(lane);
+                rejected.set(true);
+                return DeficitRoundRobinScheduler.DispatchResult.NO_CAPACITY;
+            }
+        });
+        return !rejected.get();
+    }
+
+    @Scheduled(fixedDelayString = "${heimdall.bifrost.outbox.queue-depth-refresh-interval:PT5S}")
+    void refreshQueueDepths() {
+        if (!outboxConfiguration.isEnabled()) {
+            return;
+        }
+        for (SendPriority lane : SendPriority.values()) {
+            outboxPriorityLanes.updateQueueDepth(lane, this.emailOutboxService.countPendingMessages(lane));
+        }
+    }
+
+    /**
+     * Only called from the scheduled drain, which never overlaps itself.
+     */
+    private boolean isRetryDrainDue() {
+        if (!sendRetryPolicy.isEnabled()) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - nextRetryDrainNanos < 0) {
+            return false;
+        }
+        nextRetryDrainNanos = now + sendRetryPolicy.pollInterval().toNanos();
+        return true;
+    }
+
+    private void deliver(EmailOutboxDocument outboxMessage, SendPriority lane) {
+        try {
+            this.sendEmailProcessor.processSendEmail(
+                    outboxMessage.getTemplateId() != null ? UUID.fromString(outboxMessage.getTemplateId()) : null,
+                    outboxMessage.getConfigurationSetId() != null ? UUID.fromString(outboxMessage.getConfigurationSetId()) : null,
+                    outboxMessage.getContent(),
+                    outboxMessage.getDestination(),
+                    outboxMessage.getContext()
+            );
+            this.emailOutboxService.markSent(outboxMessage.getId());
+            this.sendPipelineMetrics.recordQueueLatency(outboxMessage.getTenantId(), Duration.between(outboxMessage.getCreatedAt(), Instant.now()));
+            log.debug("Delivered outbox message ID: {}", outboxMessage.getId());
+        } catch (SendRateLimitExceeded e) {
+            log.debug("Rate limited outbox message ID: {}, retrying after {} ms", outboxMessage.getId(), e.getRetryAfter().toMillis());
+            this.emailOutboxService.defer(outboxMessage.getId(), lane, e.getRetryAfter());
+        } catch (RuntimeException e) {
+            if (this.sendRetryPolicy.shouldRetry(e, outboxMessage.getAttempts())) {
+                Instant nextAttemptAt = this.sendRetryPolicy.nextAttemptAt(outboxMessage.getAttempts());
+                log.warn("Transient failure delivering outbox message ID: {} on attempt {}, retrying at {}, error: {}", outboxMessage.getId(), outboxMessage.getAttempts(), nextAttemptAt, e.getMessage());
+                this.emailOutboxService.scheduleRetry(outboxMessage.getId(), lane, e.getMessage(), nextAttemptAt);
+            } else {
+                log.error("Failed to deliver outbox message ID: {} after {} attempts, error: {}", outboxMessage.getId(), outboxMessage.getAttempts(), e.getMessage());
+                this.emailOutboxService.deadLetter(outboxMessage, e.getMessage(), SendRetryPolicy.classify(e));
+            }
+        } finally {
+            outboxPriorityLanes.releaseWorker(lane);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostOutboxConfiguration;
+import com.heimdallauth.server.constants.OutboxMessageStatus;
+import com.heimdallauth.server.constants.SendFailureType;
+import com.heimdallauth.server.constants.SendPriority;
+import com.heimdallauth.server.documents.EmailDeadLetterDocument;
+import com.heimdallauth.server.documents.EmailOutboxDocument;
+import com.heimdallauth.server.dto.KeysetPage;
+import com.heimdallauth.server.dto.bifrost.SendEmailDTO;
+import com.heimdallauth.server.exceptions.ConfigurationSetNotFound;
+import com.heimdallauth.server.exceptions.DeadLetterNotFound;
+import com.heimdallauth.server.exceptions.HeimdallBifrostBadDataException;
+import com.heimdallauth.server.exceptions.InvalidPageCursor;
+import com.heimdallauth.server.exceptions.OutboxLaneFull;
+import com.heimdallauth.server.exceptions.OutboxMessageNotFound;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReplaceOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.EMAIL_DEAD_LETTER_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.EMAIL_OUTBOX_COLLECTION;
+
+@Service
+@Slf4j
+public class EmailOutboxService {
+    /**
+     * Tenant of messages sent with inline content through the platform sender, and of messages queued before tenants were recorded.
+     */
+    public static final String PLATFORM_TENANT = "platform";
+    private static final String DEAD_LETTER_CURSOR_SEPARATOR = "_";
+    private final MongoTemplate mongoTemplate;
+    private final SendEmailProcessor sendEmailProcessor;
+    private final HeimdallBifrostOutboxConfiguration outboxConfiguration;
+    private final OutboxPriorityLanes outboxPriorityLanes;
+    private final ConfigurationSetManagementService configurationSetManagementService;
+
+    public EmailOutboxService(MongoTemplate mongoTemplate, SendEmailProcessor sendEmailProcessor, HeimdallBifrostOutboxConfiguration outboxConfiguration, OutboxPriorityLanes outboxPriorityLanes, ConfigurationSetManagementService configurationSetManagementService) {
+        this.mongoTemplate = mongoTemplate;
+        this.sendEmailProcessor = sendEmailProcessor;
+        this.outboxConfiguration = outboxConfiguration;
+        this.outboxPriorityLanes = outboxPriorityLanes;
+        this.configurationSetManagementService = configurationSetManagementService;
+    }
+
+    /**
+     * Validate the send request and persist it to the outbox for asynchronous delivery.
+     *
+     * @param sendEmailDTO The send request to queue.
+     * @param priority     The lane the message is queued in.
+     * @return The ID of the queued message.
+     * @throws OutboxLaneFull If the lane has reached its maximum queue depth.
+     */
+    public UUID enqueue(SendEmailDTO sendEmailDTO, SendPriority priority) throws OutboxLaneFull {
+        this.sendEmailProcessor.validateSendEmail(sendEmailDTO);
+        if (!outboxPriorityLanes.tryReserveQueueSlot(priority)) {
+            throw new OutboxLaneFull("The %s outbox lane is full".formatted(priority), outboxConfiguration.getQueueDepthRefreshInterval());
+        }
+        try {
+            Instant now = Instant.now();
+            EmailOutboxDocument outboxDocument = buildOutboxDocument(sendEmailDTO, priority, now)
+                    .attempts(0)
+                    .nextAttemptAt(now)
+                    .build();
+            this.mongoTemplate.insert(outboxDocument, EMAIL_OUTBOX_COLLECTION);
+            log.debug("Queued email with message ID: {}", outboxDocument.getId());
+            return UUID.fromString(outboxDocument.getId());
+        } catch (RuntimeException e) {
+            outboxPriorityLanes.onMessageDequeued(priority);
+            throw e;
+        }
+    }
+
+    /**
+     * Persist a request whose synchronous send failed transiently, so that the outbox workers retry it.
+     *
+     * @param sendEmailDTO  The send request that failed.
+     * @param priority      The lane the message is queued in.
+     * @param error         The error of the failed attempt.
+     * @param nextAttemptAt When the next attempt is due.
+     * @return The ID of the queued message.
+     */
+    public UUID enqueueRetry(SendEmailDTO sendEmailDTO, SendPriority priority, String error, Instant nextAttemptAt) {
+        EmailOutboxDocument outboxDocument = buildOutboxDocument(sendEmailDTO, priority, Instant.now())
+                .attempts(1)
+                .lastError(error)
+                .nextAttemptAt(nextAttemptAt)
+                .build();
+        this.mongoTemplate.insert(outboxDocument, EMAIL_OUTBOX_COLLECTION);
+        outboxPriorityLanes.onMessageQueued(priority);
+        log.debug("Queued retry of failed email with message ID: {} for {}", outboxDocument.getId(), nextAttemptAt);
+        return UUID.fromString(outboxDocument.getId());
+    }
+
+    private EmailOutboxDocument.EmailOutboxDocumentBuilder buildOutboxDocument(SendEmailDTO sendEmailDTO, SendPriority priority, Instant now) {
+        return EmailOutboxDocument.builder()
+                .id(UUID.randomUUID().toString())
+                .templateId(Objects.toString(sendEmailDTO.templateId(), null))
+                .configurationSetId(Objects.toString(sendEmailDTO.configurationSetId(), null))
+                .content(sendEmailDTO.content())
+                .destination(sendEmailDTO.destination())
+                .context(sendEmailDTO.context())
+                .tenantId(resolveTenantId(sendEmailDTO))
+                .priority(priority)
+                .status(OutboxMessageStatus.PENDING)
+                .createdAt(now)
+                .updatedAt(now);
+    }
+
+    /**
+     * The tenant a message is queued for is the tenant of its configuration set, so that it can be scheduled fairly
+     * against other tenants without loading the configuration set again.
+     */
+    private String resolveTenantId(SendEmailDTO sendEmailDTO) {
+        if (sendEmailDTO.content() != null || sendEmailDTO.configurationSetId() == null) {
+            return PLATFORM_TENANT;
+        }
+        try {
+            return this.configurationSetManagementService.getConfigurationSetById(sendEmailDTO.configurationSetId()).tenantId().toString();
+        } catch (ConfigurationSetNotFound e) {
+            throw new HeimdallBifrostBadDataException("ConfigurationSet not found", e);
+        }
+    }
+
+    /**
+     * Find the tenants that have messages due for delivery in a lane.
+     *
+     * @param priority The lane to look in.
+     * @return The IDs of the tenants with due messages.
+     */
+    public List<String> findTenantsWithDueMessages(SendPriority priority) {
+        Instant now = Instant.now();
+        List<String> tenantIds = new ArrayList<>(this.mongoTemplate.findDistinct(Query.query(dueCriteria(priority, now)), "tenantId", EMAIL_OUTBOX_COLLECTION, EmailOutboxDocument.class, String.class));
+        boolean hasUntenantedMessages = tenantIds.removeIf(Objects::isNull);
+        if (!tenantIds.contains(PLATFORM_TENANT) && (hasUntenantedMessages || hasDueMessagesWithoutTenant(priority, now))) {
+            // Messages without a tenant are claimed under the platform tenant
+            tenantIds.add(PLATFORM_TENANT);
+        }
+        return tenantIds;
+    }
+
+    /**
+     * distinct skips documents without the field, so messages queued before tenants were recorded are looked for separately.
+     */
+    private boolean hasDueMessagesWithoutTenant(SendPriority priority, Instant now) {
+        return this.mongoTemplate.exists(Query.query(new Criteria().andOperator(dueCriteria(priority, now), Criteria.where("tenantId").exists(false))), EmailOutboxDocument.class, EMAIL_OUTBOX_COLLECTION);
+    }
+
+    /**
+     * Atomically claim the next message of a tenant that is due for delivery. Messages whose lock has expired
+     * (e.g. because the claiming node died) are claimed again.
+     *
+     * @param workerId The ID of the claiming worker.
+     * @param priority The lane to claim from.
+     * @param tenantId The tenant to claim for.
+     * @return The claimed message, or empty if nothing is due.
+     */
+    public Optional<EmailOutboxDocument> claimNextMessage(String workerId, SendPriority priority, String tenantId) {
+        Instant now = Instant.now();
+        Criteria tenantCriteria = PLATFORM_TENANT.equals(tenantId) ? Criteria.where("tenantId").in(tenantId, null) : Criteria.where("tenantId").is(tenantId);
+        Query claimQuery = Query.query(new Criteria().andOperator(dueCriteria(priority, now), tenantCriteria))
+                .with(Sort.by(Sort.Direction.ASC, "nextAttemptAt"));
+        Update claimUpdate = new Update()
+                .set("status", OutboxMessageStatus.PROCESSING)
+                .set("lockedBy", workerId)
+                .set("lockedUntil", now.plus(outboxConfiguration.getLockTimeout()))
+                .set("updatedAt", now)
+                .inc("attempts", 1);
+        Optional<EmailOutboxDocument> claimedMessage = Optional.ofNullable(this.mongoTemplate.findAndModify(claimQuery, claimUpdate, FindAndModifyOptions.options().returnNew(true), EmailOutboxDocument.class, EMAIL_OUTBOX_COLLECTION));
+        claimedMessage.ifPresent(message -> outboxPriorityLanes.onMessageDequeued(priority));
+        return claimedMessage;
+    }
+
+    /**
+     * Count the pending messages of a lane, including those scheduled for a later retry.
+     *
+     * @param priority The lane to count.
+     * @return The number of pending messages.
+     */
+    public long countPendingMessages(SendPriority priority) {
+        return this.mongoTemplate.count(Query.query(new Criteria().andOperator(laneCriteria(priority), Criteria.where("status").is(OutboxMessageStatus.PENDING))), EmailOutboxDocument.class, EMAIL_OUTBOX_COLLECTION);
+    }
+
+    private static Criteria dueCriteria(SendPriority priority, Instant now) {
+        return new Criteria().andOperator(
+                laneCriteria(priority),
+                new Criteria().orOperator(
+                        Criteria.where("status").is(OutboxMessageStatus.PENDING).and("nextAttemptAt").lte(now),
+                        Criteria.where("status").is(OutboxMessageStatus.PROCESSING).and("lockedUntil").lte(now)
+                )
+        );
+    }
+
+    /**
+     * The lane of a stored message, see {@link #laneCriteria(SendPriority)}.
+     */
+    private static SendPriority laneOf(SendPriority priority) {
+        return priority != null ? priority : SendPriority.STANDARD;
+    }
+
+    /**
+     * Messages queued before priority lanes existed have no priority and belong to the standard lane.
+     */
+    private static Criteria laneCriteria(SendPriority priority) {
+        return priority == SendPriority.STANDARD ? Criteria.where("priority").in(priority, null) : Criteria.where("priority").is(priority);
+    }
+
+    /**
+     * Mark a message as sent. Its content is dropped right away, the status is kept until the TTL index on
+     * {@code sentAt} removes the message after the sent retention.
+     *
+     * @param messageId The ID of the message.
+     */
+    public void markSent(String messageId) {
+        Instant now = Instant.now();
+        Update update = new Update()
+                .set("status", OutboxMessageStatus.SENT)
+                .set("updatedAt", now)
+                .set("sentAt", now)
+                .unset("lockedBy")
+                .unset("lockedUntil")
+                .unset("lastError")
+                .unset("content")
+                .unset("context");
+        this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(messageId)), update, EmailOutboxDocument.class, EMAIL_OUTBOX_COLLECTION);
+    }
+
+    /**
+     * Put a claimed message back in the queue without counting the attempt, e.g. when it was rate limited.
+     *
+     * @param messageId The ID of the message.
+     * @param priority  The lane of the message.
+     * @param delay     How long to wait before the message is claimed again.
+     */
+    public void defer(String messageId, SendPriority priority, Duration delay) {
+        Instant now = Instant.now();
+        Update update = new Update()
+                .set("status", OutboxMessageStatus.PENDING)
+                .set("nextAttemptAt", now.plus(delay))
+                .set("updatedAt", now)
+                .inc("attempts", -1)
+                .unset("lockedBy")
+                .unset("lockedUntil");
+        this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(messageId)), update, EmailOutboxDocument.class, EMAIL_OUTBOX_COLLECTION);
+        outboxPriorityLanes.onMessageQueued(priority);
+    }
+
+    /**
+     * Put a claimed message back in the queue after a transient failure.
+     *
+     * @param messageId     The ID of the message.
+     * @param priority      The lane of the message.
+     * @param error         The error of the failed attempt.
+     * @param nextAttemptAt When the next attempt is due.
+     */
+    public void scheduleRetry(String messageId, SendPriority priority, String error, Instant nextAttemptAt) {
+        Update update = new Update()
+                .set("status", OutboxMessageStatus.PENDING)
+                .set("nextAttemptAt", nextAttemptAt)
+                .set("updatedAt", Instant.now())
+                .set("lastError", error)
+                .unset("lockedBy")
+                .unset("lockedUntil");
+        this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(messageId)), update, EmailOutboxDocument.class, EMAIL_OUTBOX_COLLECTION);
+        outboxPriorityLanes.onMessageQueued(priority);
+    }
+
+    /**
+     * Move a message that failed permanently or ran out of attempts to the dead-letter collection.
+     * The dead letter is upserted by the message ID before the outbox entry is removed, so a move interrupted between
+     * the two writes can simply be repeated.
+     *
+     * @param outboxMessage The claimed message.
+     * @param error         The error of the last attempt.
+     * @param failureType   Whether the last failure was transient or permanent.
+     */
+    public void deadLetter(EmailOutboxDocument outboxMessage, String error, SendFailureType failureType) {
+        EmailDeadLetterDocument deadLetterDocument = EmailDeadLetterDocument.builder()
+                .id(outboxMessage.getId())
+                .templateId(outboxMessage.getTemplateId())
+                .configurationSetId(outboxMessage.getConfigurationSetId())
+                .tenantId(outboxMessage.getTenantId())
+                .content(outboxMessage.getContent())
+                .destination(outboxMessage.getDestination())
+                .context(outboxMessage.getContext())
+                .priority(outboxMessage.getPriority())
+                .attempts(outboxMessage.getAttempts())
+                .lastError(error)
+                .failureType(failureType)
+                .createdAt(outboxMessage.getCreatedAt())
+                .deadLetteredAt(Instant.now())
+                .build();
+        this.mongoTemplate.replace(Query.query(Criteria.where("_id").is(outboxMessage.getId())), deadLetterDocument, ReplaceOptions.replaceOptions().upsert(), EMAIL_DEAD_LETTER_COLLECTION);
+        this.mongoTemplate.remove(Query.query(Criteria.where("_id").is(outboxMessage.getId())), EmailOutboxDocument.class, EMAIL_OUTBOX_COLLECTION);
+        log.debug("Moved message ID: {} to the dead-letter collection after {} attempts", outboxMessage.getId(), outboxMessage.getAttempts());
+    }
+
+    /**
+     * List dead-lettered messages, most recent first. Pages are keyset ranges on ({@code deadLetteredAt}, {@code _id}),
+     * so the cursor holds the dead-letter time in epoch milliseconds and the ID of the last message of the previous page.
+     *
+     * @param afterCursor The cursor returned with the previous page, or null for the first page.
+     * @param limit       The page size, clamped to {@link KeysetPage#MAX_LIMIT}.
+     * @return The page of dead-lettered messages.
+     * @throws InvalidPageCursor If the cursor was not returned with an earlier page.
+     */
+    public KeysetPage<EmailDeadLetterDocument> getDeadLetters(String afterCursor, int limit) {
+        int pageSize = KeysetPage.clampLimit(limit);
+        Query pageQuery = new Query().with(Sort.by(Sort.Direction.DESC, "deadLetteredAt", "_id")).limit(pageSize + 1);
+        if (afterCursor != null && !afterCursor.isBlank()) {
+            int separator = afterCursor.indexOf(DEAD_LETTER_CURSOR_SEPARATOR);
+            Instant afterDeadLetteredAt;
+            try {
+                afterDeadLetteredAt = Instant.ofEpochMilli(Long.parseLong(afterCursor.substring(0, Math.max(separator, 0))));
+            } catch (NumberFormatException e) {
+                throw new InvalidPageCursor("Malformed dead letter cursor");
+            }
+            String afterMessageId = afterCursor.substring(separator + 1);
+            pageQuery.addCriteria(new Criteria().orOperator(
+                    Criteria.where("deadLetteredAt").lt(afterDeadLetteredAt),
+                    Criteria.where("deadLetteredAt").is(afterDeadLetteredAt).and("_id").lt(afterMessageId)));
+        }
+        List<EmailDeadLetterDocument> fetchedDeadLetters = this.mongoTemplate.find(pageQuery, EmailDeadLetterDocument.class, EMAIL_DEAD_LETTER_COLLECTION);
+        return KeysetPage.of(fetchedDeadLetters, pageSize, EmailOutboxService::deadLetterCursor, Function.identity());
+    }
+
+    private static String deadLetterCursor(EmailDeadLetterDocument deadLetter) {
+        return deadLetter.getDeadLetteredAt().toEpochMilli() + DEAD_LETTER_CURSOR_SEPARATOR + deadLetter.getId();
+    }
+
+    public EmailDeadLetterDocument getDeadLetter(UUID messageId) throws DeadLetterNotFound {
+        return Optional.ofNullable(this.mongoTemplate.findById(messageId.toString(), EmailDeadLetterDocument.class, EMAIL_DEAD_LETTER_COLLECTION))
+                .orElseThrow(() -> new DeadLetterNotFound("Dead-lettered message not found"));
+    }
+
+    /**
+     * Move a dead-lettered message back to the outbox with a fresh set of attempts.
+     * If the message is already in the outbox, e.g. from an earlier replay that did not get to remove the dead letter,
+     * the queued message is left alone and only the dead letter is removed.
+     *
+     * @param messageId The ID of the dead-lettered message.
+     * @throws DeadLetterNotFound If no dead-lettered message exists for the given ID.
+     */
+    public void replayDeadLetter(UUID messageId) throws DeadLetterNotFound {
+        EmailDeadLetterDocument deadLetterDocument = getDeadLetter(messageId);
+        Instant now = Instant.now();
+        EmailOutboxDocument outboxDocument = EmailOutboxDocument.builder()
+                .id(deadLetterDocument.getId())
+                .templateId(deadLetterDocument.getTemplateId())
+                .configurationSetId(deadLetterDocument.getConfigurationSetId())
+                .tenantId(deadLetterDocument.getTenantId())
+                .content(deadLetterDocument.getContent())
+                .destination(deadLetterDocument.getDestination())
+                .context(deadLetterDocument.getContext())
+                .priority(deadLetterDocument.getPriority())
+                .status(OutboxMessageStatus.PENDING)
+                .attempts(0)
+                .lastError(deadLetterDocument.getLastError())
+                .nextAttemptAt(now)
+                .createdAt(deadLetterDocument.getCreatedAt())
+                .updatedAt(now)
+                .build();
+        try {
+            this.mongoTemplate.insert(outboxDocument, EMAIL_OUTBOX_COLLECTION);
+            outboxPriorityLanes.onMessageQueued(laneOf(deadLetterDocument.getPriority()));
+            log.debug("Replayed dead-lettered message ID: {}", messageId);
+        } catch (DuplicateKeyException e) {
+            log.debug("Dead-lettered message ID: {} is already in the outbox, removing the dead letter", messageId);
+        }
+        this.mongoTemplate.remove(Query.query(Criteria.where("_id").is(deadLetterDocument.getId())), EmailDeadLetterDocument.class, EMAIL_DEAD_LETTER_COLLECTION);
+    }
+
+    public void deleteDeadLetter(UUID messageId) {
+        this.mongoTemplate.remove(Query.query(Criteria.where("_id").is(messageId.toString())), EmailDeadLetterDocument.class, EMAIL_DEAD_LETTER_COLLECTION);
+    }
+
+    /**
+     * Get a queued message by its ID.
+     *
+     * @param messageId The ID of the message.
+     * @return The outbox document.
+     * @throws OutboxMessageNotFound If no message exists for the given ID.
+     */
+    public EmailOutboxDocument getOutboxMessage(UUID messageId) throws OutboxMessageNotFound {
+        return Optional.ofNullable(this.mongoTemplate.findById(messageId.toString(), EmailOutboxDocument.class, EMAIL_OUTBOX_COLLECTION))
+                .orElseThrow(() -> new OutboxMessageNotFound("Outbox message not found"));
+    }
+
+    /**
+     * Get the delivery status of a queued message, including messages that were moved to the dead-letter collection.
+     *
+     * @param messageId The ID of the message.
+     * @return The status of the message.
+     * @throws OutboxMessageNotFound If the message is neither in the outbox nor dead-lettered.
+     */
+    public OutboxMessageStatus getMessageStatus(UUID messageId) throws OutboxMessageNotFound {
+        EmailOutboxDocument outboxDocument = this.mongoTemplate.findById(messageId.toString(), EmailOutboxDocument.class, EMAIL_OUTBOX_COLLECTION);
+        if (outboxDocument != null) {
+            return outboxDocument.getStatus();
+        }
+        if (this.mongoTemplate.exists(Query.query(Criteria.where("_id").is(messageId.toString())), EmailDeadLetterDocument.class, EMAIL_DEAD_LETTER_COLLECTION)) {
+            return OutboxMessageStatus.DEAD_LETTERED;
+        }
+        throw new OutboxMessageNotFound("Outbox message not found");
+    }
+}
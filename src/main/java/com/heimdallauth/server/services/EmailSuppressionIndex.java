@@ -0,0 +1,295 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostSuppressionSnapshotConfiguration;
+import com.heimdallauth.server.models.bifrost.ConfigurationSetModel;
+import com.heimdallauth.server.services.suppression.ConfigurationSetSuppressions;
+import com.heimdallauth.server.services.suppression.SuppressionSnapshot;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.CONFIGURATION_SET_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.SUPPRESSION_LIST_COLLECTION;
+
+/**
+ * Index of the suppression entries attached to each configuration set.
+ * Entries whose value contains an {@code @} suppress that exact address, all other entries suppress a whole domain.
+ * Every configuration set is indexed as a {@link SuppressionSnapshot} of value fingerprints, persisted as a
+ * memory-mapped file so that million-entry lists cost almost no heap, plus a small on-heap delta of the entries added
+ * and removed since. Entries attached to or deleted from a configuration set are applied to its index in place, and
+ * the delta is folded into a new snapshot once it grows past the compaction threshold.
+ * Snapshots are built by streaming the IDs and values of the attached entries from the suppression list, so the
+ * entries themselves are never held on the heap or in the configuration set cache.
+ * Snapshots persisted by an earlier run are mapped at startup and reused when their entry digest still matches the
+ * configuration set, so a restarted node does not rewrite them; snapshots of deleted configuration sets are removed.
+ * Lookups are case-insensitive and do not allocate.
+ */
+@Service
+@Slf4j
+public class EmailSuppressionIndex {
+    private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+    private static final int STREAM_BATCH_SIZE = 1000;
+    private static final int INITIAL_ENTRY_CAPACITY = 1024;
+    private final Map<String, ConfigurationSetSuppressions> suppressionsByConfigurationSet = new ConcurrentHashMap<>();
+    private final Map<String, SuppressionSnapshot> persistedSnapshots = new ConcurrentHashMap<>();
+    private final MongoTemplate mongoTemplate;
+    private final HeimdallBifrostSuppressionSnapshotConfiguration snapshotConfiguration;
+    private volatile Path snapshotDirectory;
+
+    public EmailSuppressionIndex(MongoTemplate mongoTemplate, HeimdallBifrostSuppressionSnapshotConfiguration snapshotConfiguration) {
+        this.mongoTemplate = mongoTemplate;
+        this.snapshotConfiguration = snapshotConfiguration;
+    }
+
+    /**
+     * Map the snapshots persisted by an earlier run. Unreadable snapshots are deleted and rebuilt on first use, and
+     * snapshots of configuration sets deleted while the node was down are deleted.
+     */
+    @PostConstruct
+    void loadPersistedSnapshots() {
+        Path directory = snapshotConfiguration.getDirectory();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            log.warn("Suppression snapshot directory {} is not usable, keeping snapshots on heap: {}", directory, e.getMessage());
+            return;
+        }
+        this.snapshotDirectory = directory;
+        try (DirectoryStream<Path> snapshotFiles = Files.newDirectoryStream(directory, "*" + SNAPSHOT_FILE_SUFFIX)) {
+            for (Path snapshotFile : snapshotFiles) {
+                String fileName = snapshotFile.getFileName().toString();
+                String configurationSetId = fileName.substring(0, fileName.length() - SNAPSHOT_FILE_SUFFIX.length());
+                try {
+                    persistedSnapshots.put(configurationSetId, SuppressionSnapshot.open(snapshotFile));
+                } catch (IOException e) {
+                    log.warn("Discarding suppression snapshot {}: {}", snapshotFile, e.getMessage());
+                    Files.deleteIfExists(snapshotFile);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list suppression snapshots in {}: {}", directory, e.getMessage());
+        }
+        removeSnapshotsOfDeletedConfigurationSets();
+        log.info("Mapped {} persisted suppression snapshots from {}", persistedSnapshots.size(), directory);
+    }
+
+    private void removeSnapshotsOfDeletedConfigurationSets() {
+        if (persistedSnapshots.isEmpty()) {
+            return;
+        }
+        try {
+            Query existingConfigurationSetsQuery = Query.query(Criteria.where("_id").in(persistedSnapshots.keySet()));
+            Set<String> existingConfigurationSetIds = new HashSet<>(mongoTemplate.findDistinct(existingConfigurationSetsQuery, "_id", CONFIGURATION_SET_COLLECTION, String.class));
+            List<String> deletedConfigurationSetIds = persistedSnapshots.keySet().stream().filter(configurationSetId -> !existingConfigurationSetIds.contains(configurationSetId)).toList();
+            deletedConfigurationSetIds.forEach(this::deleteConfigurationSet);
+            if (!deletedConfigurationSetIds.isEmpty()) {
+                log.info("Deleted {} suppression snapshots of deleted configuration sets", deletedConfigurationSetIds.size());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to check persisted suppression snapshots against the configuration sets: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Remove suppressed addresses from a list of recipients.
+     *
+     * @param configurationSetModel The configuration set the email is sent with.
+     * @param emailAddresses        The recipient addresses.
+     * @return The recipient addresses that are not suppressed, in their original order. The given array is returned when nothing is suppressed.
+     */
+    public String[] filterSuppressed(ConfigurationSetModel configurationSetModel, String[] emailAddresses) {
+        ConfigurationSetSuppressions suppressions = getSuppressions(configurationSetModel);
+        int suppressedCount = 0;
+        for (String emailAddress : emailAddresses) {
+            if (suppressions.contains(emailAddress)) {
+                suppressedCount++;
+            }
+        }
+        if (suppressedCount == 0) {
+            return emailAddresses;
+        }
+        String[] deliverableAddresses = new String[emailAddresses.length - suppressedCount];
+        int deliverableIndex = 0;
+        for (String emailAddress : emailAddresses) {
+            if (!suppressions.contains(emailAddress)) {
+                deliverableAddresses[deliverableIndex++] = emailAddress;
+            }
+        }
+        log.debug("Dropped {} suppressed recipients for configuration set: {}", suppressedCount, configurationSetModel.configurationSetId());
+        return deliverableAddresses;
+    }
+
+    /**
+     * Add entries just attached to a configuration set to its index, if that index has been built. The values of the
+     * entries are only read for a built index. Attaching at least as many entries as the compaction threshold drops the
+     * index instead, as building it again from the suppression list is cheaper than the compactions along the way.
+     *
+     * @param configurationSetId  The ID of the configuration set the entries were attached to.
+     * @param suppressionEntryIds The IDs of the attached entries.
+     */
+    public void attachSuppressionEntries(String configurationSetId, Collection<String> suppressionEntryIds) {
+        ConfigurationSetSuppressions suppressions = suppressionsByConfigurationSet.get(configurationSetId);
+        if (suppressions == null || suppressionEntryIds.isEmpty()) {
+            return;
+        }
+        if (suppressionEntryIds.size() >= snapshotConfiguration.getCompactionThreshold()) {
+            suppressionsByConfigurationSet.remove(configurationSetId);
+            return;
+        }
+        Query attachedEntriesQuery = Query.query(Criteria.where("_id").in(suppressionEntryIds));
+        attachedEntriesQuery.fields().include("_id", "value");
+        for (Document entry : mongoTemplate.find(attachedEntriesQuery, Document.class, SUPPRESSION_LIST_COLLECTION)) {
+            add(suppressions, entry.getString("_id"), entry.getString("value"));
+        }
+    }
+
+    /**
+     * Add a written suppression entry to the built indexes of the configuration sets it is attached to. Entries an
+     * index already holds are left alone, so entries attached on this node may be added again.
+     *
+     * @param suppressionEntryId  The ID of the suppression entry.
+     * @param value               The suppressed address or domain.
+     * @param configurationSetIds The IDs of the configuration sets the entry is attached to.
+     */
+    public void addSuppressionEntry(String suppressionEntryId, String value, Collection<String> configurationSetIds) {
+        for (String configurationSetId : configurationSetIds) {
+            ConfigurationSetSuppressions suppressions = suppressionsByConfigurationSet.get(configurationSetId);
+            if (suppressions != null) {
+                add(suppressions, suppressionEntryId, value);
+            }
+        }
+    }
+
+    private static void add(ConfigurationSetSuppressions suppressions, String suppressionEntryId, String value) {
+        if (value != null && !value.isBlank()) {
+            String normalizedValue = normalize(value);
+            suppressions.add(entryIdHash(suppressionEntryId, normalizedValue), SuppressionSnapshot.valueFingerprint(normalizedValue));
+        }
+    }
+
+    /**
+     * Remove a deleted suppression entry from every index that contains it.
+     *
+     * @param suppressionEntryId The ID of the deleted suppression entry.
+     */
+    public void removeSuppressionEntry(UUID suppressionEntryId) {
+        long entryIdHash = SuppressionSnapshot.entryIdHash(suppressionEntryId);
+        suppressionsByConfigurationSet.values().forEach(suppressions -> suppressions.remove(entryIdHash));
+    }
+
+    /**
+     * Normalize a suppressed address or domain the way the index compares them.
+     *
+     * @param value The suppressed address or domain.
+     * @return The trimmed, lower-cased value.
+     */
+    public static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Drop every index from memory, when changes to the suppression list may have been missed. The persisted snapshots
+     * are kept and reused if they still match their configuration sets when next used.
+     */
+    public void evictAllConfigurationSets() {
+        suppressionsByConfigurationSet.clear();
+    }
+
+    /**
+     * Drop the index of a deleted configuration set from memory and delete its persisted snapshot.
+     *
+     * @param configurationSetId The ID of the deleted configuration set.
+     */
+    public void deleteConfigurationSet(String configurationSetId) {
+        suppressionsByConfigurationSet.remove(configurationSetId);
+        persistedSnapshots.remove(configurationSetId);
+        Path directory = snapshotDirectory;
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(configurationSetId + SNAPSHOT_FILE_SUFFIX));
+        } catch (IOException e) {
+            log.warn("Failed to delete suppression snapshot for configuration set: {}: {}", configurationSetId, e.getMessage());
+        }
+    }
+
+    private ConfigurationSetSuppressions getSuppressions(ConfigurationSetModel configurationSetModel) {
+        return suppressionsByConfigurationSet.computeIfAbsent(String.valueOf(configurationSetModel.configurationSetId()),
+                configurationSetId -> new ConfigurationSetSuppressions(configurationSetId, loadSnapshot(configurationSetId), snapshotConfiguration.getCompactionThreshold(),
+                        compactedSnapshot -> persist(configurationSetId, compactedSnapshot)));
+    }
+
+    /**
+     * Stream the entries attached to a configuration set and reuse its persisted snapshot if it holds exactly those
+     * entries, otherwise build and persist a new one. Only the ID and value of each entry are read.
+     */
+    private SuppressionSnapshot loadSnapshot(String configurationSetId) {
+        Query attachedEntriesQuery = Query.query(Criteria.where("configurationSetIds").is(configurationSetId)).cursorBatchSize(STREAM_BATCH_SIZE);
+        attachedEntriesQuery.fields().include("_id", "value");
+        long[] entryIdHashes = new long[INITIAL_ENTRY_CAPACITY];
+        long[] entryFingerprints = new long[INITIAL_ENTRY_CAPACITY];
+        int entryCount = 0;
+        long entryDigest = 0;
+        try (Stream<Document> attachedEntries = mongoTemplate.stream(attachedEntriesQuery, Document.class, SUPPRESSION_LIST_COLLECTION)) {
+            Iterator<Document> entries = attachedEntries.iterator();
+            while (entries.hasNext()) {
+                Document entry = entries.next();
+                String value = entry.getString("value");
+                if (value == null || value.isBlank()) {
+                    continue;
+                }
+                if (entryCount == entryIdHashes.length) {
+                    entryIdHashes = Arrays.copyOf(entryIdHashes, entryCount * 2);
+                    entryFingerprints = Arrays.copyOf(entryFingerprints, entryCount * 2);
+                }
+                String normalizedValue = normalize(value);
+                entryIdHashes[entryCount] = entryIdHash(entry.getString("_id"), normalizedValue);
+                entryFingerprints[entryCount] = SuppressionSnapshot.valueFingerprint(normalizedValue);
+                entryDigest ^= SuppressionSnapshot.entryDigest(entryIdHashes[entryCount], entryFingerprints[entryCount]);
+                entryCount++;
+            }
+        }
+        SuppressionSnapshot persistedSnapshot = persistedSnapshots.get(configurationSetId);
+        if (persistedSnapshot != null && persistedSnapshot.entryCount() == entryCount && persistedSnapshot.entryDigest() == entryDigest) {
+            log.debug("Reusing persisted suppression snapshot for configuration set: {} with {} entries", configurationSetId, entryCount);
+            return persistedSnapshot;
+        }
+        log.debug("Building suppression snapshot for configuration set: {} with {} entries", configurationSetId, entryCount);
+        return persist(configurationSetId, SuppressionSnapshot.build(entryIdHashes, entryFingerprints, entryCount));
+    }
+
+    private SuppressionSnapshot persist(String configurationSetId, SuppressionSnapshot snapshot) {
+        Path directory = snapshotDirectory;
+        if (directory == null) {
+            return snapshot;
+        }
+        try {
+            SuppressionSnapshot mappedSnapshot = snapshot.persist(directory.resolve(configurationSetId + SNAPSHOT_FILE_SUFFIX));
+            persistedSnapshots.put(configurationSetId, mappedSnapshot);
+            return mappedSnapshot;
+        } catch (IOException e) {
+            log.warn("Failed to persist suppression snapshot for configuration set: {}, keeping it on heap: {}", configurationSetId, e.getMessage());
+            return snapshot;
+        }
+    }
+
+    private static long entryIdHash(String suppressionEntryId, String normalizedValue) {
+        return suppressionEntryId != null
+                ? SuppressionSnapshot.entryIdHash(UUID.fromString(suppressionEntryId))
+                : SuppressionSnapshot.entryIdHash(normalizedValue);
+    }
+}
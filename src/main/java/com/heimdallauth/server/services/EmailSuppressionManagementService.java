@@ -1,14 +1,20 @@
 package com.heimdallauth.server.services;
 
+import com.heimdallauth.server.dto.KeysetPage;
 import com.heimdallauth.server.dto.bifrost.CreateSuppressionEntryDTO;
+import com.heimdallauth.server.exceptions.ConfigurationSetNotFound;
 import com.heimdallauth.server.exceptions.SuppressionListNotFound;
 import com.heimdallauth.server.models.bifrost.SuppressionEntryModel;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface EmailSuppressionManagementService {
-    List<SuppressionEntryModel> getAllSuppressionEntries();
+    KeysetPage<SuppressionEntryModel> getSuppressionEntriesPage(String afterSuppressionEntryId, int limit);
+
+    Stream<SuppressionEntryModel> streamAllSuppressionEntries();
 
     List<SuppressionEntryModel> getAllSuppressionEntriesById(List<UUID> suppressionEntryId) throws SuppressionListNotFound;
 
@@ -19,4 +25,6 @@ public interface EmailSuppressionManagementService {
     List<SuppressionEntryModel> getSuppressionEntryByConfigurationSetId(UUID configurationSetId) throws SuppressionListNotFound;
 
     void deleteSuppressionEntryById(UUID suppressionEntryId);
+
+    void attachSuppressionEntries(UUID configurationSetId, Collection<String> suppressionEntryIds) throws ConfigurationSetNotFound;
 }
@@ -1,17 +1,34 @@
 package com.heimdallauth.server.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.jknack.handlebars.Handlebars;
 import com.github.jknack.handlebars.Template;
+import com.heimdallauth.server.configuration.HeimdallBifrostCacheConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
+import java.util.UUID;
 
 @Service
 @Slf4j
 public class EmailTemplatingService {
+    private static final String INLINE_TEMPLATE_ID = "inline";
     private final Handlebars handlebars = new Handlebars();
+    private final Cache<CompiledTemplateKey, Template> compiledTemplateCache;
+
+    public EmailTemplatingService(MeterRegistry meterRegistry, HeimdallBifrostCacheConfiguration cacheConfiguration) {
+        this.compiledTemplateCache = Caffeine.newBuilder()
+                .maximumSize(cacheConfiguration.getCompiledTemplateMaxSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, compiledTemplateCache, "bifrost.templates.compiled");
+    }
 
     /**
      * Process a templated string using Handlebars.
@@ -22,7 +39,56 @@ public class EmailTemplatingService {
      * @throws IOException If there is an error during processing.
      */
     public String processString(String templatedString, Map<String, Object> variableMap) throws IOException {
-        Template inlineTemplate = handlebars.compileInline(templatedString);
-        return inlineTemplate.apply(variableMap);
+        return processString(null, templatedString, variableMap);
+    }
+
+    /**
+     * Process a templated string using Handlebars, reusing the compiled template when the same source was seen before.
+     *
+     * @param templateId      The ID of the stored template the string belongs to, or null for inline content.
+     * @param templatedString The string to be processed.
+     * @param variableMap     The map of variables to be used in the template.
+     * @return The processed string.
+     * @throws IOException If there is an error during processing.
+     */
+    public String processString(UUID templateId, String templatedString, Map<String, Object> variableMap) throws IOException {
+        CompiledTemplateKey compiledTemplateKey = new CompiledTemplateKey(templateId != null ? templateId.toString() : INLINE_TEMPLATE_ID, templatedString);
+        try {
+            Template compiledTemplate = compiledTemplateCache.get(compiledTemplateKey, key -> compile(templatedString));
+            return compiledTemplate.apply(variableMap);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Drop all compiled templates belonging to a stored template, e.g. after it was updated or deleted.
+     *
+     * @param templateId The ID of the stored template.
+     */
+    public void evictTemplate(UUID templateId) {
+        String evictedTemplateId = templateId.toString();
+        compiledTemplateCache.asMap().keySet().removeIf(key -> evictedTemplateId.equals(key.templateId()));
+        log.debug("Evicted compiled templates for template ID: {}", templateId);
+    }
+
+    public void evictAllTemplates() {
+        compiledTemplateCache.invalidateAll();
+    }
+
+    private Template compile(String templatedString) {
+        try {
+            return handlebars.compileInline(templatedString);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The template source is part of the key and compared in full, so a changed template never hits a stale compiled
+     * entry even before the explicit eviction has run, and inline content of different callers never shares an entry.
+     * Keeping the source in the key costs nothing extra, the compiled template holds on to it anyway.
+     */
+    private record CompiledTemplateKey(String templateId, String source) {
     }
 }
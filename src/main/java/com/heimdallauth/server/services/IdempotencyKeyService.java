@@ -0,0 +1,204 @@
+package com.heimdallauth.server.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.heimdallauth.server.configuration.HeimdallBifrostIdempotencyConfiguration;
+import com.heimdallauth.server.constants.OutboxMessageStatus;
+import com.heimdallauth.server.documents.IdempotencyKeyDocument;
+import com.heimdallauth.server.exceptions.IdempotencyKeyInProgress;
+import com.heimdallauth.server.exceptions.IdempotencyKeyReused;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.IDEMPOTENCY_KEY_COLLECTION;
+
+/**
+ * Remembers the result of sends made with an {@code Idempotency-Key}, so that a retried request returns the original
+ * result instead of sending the email again. Completed keys are served from a local cache; Mongo holds the keys for all
+ * replicas and doubles as the lock that stops two concurrent requests with the same key from both sending.
+ * Every key stores a hash of the request it was first used with, and reusing a key for a different request is rejected.
+ * A reservation is a lease until {@code reservedUntil}; one that was neither completed nor released before it passed,
+ * e.g. because the node crashed, is taken over by the next request with the same key.
+ * Keys expire through a TTL index on {@code createdAt}.
+ */
+@Service
+@Slf4j
+public class IdempotencyKeyService {
+    /**
+     * Attempts to reserve a key that disappeared, through expiry or release, or whose expired reservation was taken over
+     * by another request, between a failed insert and the reservation.
+     */
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper canonicalObjectMapper;
+    private final Cache<String, CompletedKey> completedKeys;
+    private final Duration reservationLease;
+
+    public IdempotencyKeyService(MongoTemplate mongoTemplate, ObjectMapper objectMapper, HeimdallBifrostIdempotencyConfiguration idempotencyConfiguration) {
+        this.mongoTemplate = mongoTemplate;
+        this.reservationLease = idempotencyConfiguration.getReservationLease();
+        this.canonicalObjectMapper = objectMapper.copy()
+                .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+                .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        this.completedKeys = Caffeine.newBuilder()
+                .expireAfterWrite(idempotencyConfiguration.getKeyTtl())
+                .maximumSize(idempotencyConfiguration.getLocalCacheMaxSize())
+                .build();
+    }
+
+    /**
+     * Scope a client supplied key to the calling client, so that two clients choosing the same key do not collide.
+     *
+     * @param clientId       The name of the authenticated client.
+     * @param idempotencyKey The key sent by the client.
+     * @return The scoped key.
+     */
+    public static String scopedKey(String clientId, String idempotencyKey) {
+        return clientId + ":" + idempotencyKey;
+    }
+
+    /**
+     * Hash a request for comparison with the request a key was first used with. Properties and map entries are
+     * serialized in a fixed order, so the hash does not depend on the order the client sent them in.
+     *
+     * @param requestParts The parts of the request that make it the same request, e.g. the body and the priority.
+     * @return The hex encoded SHA-256 hash of the request.
+     */
+    public String requestHash(Object... requestParts) {
+        try {
+            byte[] serializedRequest = this.canonicalObjectMapper.writeValueAsString(requestParts).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(serializedRequest));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to hash the request", e);
+        }
+    }
+
+    /**
+     * Reserve a key before sending. Every reservation must be followed by {@link #complete(String, String, IdempotentSendResult)}
+     * or {@link #release(String)}.
+     *
+     * @param scopedKey   The scoped idempotency key.
+     * @param requestHash The hash of the request, see {@link #requestHash(Object...)}.
+     * @return The result of the original send if the key has already been used, or empty if the key is now reserved.
+     * @throws IdempotencyKeyInProgress If another request with the same key is still being processed and its reservation has not expired.
+     * @throws IdempotencyKeyReused     If the key was used for a different request.
+     */
+    public Optional<IdempotentSendResult> reserve(String scopedKey, String requestHash) throws IdempotencyKeyInProgress, IdempotencyKeyReused {
+        CompletedKey cachedKey = completedKeys.getIfPresent(scopedKey);
+        if (cachedKey != null) {
+            checkSameRequest(cachedKey.requestHash(), requestHash);
+            return Optional.of(cachedKey.result());
+        }
+        for (int attempt = 1; attempt <= MAX_RESERVE_ATTEMPTS; attempt++) {
+            try {
+                Instant now = Instant.now();
+                this.mongoTemplate.insert(IdempotencyKeyDocument.builder().id(scopedKey).requestHash(requestHash).completed(false).reservedUntil(now.plus(reservationLease)).createdAt(now).build(), IDEMPOTENCY_KEY_COLLECTION);
+                return Optional.empty();
+            } catch (DuplicateKeyException e) {
+                IdempotencyKeyDocument existingKey = this.mongoTemplate.findById(scopedKey, IdempotencyKeyDocument.class, IDEMPOTENCY_KEY_COLLECTION);
+                if (existingKey == null) {
+                    // Expired or released between the insert and the lookup, try to reserve it again
+                    log.debug("Idempotency key vanished before it could be read, reserving it again: {}", scopedKey);
+                    continue;
+                }
+                checkSameRequest(existingKey.getRequestHash(), requestHash);
+                if (!existingKey.isCompleted()) {
+                    if (existingKey.getReservedUntil() != null && existingKey.getReservedUntil().isAfter(Instant.now())) {
+                        throw new IdempotencyKeyInProgress("A request with the same idempotency key is in progress");
+                    }
+                    if (takeOverExpiredReservation(scopedKey)) {
+                        log.info("Took over the expired reservation of idempotency key: {}", scopedKey);
+                        return Optional.empty();
+                    }
+                    continue;
+                }
+                IdempotentSendResult originalResult = new IdempotentSendResult(existingKey.getHttpStatus(), existingKey.getMessageId(), existingKey.getStatus());
+                completedKeys.put(scopedKey, new CompletedKey(existingKey.getRequestHash(), originalResult));
+                return Optional.of(originalResult);
+            }
+        }
+        throw new IdempotencyKeyInProgress("Idempotency key is being processed");
+    }
+
+    /**
+     * Extend an expired reservation to this request. Only one of several requests racing for the same key succeeds,
+     * because the expiry is part of the update's filter. Reservations stored before leases were recorded have no expiry
+     * and count as expired.
+     */
+    private boolean takeOverExpiredReservation(String scopedKey) {
+        Instant now = Instant.now();
+        Query expiredReservationQuery = Query.query(Criteria.where("_id").is(scopedKey).and("completed").is(false)
+                .orOperator(Criteria.where("reservedUntil").lte(now), Criteria.where("reservedUntil").exists(false)));
+        Update takeOver = new Update().set("reservedUntil", now.plus(reservationLease));
+        return this.mongoTemplate.updateFirst(expiredReservationQuery, takeOver, IdempotencyKeyDocument.class, IDEMPOTENCY_KEY_COLLECTION).getModifiedCount() > 0;
+    }
+
+    /**
+     * Keys stored before request hashes were recorded have no hash and match any request.
+     */
+    private static void checkSameRequest(String originalRequestHash, String requestHash) {
+        if (originalRequestHash != null && !Objects.equals(originalRequestHash, requestHash)) {
+            throw new IdempotencyKeyReused("The idempotency key was already used for a different request");
+        }
+    }
+
+    /**
+     * Store the result of a send made with a reserved key.
+     *
+     * @param scopedKey   The scoped idempotency key.
+     * @param requestHash The hash of the request the key was reserved with.
+     * @param result      The result returned to the client.
+     */
+    public void complete(String scopedKey, String requestHash, IdempotentSendResult result) {
+        Update update = new Update()
+                .set("completed", true)
+                .unset("reservedUntil")
+                .set("httpStatus", result.httpStatus())
+                .set("messageId", result.messageId())
+                .set("status", result.status());
+        this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(scopedKey)), update, IdempotencyKeyDocument.class, IDEMPOTENCY_KEY_COLLECTION);
+        completedKeys.put(scopedKey, new CompletedKey(requestHash, result));
+    }
+
+    /**
+     * Drop a reservation after a failed send, so that the client can retry with the same key.
+     *
+     * @param scopedKey The scoped idempotency key.
+     */
+    public void release(String scopedKey) {
+        log.debug("Releasing idempotency key after a failed send: {}", scopedKey);
+        this.mongoTemplate.remove(Query.query(Criteria.where("_id").is(scopedKey).and("completed").is(false)), IdempotencyKeyDocument.class, IDEMPOTENCY_KEY_COLLECTION);
+    }
+
+    /**
+     * The result of a send as returned to the client.
+     *
+     * @param httpStatus The HTTP status of the response.
+     * @param messageId  The ID of the queued message, if the send was queued.
+     * @param status     The status of the queued message, if the send was queued.
+     */
+    public record IdempotentSendResult(int httpStatus, UUID messageId, OutboxMessageStatus status) {
+    }
+
+    private record CompletedKey(String requestHash, IdempotentSendResult result) {
+    }
+}
@@ -2,39 +2,69 @@ package com.heimdallauth.server.services;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.heimdallauth.server.configuration.HeimdallBifrostSmtpCircuitBreakerConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostSmtpPoolConfiguration;
 import com.heimdallauth.server.constants.bifrost.SmtpAuthenticationMethod;
 import com.heimdallauth.server.models.bifrost.SmtpProperties;
+import com.heimdallauth.server.services.smtp.AdaptiveConcurrencyLimit;
+import com.heimdallauth.server.services.smtp.PooledJavaMailSender;
+import com.heimdallauth.server.services.smtp.SmtpCircuitBreaker;
+import com.heimdallauth.server.services.smtp.SmtpTransportPool;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 public class JavaMailSenderFactory {
     private final JavaMailSender platformJavaMailSender;
+    private final HeimdallBifrostSmtpPoolConfiguration smtpPoolConfiguration;
+    private final HeimdallBifrostSmtpCircuitBreakerConfiguration circuitBreakerConfiguration;
+    private final SendPipelineMetrics sendPipelineMetrics;
     private final Cache<String, JavaMailSender> mailSenderCache;
+    private final Map<String, SmtpCircuitBreaker> circuitBreakersByHost = new ConcurrentHashMap<>();
+    private final Map<String, AdaptiveConcurrencyLimit> concurrencyLimitsByPool = new ConcurrentHashMap<>();
 
-    public JavaMailSenderFactory(JavaMailSender platformJavaMailSender) {
+    public JavaMailSenderFactory(JavaMailSender platformJavaMailSender, HeimdallBifrostSmtpPoolConfiguration smtpPoolConfiguration, HeimdallBifrostSmtpCircuitBreakerConfiguration circuitBreakerConfiguration, SendPipelineMetrics sendPipelineMetrics) {
         this.platformJavaMailSender = platformJavaMailSender;
-        this.mailSenderCache = Caffeine.newBuilder().expireAfterWrite(5,TimeUnit.HOURS).maximumSize(1000).build();
+        this.smtpPoolConfiguration = smtpPoolConfiguration;
+        this.circuitBreakerConfiguration = circuitBreakerConfiguration;
+        this.sendPipelineMetrics = sendPipelineMetrics;
+        this.mailSenderCache = Caffeine.newBuilder()
+                .expireAfterWrite(5,TimeUnit.HOURS)
+                .maximumSize(1000)
+                .removalListener((String key, JavaMailSender mailSender, RemovalCause cause) -> {
+                    if(mailSender instanceof PooledJavaMailSender pooledJavaMailSender) {
+                        log.debug("Closing SMTP transport pool for smtpProperties: {}, cause: {}", key, cause);
+                        pooledJavaMailSender.close();
+                    }
+                })
+                .build();
     }
     /**
      * This method creates a JavaMailSender instance based on the provided SmtpProperties.
      * It sets the host, port, username, password, and encoding for the JavaMailSender.
      * If an authentication method is specified, it adds it to the JavaMail properties.
+     * The sender keeps a pool of open connections sized from the connectionLimit of the SmtpProperties.
+     * Connect, read and write timeouts are set before the mail session is created, and the sender shares the
+     * circuit breaker of its host with every other sender connecting to that host. The number of parallel sessions adapts
+     * to the server and survives the sender being evicted and recreated.
      *
      * @param smtpProperties The SmtpProperties object containing SMTP configuration.
      * @return A configured JavaMailSender instance.
      */
     private JavaMailSender getJavaMailSender(SmtpProperties smtpProperties) {
         log.debug("Creating new instance of JavaMailSender for smtpProperties: {}", smtpProperties.propertiesId());
-        JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
+        PooledJavaMailSender javaMailSender = new PooledJavaMailSender();
         javaMailSender.setHost(smtpProperties.serverAddress());
         javaMailSender.setPort(smtpProperties.portNumber());
         javaMailSender.setUsername(smtpProperties.loginUsername());
@@ -50,9 +80,58 @@ public class JavaMailSenderFactory {
                 javaMailSender.getJavaMailProperties().put(entry.getKey(), entry.getValue());
             }
         }
+        javaMailSender.getJavaMailProperties().put("mail.smtp.connectiontimeout", smtpPoolConfiguration.getConnectTimeout().toMillis());
+        javaMailSender.getJavaMailProperties().put("mail.smtp.timeout", smtpPoolConfiguration.getReadTimeout().toMillis());
+        javaMailSender.getJavaMailProperties().put("mail.smtp.writetimeout", smtpPoolConfiguration.getWriteTimeout().toMillis());
+        int connectionLimit = smtpProperties.connectionLimit() > 0 ? smtpProperties.connectionLimit() : smtpPoolConfiguration.getDefaultConnectionLimit();
+        boolean anonymous = javaMailSender.getUsername() == null || javaMailSender.getUsername().isEmpty();
+        javaMailSender.setTransportPool(new SmtpTransportPool(
+                smtpProperties.propertiesId(),
+                connectionLimit,
+                javaMailSender.getSession(),
+                javaMailSender.getProtocol(),
+                javaMailSender.getHost(),
+                javaMailSender.getPort(),
+                anonymous ? null : javaMailSender.getUsername(),
+                anonymous ? null : javaMailSender.getPassword(),
+                smtpPoolConfiguration,
+                sendPipelineMetrics.smtpConnectTimer(smtpProperties.propertiesId()),
+                getConcurrencyLimit(smtpProperties.propertiesId(), connectionLimit)
+        ));
+        if(circuitBreakerConfiguration.isEnabled()) {
+            javaMailSender.setCircuitBreaker(getCircuitBreaker(smtpProperties));
+        }
         return javaMailSender;
     }
 
+    private AdaptiveConcurrencyLimit getConcurrencyLimit(String poolId, int connectionLimit) {
+        if(!smtpPoolConfiguration.isAdaptiveConcurrencyEnabled()) {
+            return AdaptiveConcurrencyLimit.fixed(poolId, connectionLimit);
+        }
+        AdaptiveConcurrencyLimit concurrencyLimit = concurrencyLimitsByPool.computeIfAbsent(poolId, key -> {
+            AdaptiveConcurrencyLimit newConcurrencyLimit = new AdaptiveConcurrencyLimit(
+                    key,
+                    smtpPoolConfiguration.getInitialConcurrency(),
+                    smtpPoolConfiguration.getMinConcurrency(),
+                    connectionLimit,
+                    smtpPoolConfiguration.getConcurrencyBackoffRatio(),
+                    smtpPoolConfiguration.getLatencyTolerance()
+            );
+            sendPipelineMetrics.registerConcurrencyLimit(newConcurrencyLimit);
+            return newConcurrencyLimit;
+        });
+        concurrencyLimit.setMaxLimit(connectionLimit);
+        return concurrencyLimit;
+    }
+
+    private SmtpCircuitBreaker getCircuitBreaker(SmtpProperties smtpProperties) {
+        return circuitBreakersByHost.computeIfAbsent(smtpProperties.serverAddress() + ":" + smtpProperties.portNumber(), host -> {
+            SmtpCircuitBreaker circuitBreaker = new SmtpCircuitBreaker(host, circuitBreakerConfiguration.getFailureThreshold(), circuitBreakerConfiguration.getOpenDuration());
+            sendPipelineMetrics.registerCircuitBreaker(circuitBreaker);
+            return circuitBreaker;
+        });
+    }
+
     /**
      * This method retrieves the JavaMailSender instance from cache or creates a new one if it doesn't exist.
      *
@@ -68,7 +147,61 @@ public class JavaMailSenderFactory {
         }
     }
 
+    /**
+     * Retrieve the JavaMailSender for a configuration set. While the circuit of the configuration set's SMTP host is open
+     * and the configuration set is allowed to fail over, the platform JavaMailSender is returned instead.
+     *
+     * @param smtpProperties     The SmtpProperties from the configuration set
+     * @param configurationSetId The ID of the configuration set.
+     * @return A configured JavaMailSender instance.
+     */
+    public JavaMailSender getMailSender(Optional<SmtpProperties> smtpProperties, UUID configurationSetId) {
+        JavaMailSender mailSender = getMailSender(smtpProperties);
+        if(mailSender instanceof PooledJavaMailSender pooledJavaMailSender
+                && pooledJavaMailSender.getCircuitBreaker() != null
+                && pooledJavaMailSender.getCircuitBreaker().isRejecting()
+                && configurationSetId != null
+                && circuitBreakerConfiguration.getFailoverConfigurationSets().contains(configurationSetId.toString())) {
+            log.warn("SMTP host {} is unavailable, failing over to the platform JavaMailSender for configuration set: {}", pooledJavaMailSender.getCircuitBreaker().getHost(), configurationSetId);
+            sendPipelineMetrics.recordFailover(configurationSetId.toString());
+            return platformJavaMailSender;
+        }
+        return mailSender;
+    }
+
     protected void evictCache(UUID configurationId) {
         mailSenderCache.invalidate(configurationId.toString());
     }
+
+    /**
+     * Drop the cached sender, and with it the pooled connections, for the given SmtpProperties.
+     *
+     * @param propertiesId The ID of the SmtpProperties that changed.
+     */
+    public void evictMailSender(String propertiesId) {
+        log.debug("Evicting JavaMailSender for smtpProperties: {}", propertiesId);
+        mailSenderCache.invalidate(propertiesId);
+    }
+
+    public void evictAllMailSenders() {
+        mailSenderCache.invalidateAll();
+    }
+
+    /**
+     * Close pooled SMTP connections that have been idle for longer than the configured max idle time.
+     */
+    @Scheduled(fixedDelayString = "${heimdall.bifrost.smtp.pool.eviction-interval:PT30S}")
+    void evictIdleTransports() {
+        mailSenderCache.asMap().values().forEach(mailSender -> {
+            if(mailSender instanceof PooledJavaMailSender pooledJavaMailSender) {
+                pooledJavaMailSender.getTransportPool().evictIdleTransports();
+            }
+        });
+    }
+
+    @PreDestroy
+    void closeTransportPools() {
+        mailSenderCache.invalidateAll();
+        mailSenderCache.cleanUp();
+    }
 }
@@ -0,0 +1,144 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostOutboxConfiguration;
+import com.heimdallauth.server.constants.SendPriority;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Worker accounting for the outbox priority lanes. Every lane keeps its reserved workers; the remaining workers are
+ * shared and handed out in lane order on every drain, so lower lanes borrow idle capacity while a burst of
+ * transactional mail always finds its reserved workers free.
+ * Queue depths are counted up when a message is queued and down when it is claimed, so the queue bound reacts to a
+ * burst at once; the periodic count from Mongo only corrects the drift from other replicas and expired locks.
+ * Publishes {@code bifrost.outbox.lane.depth}, {@code bifrost.outbox.lane.in_flight} and {@code bifrost.outbox.lane.wait}.
+ */
+@Component
+public class OutboxPriorityLanes {
+    private final HeimdallBifrostOutboxConfiguration outboxConfiguration;
+    private final int reservedWorkers;
+    private final int sharedWorkers;
+    private final int[] inFlightWorkers = new int[SendPriority.values().length];
+    private int sharedWorkersInUse = 0;
+    private final Map<SendPriority, AtomicLong> queueDepths = new EnumMap<>(SendPriority.class);
+    private final Map<SendPriority, Timer> waitTimers = new EnumMap<>(SendPriority.class);
+
+    public OutboxPriorityLanes(HeimdallBifrostOutboxConfiguration outboxConfiguration, MeterRegistry meterRegistry) {
+        this.outboxConfiguration = outboxConfiguration;
+        int reservedWorkers = 0;
+        for (SendPriority lane : SendPriority.values()) {
+            reservedWorkers += outboxConfiguration.getLane(lane).getReservedWorkers();
+        }
+        this.reservedWorkers = reservedWorkers;
+        this.sharedWorkers = Math.max(0, outboxConfiguration.getWorkerConcurrency() - reservedWorkers);
+        for (SendPriority lane : SendPriority.values()) {
+            AtomicLong queueDepth = new AtomicLong();
+            queueDepths.put(lane, queueDepth);
+            Gauge.builder("bifrost.outbox.lane.depth", queueDepth, AtomicLong::get)
+                    .description("Pending outbox messages per priority lane")
+                    .tag("lane", lane.name())
+                    .register(meterRegistry);
+            Gauge.builder("bifrost.outbox.lane.in_flight", this, lanes -> lanes.inFlightWorkers(lane))
+                    .description("Outbox messages being delivered per priority lane")
+                    .tag("lane", lane.name())
+                    .register(meterRegistry);
+            waitTimers.put(lane, Timer.builder("bifrost.outbox.lane.wait")
+                    .description("Time an outbox message waited between becoming due and being claimed")
+                    .tag("lane", lane.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @return The total number of workers, reserved and shared.
+     */
+    public int totalWorkers() {
+        return reservedWorkers + sharedWorkers;
+    }
+
+    /**
+     * Take a worker for a lane, from its reservation first and from the shared workers otherwise.
+     *
+     * @param lane The lane of the message about to be claimed.
+     * @return true if a worker was taken and must be returned with {@link #releaseWorker(SendPriority)}.
+     */
+    public synchronized boolean tryAcquireWorker(SendPriority lane) {
+        if (inFlightWorkers[lane.ordinal()] < outboxConfiguration.getLane(lane).getReservedWorkers()) {
+            inFlightWorkers[lane.ordinal()]++;
+            return true;
+        }
+        if (sharedWorkersInUse < sharedWorkers) {
+            inFlightWorkers[lane.ordinal()]++;
+            sharedWorkersInUse++;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized boolean hasAvailableWorker(SendPriority lane) {
+        return inFlightWorkers[lane.ordinal()] < outboxConfiguration.getLane(lane).getReservedWorkers() || sharedWorkersInUse < sharedWorkers;
+    }
+
+    public synchronized void releaseWorker(SendPriority lane) {
+        inFlightWorkers[lane.ordinal()]--;
+        if (inFlightWorkers[lane.ordinal()] >= outboxConfiguration.getLane(lane).getReservedWorkers()) {
+            sharedWorkersInUse--;
+        }
+    }
+
+    /**
+     * Replace the queue depth of a lane with the count read from Mongo.
+     */
+    public void updateQueueDepth(SendPriority lane, long queueDepth) {
+        queueDepths.get(lane).set(queueDepth);
+    }
+
+    /**
+     * Count a message into a lane unless the lane has reached its maximum queue depth.
+     *
+     * @param lane The lane a message is about to be queued in.
+     * @return false if the lane is full. Otherwise the message is counted, and must be passed to
+     * {@link #onMessageDequeued(SendPriority)} if it is not queued after all.
+     */
+    public boolean tryReserveQueueSlot(SendPriority lane) {
+        long maxQueueDepth = outboxConfiguration.getLane(lane).getMaxQueueDepth();
+        AtomicLong queueDepth = queueDepths.get(lane);
+        long currentDepth;
+        do {
+            currentDepth = queueDepth.get();
+            if (currentDepth >= maxQueueDepth) {
+                return false;
+            }
+        } while (!queueDepth.compareAndSet(currentDepth, currentDepth + 1));
+        return true;
+    }
+
+    /**
+     * Count a message that is queued regardless of the queue bound, e.g. a retry.
+     */
+    public void onMessageQueued(SendPriority lane) {
+        queueDepths.get(lane).incrementAndGet();
+    }
+
+    /**
+     * Count a message out of a lane once it is claimed.
+     */
+    public void onMessageDequeued(SendPriority lane) {
+        queueDepths.get(lane).updateAndGet(queueDepth -> Math.max(0, queueDepth - 1));
+    }
+
+    public void recordWait(SendPriority lane, Duration waitTime) {
+        waitTimers.get(lane).record(waitTime.isNegative() ? Duration.ZERO : waitTime);
+    }
+
+    private synchronized int inFlightWorkers(SendPriority lane) {
+        return inFlightWorkers[lane.ordinal()];
+    }
+}
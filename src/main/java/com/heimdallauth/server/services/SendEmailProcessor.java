@@ -1,22 +1,34 @@
 package com.heimdallauth.server.services;
 
+import com.heimdallauth.server.configuration.HeimdallBifrostBulkSendConfiguration;
+import com.heimdallauth.server.dto.BulkEmailRecipient;
+import com.heimdallauth.server.dto.BulkSendEmailDTO;
+import com.heimdallauth.server.dto.BulkSendEmailResponse;
+import com.heimdallauth.server.dto.BulkSendRecipientResult;
 import com.heimdallauth.server.dto.bifrost.SendEmailDTO;
 import com.heimdallauth.server.exceptions.ConfigurationSetNotFound;
 import com.heimdallauth.server.exceptions.HeimdallBifrostBadDataException;
+import com.heimdallauth.server.exceptions.SendRateLimitExceeded;
 import com.heimdallauth.server.exceptions.TemplateNotFound;
 import com.heimdallauth.server.models.bifrost.*;
+import com.heimdallauth.server.services.SendPipelineMetrics.StageTags;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.hibernate.validator.internal.util.Contracts.assertNotNull;
 
@@ -27,45 +39,87 @@ public class SendEmailProcessor {
     private final TemplateManagementService templateManagementService;
     private final JavaMailSenderFactory javaMailSenderFactory;
     private final ConfigurationSetManagementService configurationSetManagementService;
+    private final HeimdallBifrostBulkSendConfiguration bulkSendConfiguration;
+    private final EmailSuppressionIndex emailSuppressionIndex;
+    private final SendPipelineMetrics sendPipelineMetrics;
+    private final SendRateLimiter sendRateLimiter;
+    private final AsyncTaskExecutor bulkRenderExecutor;
+    private final AsyncTaskExecutor bulkDeliveryExecutor;
 
     private static final String DEFAULT_FROM_ADDRESS = "noreply@mayanksoni.tech";
 
 
-    public SendEmailProcessor(EmailTemplatingService emailTemplatingService, TemplateManagementService templateManagementService, JavaMailSenderFactory javaMailSenderFactory, ConfigurationSetManagementService configurationSetManagementService) {
+    public SendEmailProcessor(EmailTemplatingService emailTemplatingService, TemplateManagementService templateManagementService, JavaMailSenderFactory javaMailSenderFactory, ConfigurationSetManagementService configurationSetManagementService, HeimdallBifrostBulkSendConfiguration bulkSendConfiguration, EmailSuppressionIndex emailSuppressionIndex, SendPipelineMetrics sendPipelineMetrics, SendRateLimiter sendRateLimiter, TaskExecutorFactory taskExecutorFactory) {
         this.emailTemplatingService = emailTemplatingService;
         this.templateManagementService = templateManagementService;
         this.javaMailSenderFactory = javaMailSenderFactory;
         this.configurationSetManagementService = configurationSetManagementService;
+        this.bulkSendConfiguration = bulkSendConfiguration;
+        this.emailSuppressionIndex = emailSuppressionIndex;
+        this.sendPipelineMetrics = sendPipelineMetrics;
+        this.sendRateLimiter = sendRateLimiter;
+        this.bulkRenderExecutor = taskExecutorFactory.createExecutor("bifrost-bulk-render-", bulkSendConfiguration.getRenderConcurrency());
+        this.bulkDeliveryExecutor = taskExecutorFactory.createExecutor("bifrost-bulk-delivery-", bulkSendConfiguration.getDeliveryConcurrency());
     }
 
     public void processSendEmail(SendEmailDTO sendEmailDTO) {
+        this.validateSendEmail(sendEmailDTO);
+        this.processSendEmail(sendEmailDTO.templateId(), sendEmailDTO.configurationSetId(), sendEmailDTO.content(), sendEmailDTO.destination(), sendEmailDTO.context());
+    }
+
+    /**
+     * Renders and sends a single email from its already validated parts. This is the path shared by the
+     * synchronous send API and the outbox workers.
+     *
+     * @param templateId The ID of the stored template, used when no inline content is given.
+     * @param configurationSetId The configuration set providing the SMTP properties for templated sends.
+     * @param content The inline content, takes precedence over the template.
+     * @param destination The email destination.
+     * @param emailContext The email context used to render the content.
+     * @throws SendRateLimitExceeded If the configuration set has reached its send rate limit.
+     */
+    public void processSendEmail(UUID templateId, UUID configurationSetId, EmailContent content, EmailDestination destination, EmailContext emailContext) throws SendRateLimitExceeded {
+        this.sendRateLimiter.acquire(content != null ? null : configurationSetId, 1);
         try{
-            validateSendEmailPayload(sendEmailDTO);
-            if(sendEmailDTO.content() != null){
+            if(content != null){
                 log.debug("Sending Email using platform sender");
                 JavaMailSender platformJavaMailSender = javaMailSenderFactory.getMailSender(Optional.empty());
                 this.prepareEmailPayload(
-                        sendEmailDTO.destination(),
+                        null,
+                        toRecipientAddresses(destination),
                         DEFAULT_FROM_ADDRESS,
-                        sendEmailDTO.content(),
-                        sendEmailDTO.context(),
-                        platformJavaMailSender
+                        content,
+                        emailContext,
+                        platformJavaMailSender,
+                        StageTags.of(null, configurationSetId)
                 );
-            }else if(sendEmailDTO.templateId() != null){
+            }else if(templateId != null){
                 try{
                     log.debug("Fetching Template From repository and processing");
-                    Template fetchedTemplate = this.templateManagementService.getTemplateById(sendEmailDTO.templateId());
-                    ConfigurationSetModel configurationSetModel = this.configurationSetManagementService.getConfigurationSetById(sendEmailDTO.configurationSetId());
+                    long templateFetchStartNanos = System.nanoTime();
+                    Template fetchedTemplate = this.templateManagementService.getTemplateById(templateId);
+                    long configurationSetStartNanos = System.nanoTime();
+                    ConfigurationSetModel configurationSetModel = this.configurationSetManagementService.getConfigurationSetById(configurationSetId);
+                    StageTags stageTags = StageTags.of(configurationSetModel.tenantId(), configurationSetId);
+                    this.sendPipelineMetrics.recordStage(SendPipelineMetrics.STAGE_TEMPLATE_FETCH, stageTags, templateFetchStartNanos, configurationSetStartNanos);
+                    this.sendPipelineMetrics.recordStage(SendPipelineMetrics.STAGE_CONFIGURATION_SET, stageTags, configurationSetStartNanos, System.nanoTime());
                     if(!Objects.equals(fetchedTemplate.tenantId().toString(), configurationSetModel.tenantId().toString())){
-                        log.error("Tenant ID mismatch for Template ID: {} and ConfigurationSet ID: {}", sendEmailDTO.templateId(), sendEmailDTO.configurationSetId());
+                        log.error("Tenant ID mismatch for Template ID: {} and ConfigurationSet ID: {}", templateId, configurationSetId);
                         throw new HeimdallBifrostBadDataException("Template does not belong to the same tenant as the configuration set");
                     }
-                    this.prepareEmailPayload(sendEmailDTO.destination(),configurationSetModel.smtpProperties().fromEmailAddress(), fetchedTemplate.content(), sendEmailDTO.context(), javaMailSenderFactory.getMailSender(Optional.ofNullable(configurationSetModel.smtpProperties())));
+                    String[] deliverableAddresses = this.emailSuppressionIndex.filterSuppressed(configurationSetModel, toRecipientAddresses(destination));
+                    if(deliverableAddresses.length == 0){
+                        log.info("All recipients are suppressed for ConfigurationSet ID: {}, skipping send", configurationSetId);
+                        return;
+                    }
+                    this.prepareEmailPayload(templateId, deliverableAddresses, configurationSetModel.smtpProperties().fromEmailAddress(), fetchedTemplate.content(), emailContext, javaMailSenderFactory.getMailSender(Optional.ofNullable(configurationSetModel.smtpProperties()), configurationSetId), stageTags);
                 }catch (TemplateNotFound e){
-                    log.error("Template not found for ID: {}", sendEmailDTO.templateId());
+                    log.error("Template not found for ID: {}", templateId);
+                    this.sendPipelineMetrics.recordFailure(e, StageTags.of(null, configurationSetId));
                     throw new HeimdallBifrostBadDataException("Template not found", e);
                 }catch (ConfigurationSetNotFound e){
-                    log.error("ConfigurationSet not found for ID: {}", sendEmailDTO.configurationSetId());
+                    log.error("ConfigurationSet not found for ID: {}", configurationSetId);
+                    this.sendPipelineMetrics.recordFailure(e, StageTags.of(null, configurationSetId));
                     throw new HeimdallBifrostBadDataException("ConfigurationSet not found", e);
                 }
 
@@ -78,6 +132,225 @@ public class SendEmailProcessor {
         }
     }
 
+    /**
+     * Sends the same template to many recipients. The template and configuration set are resolved once,
+     * suppressed recipients are dropped, the remaining messages are rendered in parallel and delivered in batches
+     * that each share one SMTP connection.
+     *
+     * @param bulkSendEmailDTO The bulk send request.
+     * @return The per-recipient delivery results, in request order.
+     */
+    public BulkSendEmailResponse processBulkSendEmail(BulkSendEmailDTO bulkSendEmailDTO) {
+        try{
+            this.sendPipelineMetrics.time(SendPipelineMetrics.STAGE_VALIDATION, StageTags.of(null, bulkSendEmailDTO != null ? bulkSendEmailDTO.configurationSetId() : null), () -> {
+                validateBulkSendEmailPayload(bulkSendEmailDTO);
+                return null;
+            });
+        }catch (RuntimeException e){
+            log.error("Validation failed for BulkSendEmailDTO: {}", e.getMessage());
+            throw new HeimdallBifrostBadDataException("Invalid BulkSendEmailDTO", e);
+        }
+        Template fetchedTemplate;
+        ConfigurationSetModel configurationSetModel;
+        StageTags stageTags;
+        try{
+            long templateFetchStartNanos = System.nanoTime();
+            fetchedTemplate = this.templateManagementService.getTemplateById(bulkSendEmailDTO.templateId());
+            long configurationSetStartNanos = System.nanoTime();
+            configurationSetModel = this.configurationSetManagementService.getConfigurationSetById(bulkSendEmailDTO.configurationSetId());
+            stageTags = StageTags.of(configurationSetModel.tenantId(), bulkSendEmailDTO.configurationSetId());
+            this.sendPipelineMetrics.recordStage(SendPipelineMetrics.STAGE_TEMPLATE_FETCH, stageTags, templateFetchStartNanos, configurationSetStartNanos);
+            this.sendPipelineMetrics.recordStage(SendPipelineMetrics.STAGE_CONFIGURATION_SET, stageTags, configurationSetStartNanos, System.nanoTime());
+        }catch (TemplateNotFound e){
+            log.error("Template not found for ID: {}", bulkSendEmailDTO.templateId());
+            this.sendPipelineMetrics.recordFailure(e, StageTags.of(null, bulkSendEmailDTO.configurationSetId()));
+            throw new HeimdallBifrostBadDataException("Template not found", e);
+        }catch (ConfigurationSetNotFound e){
+            log.error("ConfigurationSet not found for ID: {}", bulkSendEmailDTO.configurationSetId());
+            this.sendPipelineMetrics.recordFailure(e, StageTags.of(null, bulkSendEmailDTO.configurationSetId()));
+            throw new HeimdallBifrostBadDataException("ConfigurationSet not found", e);
+        }
+        if(!Objects.equals(fetchedTemplate.tenantId().toString(), configurationSetModel.tenantId().toString())){
+            log.error("Tenant ID mismatch for Template ID: {} and ConfigurationSet ID: {}", bulkSendEmailDTO.templateId(), bulkSendEmailDTO.configurationSetId());
+            throw new HeimdallBifrostBadDataException("Template does not belong to the same tenant as the configuration set");
+        }
+        JavaMailSender mailSender = javaMailSenderFactory.getMailSender(Optional.ofNullable(configurationSetModel.smtpProperties()), bulkSendEmailDTO.configurationSetId());
+        String fromEmailAddress = configurationSetModel.smtpProperties().fromEmailAddress();
+        List<BulkEmailRecipient> recipients = bulkSendEmailDTO.recipients();
+        BulkSendRecipientResult[] results = new BulkSendRecipientResult[recipients.size()];
+        MimeMessage[] renderedMessages = new MimeMessage[recipients.size()];
+        long deadlineNanos = System.nanoTime() + bulkSendConfiguration.getTimeout().toNanos();
+        int chunkSize = Math.max(1, (recipients.size() + bulkSendConfiguration.getRenderConcurrency() - 1) / bulkSendConfiguration.getRenderConcurrency());
+        List<CompletableFuture<RenderedChunk>> renderedChunks = new ArrayList<>();
+        for (int fromIndex = 0; fromIndex < recipients.size(); fromIndex += chunkSize) {
+            int chunkStart = fromIndex;
+            int chunkEnd = Math.min(recipients.size(), fromIndex + chunkSize);
+            renderedChunks.add(CompletableFuture.supplyAsync(() -> renderChunk(recipients, chunkStart, chunkEnd, bulkSendEmailDTO.templateId(), fromEmailAddress, fetchedTemplate.content(), configurationSetModel, mailSender, stageTags, deadlineNanos), bulkRenderExecutor));
+        }
+        awaitUntil(renderedChunks, deadlineNanos);
+        for (CompletableFuture<RenderedChunk> renderedChunk : renderedChunks) {
+            if (renderedChunk.isDone() && !renderedChunk.isCompletedExceptionally()) {
+                RenderedChunk chunk = renderedChunk.join();
+                System.arraycopy(chunk.messages(), 0, renderedMessages, chunk.fromIndex(), chunk.messages().length);
+                System.arraycopy(chunk.results(), 0, results, chunk.fromIndex(), chunk.results().length);
+            }
+        }
+        for (int recipientIndex = 0; recipientIndex < results.length; recipientIndex++) {
+            if (results[recipientIndex] == null && renderedMessages[recipientIndex] == null) {
+                results[recipientIndex] = BulkSendRecipientResult.failed(recipientIndex, "Timed out rendering the message");
+            }
+        }
+        deliverInBatches(mailSender, renderedMessages, results, bulkSendEmailDTO.configurationSetId(), stageTags, deadlineNanos);
+        log.debug("Processed bulk send for Template ID: {} with {} recipients", bulkSendEmailDTO.templateId(), recipients.size());
+        return BulkSendEmailResponse.of(Arrays.asList(results));
+    }
+
+    /**
+     * Render the messages of the recipients in {@code [fromIndex, toIndex)} on a render thread. Recipients left when the
+     * request's deadline passes are not rendered, the caller reports them as failed.
+     */
+    private RenderedChunk renderChunk(List<BulkEmailRecipient> recipients, int fromIndex, int toIndex, UUID templateId, String fromEmailAddress, EmailContent content, ConfigurationSetModel configurationSetModel, JavaMailSender mailSender, StageTags stageTags, long deadlineNanos) {
+        MimeMessage[] messages = new MimeMessage[toIndex - fromIndex];
+        BulkSendRecipientResult[] chunkResults = new BulkSendRecipientResult[toIndex - fromIndex];
+        for (int recipientIndex = fromIndex; recipientIndex < toIndex && System.nanoTime() - deadlineNanos < 0; recipientIndex++) {
+            BulkEmailRecipient recipient = recipients.get(recipientIndex);
+            try{
+                String[] deliverableAddresses = this.emailSuppressionIndex.filterSuppressed(configurationSetModel, toRecipientAddresses(recipient.destination()));
+                if(deliverableAddresses.length == 0){
+                    chunkResults[recipientIndex - fromIndex] = BulkSendRecipientResult.suppressed(recipientIndex);
+                    continue;
+                }
+                messages[recipientIndex - fromIndex] = renderMimeMessage(templateId, deliverableAddresses, fromEmailAddress, content, recipient.context(), mailSender, stageTags);
+            }catch (IOException | MessagingException | RuntimeException e){
+                log.debug("Failed to render bulk email for recipient index: {}, error: {}", recipientIndex, e.getMessage());
+                this.sendPipelineMetrics.recordFailure(e, stageTags);
+                chunkResults[recipientIndex - fromIndex] = BulkSendRecipientResult.failed(recipientIndex, e.getMessage());
+            }
+        }
+        return new RenderedChunk(fromIndex, messages, chunkResults);
+    }
+
+    /**
+     * The messages and results of one render chunk, both indexed from {@code fromIndex}.
+     */
+    private record RenderedChunk(int fromIndex, MimeMessage[] messages, BulkSendRecipientResult[] results) {
+    }
+
+    /**
+     * Split the rendered messages into batches and deliver the batches in parallel, each batch over a single connection.
+     * Each batch waits for its share of the configuration set's send rate before it is sent. Batches not finished by the
+     * deadline are reported as failed, since their outcome is unknown; batches that have not started are cancelled.
+     */
+    private void deliverInBatches(JavaMailSender mailSender, MimeMessage[] renderedMessages, BulkSendRecipientResult[] results, UUID configurationSetId, StageTags stageTags, long deadlineNanos) {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<CompletableFuture<BulkSendRecipientResult[]>> batchDeliveries = new ArrayList<>();
+        List<Integer> batchIndexes = new ArrayList<>(bulkSendConfiguration.getDeliveryBatchSize());
+        for (int recipientIndex = 0; recipientIndex < renderedMessages.length; recipientIndex++) {
+            if (renderedMessages[recipientIndex] == null) {
+                continue;
+            }
+            batchIndexes.add(recipientIndex);
+            if (batchIndexes.size() == bulkSendConfiguration.getDeliveryBatchSize()) {
+                batches.add(batchIndexes);
+                batchIndexes = new ArrayList<>(bulkSendConfiguration.getDeliveryBatchSize());
+            }
+        }
+        if (!batchIndexes.isEmpty()) {
+            batches.add(batchIndexes);
+        }
+        for (List<Integer> batch : batches) {
+            batchDeliveries.add(CompletableFuture.supplyAsync(() -> deliverBatch(mailSender, batch, renderedMessages, configurationSetId, stageTags), bulkDeliveryExecutor));
+        }
+        awaitUntil(batchDeliveries, deadlineNanos);
+        for (int batchIndex = 0; batchIndex < batches.size(); batchIndex++) {
+            CompletableFuture<BulkSendRecipientResult[]> batchDelivery = batchDeliveries.get(batchIndex);
+            List<Integer> batch = batches.get(batchIndex);
+            BulkSendRecipientResult[] batchResults = batchDelivery.isDone() && !batchDelivery.isCompletedExceptionally() ? batchDelivery.join() : null;
+            for (int position = 0; position < batch.size(); position++) {
+                int recipientIndex = batch.get(position);
+                results[recipientIndex] = batchResults != null ? batchResults[position] : BulkSendRecipientResult.failed(recipientIndex, "Timed out delivering the message, it may still be sent");
+            }
+        }
+    }
+
+    /**
+     * Wait for the tasks until the deadline and cancel the ones not done by then. Cancelling a task that has not
+     * started yet keeps it from running.
+     */
+    private static void awaitUntil(List<? extends CompletableFuture<?>> tasks, long deadlineNanos) {
+        try {
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Bulk send deadline passed with {} of {} tasks unfinished", tasks.stream().filter(task -> !task.isDone()).count(), tasks.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Each task handles its own failures, a failed task is reported through its recipients
+            log.error("Bulk send task failed: {}", e.getCause().getMessage());
+        }
+        tasks.forEach(task -> task.cancel(false));
+    }
+
+    /**
+     * @return The results of the recipients of the batch, in batch order.
+     */
+    private BulkSendRecipientResult[] deliverBatch(JavaMailSender mailSender, List<Integer> batchIndexes, MimeMessage[] renderedMessages, UUID configurationSetId, StageTags stageTags) {
+        MimeMessage[] batch = batchIndexes.stream().map(recipientIndex -> renderedMessages[recipientIndex]).toArray(MimeMessage[]::new);
+        BulkSendRecipientResult[] batchResults = new BulkSendRecipientResult[batch.length];
+        Map<Object, Exception> failedMessages = Map.of();
+        MailException batchFailure = null;
+        try{
+            Duration rateLimitDelay = this.sendRateLimiter.reserve(configurationSetId, batch.length);
+            if (!rateLimitDelay.isZero()) {
+                log.debug("Delaying bulk email batch by {} ms for the send rate limit", rateLimitDelay.toMillis());
+                Thread.sleep(rateLimitDelay);
+            }
+            this.sendPipelineMetrics.time(SendPipelineMetrics.STAGE_SMTP_SEND, stageTags, () -> {
+                mailSender.send(batch);
+                return null;
+            });
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            batchFailure = new MailSendException("Interrupted while waiting for the send rate limit", e);
+        }catch (MailSendException e){
+            failedMessages = e.getFailedMessages();
+            batchFailure = failedMessages.isEmpty() ? e : null;
+        }catch (MailException e){
+            batchFailure = e;
+        }
+        if (batchFailure != null) {
+            log.error("Error sending bulk email batch: {}", batchFailure.getMessage());
+            this.sendPipelineMetrics.recordFailure(batchFailure, stageTags);
+        }
+        for (int position = 0; position < batch.length; position++) {
+            int recipientIndex = batchIndexes.get(position);
+            Exception failure = batchFailure != null ? batchFailure : failedMessages.get(batch[position]);
+            if (failure != null && batchFailure == null) {
+                this.sendPipelineMetrics.recordFailure(failure, stageTags);
+            }
+            batchResults[position] = failure == null ? BulkSendRecipientResult.sent(recipientIndex) : BulkSendRecipientResult.failed(recipientIndex, failure.getMessage());
+        }
+        return batchResults;
+    }
+
+    /**
+     * Validates a send request without sending it, so that callers queueing the request can reject bad payloads upfront.
+     *
+     * @param sendEmailDTO The SendEmailDTO object to validate.
+     * @throws HeimdallBifrostBadDataException If the payload is invalid.
+     */
+    public void validateSendEmail(SendEmailDTO sendEmailDTO) {
+        try{
+            this.sendPipelineMetrics.time(SendPipelineMetrics.STAGE_VALIDATION, StageTags.of(null, sendEmailDTO != null ? sendEmailDTO.configurationSetId() : null), () -> {
+                validateSendEmailPayload(sendEmailDTO);
+                return null;
+            });
+        }catch (RuntimeException e){
+            log.error("Validation failed for SendEmailDTO: {}", e.getMessage());
+            throw new HeimdallBifrostBadDataException("Invalid SendEmailDTO", e);
+        }
+    }
+
     /**
      * This method connects to the mail server and sends the email using the provided JavaMailSender.
      *
@@ -87,22 +360,47 @@ public class SendEmailProcessor {
      * @param htmlBody The HTML body of the email.
      * @param plainTextBody The plain text body of the email.
      * @param fromEmailAddress The sender's email address.
+     * @param stageTags The tenant and configuration set tags of the send.
      */
-    private void connectAndSendEmail(JavaMailSender mailSender, String[] to, String subject, String htmlBody, String plainTextBody, String fromEmailAddress) {
+    private void connectAndSendEmail(JavaMailSender mailSender, String[] to, String subject, String htmlBody, String plainTextBody, String fromEmailAddress, StageTags stageTags) {
         try {
-            MimeMessage mimeMessage = mailSender.createMimeMessage();
-            MimeMessageHelper mimeMessageHelper = new MimeMessageHelper(mimeMessage,true);
-            mimeMessageHelper.setTo(to);
-            mimeMessageHelper.setSubject(subject);
-            mimeMessageHelper.setText(plainTextBody, htmlBody);
-            mimeMessageHelper.setFrom(fromEmailAddress);
-            mailSender.send(mimeMessage);
+            MimeMessage mimeMessage = this.sendPipelineMetrics.time(SendPipelineMetrics.STAGE_MIME_ASSEMBLY, stageTags, () -> buildMimeMessage(mailSender, to, subject, htmlBody, plainTextBody, fromEmailAddress));
+            this.sendPipelineMetrics.time(SendPipelineMetrics.STAGE_SMTP_SEND, stageTags, () -> {
+                mailSender.send(mimeMessage);
+                return null;
+            });
         } catch (MessagingException e) {
             log.error("Error sending email: {}", e.getMessage());
+            this.sendPipelineMetrics.recordFailure(e, stageTags);
             throw new HeimdallBifrostBadDataException("Error sending email", e);
+        } catch (MailException e) {
+            this.sendPipelineMetrics.recordFailure(e, stageTags);
+            throw e;
         }
 
     }
+
+    /**
+     * This method assembles the multipart MIME message without sending it.
+     *
+     * @param mailSender The JavaMailSender instance used to create the message.
+     * @param to The recipient email addresses.
+     * @param subject The subject of the email.
+     * @param htmlBody The HTML body of the email.
+     * @param plainTextBody The plain text body of the email.
+     * @param fromEmailAddress The sender's email address.
+     * @return The assembled MIME message.
+     * @throws MessagingException If the message could not be assembled.
+     */
+    static MimeMessage buildMimeMessage(JavaMailSender mailSender, String[] to, String subject, String htmlBody, String plainTextBody, String fromEmailAddress) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper mimeMessageHelper = new MimeMessageHelper(mimeMessage,true);
+        mimeMessageHelper.setTo(to);
+        mimeMessageHelper.setSubject(subject);
+        mimeMessageHelper.setText(plainTextBody, htmlBody);
+        mimeMessageHelper.setFrom(fromEmailAddress);
+        return mimeMessage;
+    }
     /**
      * This method validates the SendEmailDTO object to ensure it contains the required fields.
      *
@@ -112,33 +410,97 @@ public class SendEmailProcessor {
         assertNotNull(sendEmailDTO, "SendEmailDTO cannot be null");
         assertNotNull(sendEmailDTO.destination(), "Destination cannot be null");
         assertNotNull(sendEmailDTO.context(), "Context cannot be null");
+        if(sendEmailDTO.content() == null){
+            assertNotNull(sendEmailDTO.templateId(), "Either content or templateId must be provided");
+            assertNotNull(sendEmailDTO.configurationSetId(), "ConfigurationSetId cannot be null for templated emails");
+        }
+
+    }
 
+    /**
+     * This method validates the BulkSendEmailDTO object to ensure it contains the required fields.
+     *
+     * @param bulkSendEmailDTO The BulkSendEmailDTO object to validate.
+     */
+    private void validateBulkSendEmailPayload(BulkSendEmailDTO bulkSendEmailDTO) {
+        assertNotNull(bulkSendEmailDTO, "BulkSendEmailDTO cannot be null");
+        assertNotNull(bulkSendEmailDTO.templateId(), "TemplateId cannot be null");
+        assertNotNull(bulkSendEmailDTO.configurationSetId(), "ConfigurationSetId cannot be null");
+        assertNotNull(bulkSendEmailDTO.recipients(), "Recipients cannot be null");
+        if(bulkSendEmailDTO.recipients().isEmpty() || bulkSendEmailDTO.recipients().size() > bulkSendConfiguration.getMaxRecipients()){
+            throw new IllegalArgumentException("Recipients must contain between 1 and %d entries".formatted(bulkSendConfiguration.getMaxRecipients()));
+        }
+        for (BulkEmailRecipient recipient : bulkSendEmailDTO.recipients()) {
+            assertNotNull(recipient, "Recipient cannot be null");
+            assertNotNull(recipient.destination(), "Destination cannot be null");
+            assertNotNull(recipient.context(), "Context cannot be null");
+        }
     }
     /**
      * This method prepares the email payload by processing the template and context.
      *
-     * @param destination The email destination.
+     * @param templateId The ID of the stored template used to cache its compiled form, null for inline content.
+     * @param to The recipient email addresses.
      * @param fromEmailAddress The Sender's email address
      * @param content The fetched template to use for the email.
      * @param emailContext The email context containing user and organization information.
      * @param identifiedMailSender The JavaMailSender instance to use for sending the email.
+     * @param stageTags The tenant and configuration set tags of the send.
      * @throws IOException If an error occurs while processing the template.
      */
-    private void prepareEmailPayload(EmailDestination destination, String fromEmailAddress, EmailContent content, EmailContext emailContext, JavaMailSender identifiedMailSender) throws IOException {
+    private void prepareEmailPayload(UUID templateId, String[] to, String fromEmailAddress, EmailContent content, EmailContext emailContext, JavaMailSender identifiedMailSender, StageTags stageTags) throws IOException {
         Map<String, Object> context = convertContextToMap(emailContext);
-        String processedEmailSubject = emailTemplatingService.processString(content.subject(),context );
-        String processedEmailHtmlBody = emailTemplatingService.processString(content.htmlBodyContent(),context);
-        String processedEmailPlainTextBody = emailTemplatingService.processString(content.plainTextContent(),context);
+        String processedEmailSubject = renderStage(SendPipelineMetrics.STAGE_RENDER_SUBJECT, templateId, content.subject(), context, stageTags);
+        String processedEmailHtmlBody = renderStage(SendPipelineMetrics.STAGE_RENDER_HTML, templateId, content.htmlBodyContent(), context, stageTags);
+        String processedEmailPlainTextBody = renderStage(SendPipelineMetrics.STAGE_RENDER_TEXT, templateId, content.plainTextContent(), context, stageTags);
         this.connectAndSendEmail(
                 identifiedMailSender,
-                destination.toDestinationEmailAddress().stream().map(String::new).toArray(String[]::new),
+                to,
                 processedEmailSubject,
                 processedEmailHtmlBody,
                 processedEmailPlainTextBody,
-                fromEmailAddress
+                fromEmailAddress,
+                stageTags
         );
     }
-    private Map<String, Object> convertContextToMap(EmailContext context) {
+    /**
+     * This method renders the template for one recipient and assembles the MIME message without sending it.
+     *
+     * @param templateId The ID of the stored template used to cache its compiled form.
+     * @param to The recipient email addresses.
+     * @param fromEmailAddress The Sender's email address
+     * @param content The fetched template to use for the email.
+     * @param emailContext The email context containing user and organization information.
+     * @param identifiedMailSender The JavaMailSender instance used to create the message.
+     * @param stageTags The tenant and configuration set tags of the send.
+     * @return The assembled MIME message.
+     * @throws IOException If an error occurs while processing the template.
+     * @throws MessagingException If the message could not be assembled.
+     */
+    private MimeMessage renderMimeMessage(UUID templateId, String[] to, String fromEmailAddress, EmailContent content, EmailContext emailContext, JavaMailSender identifiedMailSender, StageTags stageTags) throws IOException, MessagingException {
+        Map<String, Object> context = convertContextToMap(emailContext);
+        String processedEmailSubject = renderStage(SendPipelineMetrics.STAGE_RENDER_SUBJECT, templateId, content.subject(), context, stageTags);
+        String processedEmailHtmlBody = renderStage(SendPipelineMetrics.STAGE_RENDER_HTML, templateId, content.htmlBodyContent(), context, stageTags);
+        String processedEmailPlainTextBody = renderStage(SendPipelineMetrics.STAGE_RENDER_TEXT, templateId, content.plainTextContent(), context, stageTags);
+        return this.sendPipelineMetrics.time(SendPipelineMetrics.STAGE_MIME_ASSEMBLY, stageTags, () -> buildMimeMessage(
+                identifiedMailSender,
+                to,
+                processedEmailSubject,
+                processedEmailHtmlBody,
+                processedEmailPlainTextBody,
+                fromEmailAddress
+        ));
+    }
+
+    private String renderStage(String stage, UUID templateId, String templateString, Map<String, Object> context, StageTags stageTags) throws IOException {
+        return this.sendPipelineMetrics.time(stage, stageTags, () -> emailTemplatingService.processString(templateId, templateString, context));
+    }
+
+    private String[] toRecipientAddresses(EmailDestination destination) {
+        return destination.toDestinationEmailAddress().stream().map(String::new).toArray(String[]::new);
+    }
+
+    static Map<String, Object> convertContextToMap(EmailContext context) {
         Map<String, Object> contextMap = new HashMap<>();
         contextMap.put("user", context.user());
         contextMap.put("organization", context.organizationContext());
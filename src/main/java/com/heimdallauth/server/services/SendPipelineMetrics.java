@@ -0,0 +1,153 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.services.smtp.AdaptiveConcurrencyLimit;
+import com.heimdallauth.server.services.smtp.SmtpCircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the stages of the send pipeline. Stage timers are published as {@code bifrost.send.stage} and
+ * failures as {@code bifrost.send.failures}, both tagged by tenant and configuration set.
+ */
+@Component
+public class SendPipelineMetrics {
+    public static final String STAGE_VALIDATION = "validation";
+    public static final String STAGE_TEMPLATE_FETCH = "template_fetch";
+    public static final String STAGE_CONFIGURATION_SET = "configuration_set";
+    public static final String STAGE_RENDER_SUBJECT = "render_subject";
+    public static final String STAGE_RENDER_HTML = "render_html";
+    public static final String STAGE_RENDER_TEXT = "render_text";
+    public static final String STAGE_MIME_ASSEMBLY = "mime_assembly";
+    public static final String STAGE_SMTP_SEND = "smtp_send";
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final Meter.MeterProvider<Timer> stageTimers;
+    private final Meter.MeterProvider<Counter> failureCounters;
+    private final Meter.MeterProvider<Timer> tenantQueueLatencyTimers;
+
+    public SendPipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.stageTimers = Timer.builder("bifrost.send.stage")
+                .description("Time spent in each stage of the send pipeline")
+                .withRegistry(meterRegistry);
+        this.failureCounters = Counter.builder("bifrost.send.failures")
+                .description("Send pipeline failures by type")
+                .withRegistry(meterRegistry);
+        this.tenantQueueLatencyTimers = Timer.builder("bifrost.outbox.tenant.latency")
+                .description("Time from queueing an outbox message to its delivery, per tenant")
+                .publishPercentileHistogram()
+                // Bound the buckets published for every tenant to the latencies a queued message can see
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(Duration.ofHours(2))
+                .withRegistry(meterRegistry);
+    }
+
+    /**
+     * Run a stage of the send pipeline and record its duration, whether or not it succeeds.
+     *
+     * @param stage     The stage name.
+     * @param stageTags The tenant and configuration set tags.
+     * @param action    The stage to run.
+     * @return The result of the stage.
+     * @throws E If the stage fails.
+     */
+    public <T, E extends Exception> T time(String stage, StageTags stageTags, Stage<T, E> action) throws E {
+        long startNanos = System.nanoTime();
+        try {
+            return action.run();
+        } finally {
+            recordStage(stage, stageTags, startNanos, System.nanoTime());
+        }
+    }
+
+    /**
+     * Record a stage that was timed by the caller, for stages whose tags are only known once they complete.
+     */
+    public void recordStage(String stage, StageTags stageTags, long startNanos, long endNanos) {
+        stageTimers.withTags("stage", stage, "tenant", stageTags.tenantId(), "configuration_set", stageTags.configurationSetId())
+                .record(endNanos - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFailure(Exception failure, StageTags stageTags) {
+        failureCounters.withTags("type", failure.getClass().getSimpleName(), "tenant", stageTags.tenantId(), "configuration_set", stageTags.configurationSetId())
+                .increment();
+    }
+
+    public void recordQueueLatency(String tenantId, Duration queueLatency) {
+        tenantQueueLatencyTimers.withTags("tenant", tenantId != null ? tenantId : UNKNOWN).record(queueLatency);
+    }
+
+    /**
+     * Timer for opening new connections to an SMTP server, including the TLS and AUTH handshakes.
+     *
+     * @param poolId The ID of the SMTP properties the pool connects with.
+     * @return The connect timer of the pool.
+     */
+    public Timer smtpConnectTimer(String poolId) {
+        return Timer.builder("bifrost.smtp.connect")
+                .description("Time spent opening SMTP connections")
+                .tag("pool", poolId)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publish the state of an SMTP host's circuit breaker as {@code bifrost.smtp.circuit.state}:
+     * 0 when closed, 1 when half-open and 2 when open.
+     *
+     * @param circuitBreaker The circuit breaker of the host.
+     */
+    public void registerCircuitBreaker(SmtpCircuitBreaker circuitBreaker) {
+        Gauge.builder("bifrost.smtp.circuit.state", circuitBreaker, breaker -> switch (breaker.getState()) {
+                    case CLOSED -> 0;
+                    case HALF_OPEN -> 1;
+                    case OPEN -> 2;
+                })
+                .description("State of the SMTP host circuit breaker")
+                .tag("host", circuitBreaker.getHost())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publish the adaptive concurrency limit of an SMTP pool as {@code bifrost.smtp.concurrency.limit}
+     * and its sessions in use as {@code bifrost.smtp.concurrency.in_flight}.
+     *
+     * @param concurrencyLimit The concurrency limit of the pool.
+     */
+    public void registerConcurrencyLimit(AdaptiveConcurrencyLimit concurrencyLimit) {
+        Gauge.builder("bifrost.smtp.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Parallel sessions currently allowed with the SMTP server")
+                .tag("pool", concurrencyLimit.getPoolId())
+                .register(meterRegistry);
+        Gauge.builder("bifrost.smtp.concurrency.in_flight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Parallel sessions in use with the SMTP server")
+                .tag("pool", concurrencyLimit.getPoolId())
+                .register(meterRegistry);
+    }
+
+    public void recordFailover(String configurationSetId) {
+        Counter.builder("bifrost.smtp.failover")
+                .description("Sends routed to the platform SMTP server because the configuration set's host was unavailable")
+                .tag("configuration_set", configurationSetId)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public record StageTags(String tenantId, String configurationSetId) {
+        public static StageTags of(Object tenantId, Object configurationSetId) {
+            return new StageTags(tenantId != null ? tenantId.toString() : UNKNOWN, configurationSetId != null ? configurationSetId.toString() : UNKNOWN);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Stage<T, E extends Exception> {
+        T run() throws E;
+    }
+}
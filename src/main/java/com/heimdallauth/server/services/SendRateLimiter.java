@@ -0,0 +1,139 @@
+package com.heimdallauth.server.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.heimdallauth.server.configuration.HeimdallBifrostRateLimitConfiguration;
+import com.heimdallauth.server.exceptions.SendRateLimitExceeded;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limiter keyed by configuration set, implemented as a generic cell rate algorithm:
+ * each bucket is a single theoretical arrival time that is advanced with compare-and-set, so there are no locks
+ * on the send path. Sends through the platform sender share one bucket.
+ * Limits are per replica: every node keeps its own buckets in memory, so a configuration set whose sends are spread over
+ * several replicas may send up to its limit on each of them. Buckets are only dropped once idle, so editing a
+ * configuration set does not hand it a fresh burst.
+ */
+@Service
+@Slf4j
+public class SendRateLimiter {
+    private static final String PLATFORM_KEY = "platform";
+    private final HeimdallBifrostRateLimitConfiguration rateLimitConfiguration;
+    private final Cache<String, Bucket> buckets;
+
+    public SendRateLimiter(HeimdallBifrostRateLimitConfiguration rateLimitConfiguration) {
+        this.rateLimitConfiguration = rateLimitConfiguration;
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(rateLimitConfiguration.getBucketIdleTimeout())
+                .build();
+    }
+
+    /**
+     * Take permits for a send, failing if the configuration set has no capacity left.
+     *
+     * @param configurationSetId The configuration set used for the send, null for the platform sender.
+     * @param permits            The number of messages to send.
+     * @throws SendRateLimitExceeded If the permits are not available, with the time after which they will be.
+     */
+    public void acquire(UUID configurationSetId, int permits) throws SendRateLimitExceeded {
+        if (!rateLimitConfiguration.isEnabled()) {
+            return;
+        }
+        long waitNanos = getBucket(configurationSetId).tryAcquire(permits, System.nanoTime());
+        if (waitNanos > 0) {
+            Duration retryAfter = Duration.ofNanos(waitNanos);
+            log.debug("Rate limit reached for configuration set: {}, retry after {} ms", configurationSetId, retryAfter.toMillis());
+            throw new SendRateLimitExceeded("Send rate limit reached for configuration set", retryAfter);
+        }
+    }
+
+    /**
+     * Reserve permits for a send that will wait for them instead of failing, e.g. a bulk delivery batch.
+     *
+     * @param configurationSetId The configuration set used for the send, null for the platform sender.
+     * @param permits            The number of messages to send.
+     * @return How long the caller must wait before sending, zero if it may send now.
+     */
+    public Duration reserve(UUID configurationSetId, int permits) {
+        if (!rateLimitConfiguration.isEnabled()) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(getBucket(configurationSetId).reserve(permits, System.nanoTime()));
+    }
+
+    private Bucket getBucket(UUID configurationSetId) {
+        String key = configurationSetId != null ? configurationSetId.toString() : PLATFORM_KEY;
+        return buckets.get(key, bucketKey -> new Bucket(rateLimitConfiguration.getLimit(bucketKey), System.nanoTime()));
+    }
+
+    /**
+     * A single GCRA bucket. All arithmetic saturates, so very low rates or large permit counts delay sends
+     * instead of overflowing into the past.
+     */
+    static final class Bucket {
+        private final long emissionIntervalNanos;
+        private final long burstToleranceNanos;
+        private final AtomicLong theoreticalArrivalNanos;
+
+        Bucket(HeimdallBifrostRateLimitConfiguration.Limit limit, long nowNanos) {
+            if (!(limit.getMessagesPerSecond() > 0) || limit.getBurst() < 1) {
+                throw new IllegalArgumentException("Rate limit needs a positive rate and a burst of at least 1");
+            }
+            // A double larger than Long.MAX_VALUE converts to Long.MAX_VALUE
+            this.emissionIntervalNanos = Math.max(1L, (long) (1_000_000_000d / limit.getMessagesPerSecond()));
+            this.burstToleranceNanos = saturatedMultiply(emissionIntervalNanos, limit.getBurst());
+            this.theoreticalArrivalNanos = new AtomicLong(nowNanos);
+        }
+
+        /**
+         * @return Zero if the permits were taken, otherwise the nanoseconds until they are available.
+         */
+        long tryAcquire(int permits, long nowNanos) {
+            while (true) {
+                long theoreticalArrival = theoreticalArrivalNanos.get();
+                long nextTheoreticalArrival = advance(theoreticalArrival, nowNanos, permits);
+                long allowedAt = nextTheoreticalArrival - burstToleranceNanos;
+                if (allowedAt - nowNanos > 0) {
+                    return allowedAt - nowNanos;
+                }
+                if (theoreticalArrivalNanos.compareAndSet(theoreticalArrival, nextTheoreticalArrival)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * @return The nanoseconds until the reserved permits may be used.
+         */
+        long reserve(int permits, long nowNanos) {
+            long nextTheoreticalArrival = theoreticalArrivalNanos.accumulateAndGet(nowNanos, (theoreticalArrival, now) -> advance(theoreticalArrival, now, permits));
+            return Math.max(0, nextTheoreticalArrival - burstToleranceNanos - nowNanos);
+        }
+
+        private long advance(long theoreticalArrival, long nowNanos, int permits) {
+            long start = theoreticalArrival - nowNanos > 0 ? theoreticalArrival : nowNanos;
+            return saturatedAdd(start, saturatedMultiply(emissionIntervalNanos, permits));
+        }
+
+        private static long saturatedMultiply(long value, long factor) {
+            try {
+                return Math.multiplyExact(value, factor);
+            } catch (ArithmeticException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        private static long saturatedAdd(long value, long addend) {
+            try {
+                return Math.addExact(value, addend);
+            } catch (ArithmeticException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+    }
+}
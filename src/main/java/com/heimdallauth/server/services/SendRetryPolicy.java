@@ -0,0 +1,121 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostRetryConfiguration;
+import com.heimdallauth.server.constants.SendFailureType;
+import com.heimdallauth.server.exceptions.SendRateLimitExceeded;
+import com.heimdallauth.server.exceptions.SmtpCircuitOpen;
+import com.heimdallauth.server.exceptions.SmtpPoolUnavailable;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.util.MailConnectException;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed send is retried and when.
+ * SMTP 4xx replies, dropped connections and rate limiting are transient; 5xx replies, rejected credentials,
+ * malformed addresses and anything that is not a mail transport error (e.g. a missing template) are permanent.
+ */
+@Component
+public class SendRetryPolicy {
+    private final HeimdallBifrostRetryConfiguration retryConfiguration;
+
+    public SendRetryPolicy(HeimdallBifrostRetryConfiguration retryConfiguration) {
+        this.retryConfiguration = retryConfiguration;
+    }
+
+    public boolean isEnabled() {
+        return retryConfiguration.isEnabled();
+    }
+
+    /**
+     * @return How often due retries are polled for when the outbox is disabled.
+     */
+    public Duration pollInterval() {
+        return retryConfiguration.getPollInterval();
+    }
+
+    /**
+     * @param failure  The failure of the last attempt.
+     * @param attempts The number of attempts made so far.
+     * @return true if the message should be attempted again.
+     */
+    public boolean shouldRetry(Exception failure, int attempts) {
+        return retryConfiguration.isEnabled() && attempts < retryConfiguration.getMaxAttempts() && classify(failure) == SendFailureType.TRANSIENT;
+    }
+
+    /**
+     * Compute when the next attempt is due using exponential backoff with equal jitter: half of the backoff is fixed and
+     * the other half random, so retries of messages that failed together spread out without ever retrying immediately.
+     *
+     * @param attempts The number of attempts made so far.
+     * @return The time of the next attempt.
+     */
+    public Instant nextAttemptAt(int attempts) {
+        double exponentialBackoffMillis = retryConfiguration.getInitialBackoff().toMillis() * Math.pow(retryConfiguration.getBackoffMultiplier(), Math.max(0, attempts - 1));
+        long backoffMillis = (long) Math.min(exponentialBackoffMillis, retryConfiguration.getMaxBackoff().toMillis());
+        long halfBackoffMillis = backoffMillis / 2;
+        long jitteredBackoffMillis = halfBackoffMillis + ThreadLocalRandom.current().nextLong(halfBackoffMillis + 1);
+        return Instant.now().plus(Duration.ofMillis(jitteredBackoffMillis));
+    }
+
+    /**
+     * Classify a failure by walking its causes, the per-message exceptions of a {@link MailSendException} and the
+     * chained exceptions of a {@link MessagingException}. A permanent SMTP reply anywhere in the chain wins.
+     *
+     * @param failure The failure to classify.
+     * @return The failure type.
+     */
+    public static SendFailureType classify(Throwable failure) {
+        Deque<Throwable> pending = new ArrayDeque<>();
+        Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        pending.push(failure);
+        boolean transientFailure = false;
+        while (!pending.isEmpty()) {
+            Throwable current = pending.pop();
+            if (!visited.add(current)) {
+                continue;
+            }
+            int smtpReturnCode = smtpReturnCode(current);
+            if (smtpReturnCode >= 500 || current instanceof AuthenticationFailedException || current instanceof MailAuthenticationException || current instanceof AddressException) {
+                return SendFailureType.PERMANENT;
+            }
+            if (smtpReturnCode >= 400 || current instanceof SendRateLimitExceeded || current instanceof SmtpCircuitOpen || current instanceof SmtpPoolUnavailable || current instanceof MailConnectException || current instanceof IOException) {
+                transientFailure = true;
+            } else if (current instanceof MessagingException messagingException && messagingException.getCause() == null && messagingException.getNextException() == null) {
+                // A bare MessagingException is raised by the transport for lost connections
+                transientFailure = true;
+            }
+            if (current instanceof MailSendException mailSendException) {
+                Collections.addAll(pending, mailSendException.getMessageExceptions());
+            }
+            if (current instanceof MessagingException messagingException && messagingException.getNextException() != null) {
+                pending.push(messagingException.getNextException());
+            }
+            if (current.getCause() != null) {
+                pending.push(current.getCause());
+            }
+        }
+        return transientFailure ? SendFailureType.TRANSIENT : SendFailureType.PERMANENT;
+    }
+
+    private static int smtpReturnCode(Throwable failure) {
+        if (failure instanceof SMTPSendFailedException smtpSendFailedException) {
+            return smtpSendFailedException.getReturnCode();
+        }
+        if (failure instanceof SMTPAddressFailedException smtpAddressFailedException) {
+            return smtpAddressFailedException.getReturnCode();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,371 @@
+package com.heimdallauth.server.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.heimdallauth.server.configuration.HeimdallBifrostSuppressionImportConfiguration;
+import com.heimdallauth.server.constants.SuppressionImportFormat;
+import com.heimdallauth.server.constants.SuppressionImportStatus;
+import com.heimdallauth.server.constants.bifrost.SuppressionListEntryType;
+import com.heimdallauth.server.constants.bifrost.SuppressionReason;
+import com.heimdallauth.server.documents.SuppressionEntryDocument;
+import com.heimdallauth.server.documents.SuppressionImportJobDocument;
+import com.heimdallauth.server.documents.SuppressionImportJobDocument.RowError;
+import com.heimdallauth.server.dto.bifrost.CreateSuppressionEntryDTO;
+import com.heimdallauth.server.exceptions.ConfigurationSetNotFound;
+import com.heimdallauth.server.exceptions.SuppressionImportNotFound;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.SUPPRESSION_IMPORT_JOB_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.SUPPRESSION_LIST_COLLECTION;
+
+/**
+ * Bulk import of suppression entries from CSV or NDJSON uploads into a configuration set.
+ * The upload is spooled to a temporary file while the request is open, so neither the request thread nor the import
+ * holds the file in memory, and is then read row by row on an import worker. Entries are deduplicated on their
+ * normalized value within a batch, and against the collection through its unique index, and written with unordered
+ * bulk inserts. After every batch the inserted entries, and the existing entries the duplicates resolved to, are added
+ * to the configuration set, so they are referenced before the suppression garbage collector considers them.
+ * Progress and per-row errors are recorded on an import job document that clients poll.
+ */
+@Service
+@Slf4j
+public class SuppressionImportService {
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+    private static final String CSV_HEADER_VALUE_COLUMN = "value";
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .enable(CsvParser.Feature.WRAP_AS_ARRAY)
+            .enable(CsvParser.Feature.TRIM_SPACES)
+            .enable(CsvParser.Feature.SKIP_EMPTY_LINES)
+            .build();
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final HeimdallBifrostSuppressionImportConfiguration importConfiguration;
+    private final ConfigurationSetManagementService configurationSetManagementService;
+    private final EmailSuppressionManagementService emailSuppressionManagementService;
+    private final AsyncTaskExecutor importExecutor;
+
+    public SuppressionImportService(MongoTemplate mongoTemplate, ObjectMapper objectMapper, HeimdallBifrostSuppressionImportConfiguration importConfiguration, ConfigurationSetManagementService configurationSetManagementService, EmailSuppressionManagementService emailSuppressionManagementService, TaskExecutorFactory taskExecutorFactory) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.importConfiguration = importConfiguration;
+        this.configurationSetManagementService = configurationSetManagementService;
+        this.emailSuppressionManagementService = emailSuppressionManagementService;
+        this.importExecutor = taskExecutorFactory.createExecutor("bifrost-suppression-import-", importConfiguration.getConcurrentImports());
+    }
+
+    /**
+     * Spool an upload and queue it for import.
+     *
+     * @param upload             The request body.
+     * @param format             The format of the upload.
+     * @param configurationSetId The configuration set the imported entries are added to.
+     * @return The queued import job.
+     * @throws IOException              If the upload cannot be spooled.
+     * @throws ConfigurationSetNotFound If the configuration set does not exist.
+     */
+    public SuppressionImportJobDocument startImport(InputStream upload, SuppressionImportFormat format, UUID configurationSetId) throws IOException, ConfigurationSetNotFound {
+        if (!this.configurationSetManagementService.configurationSetExists(configurationSetId)) {
+            throw new ConfigurationSetNotFound("Configuration set not found");
+        }
+        Path spoolFile = Files.createTempFile("bifrost-suppression-import-", ".tmp");
+        try {
+            Files.copy(upload, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+        Instant now = Instant.now();
+        SuppressionImportJobDocument importJob = SuppressionImportJobDocument.builder()
+                .id(UUID.randomUUID().toString())
+                .status(SuppressionImportStatus.QUEUED)
+                .format(format)
+                .configurationSetId(configurationSetId.toString())
+                .errors(List.of())
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        this.mongoTemplate.insert(importJob, SUPPRESSION_IMPORT_JOB_COLLECTION);
+        log.info("Queued suppression import {} of {} bytes", importJob.getId(), Files.size(spoolFile));
+        this.importExecutor.execute(() -> runImport(importJob.getId(), spoolFile, format, configurationSetId));
+        return importJob;
+    }
+
+    public SuppressionImportJobDocument getImportJob(UUID importJobId) throws SuppressionImportNotFound {
+        return Optional.ofNullable(this.mongoTemplate.findById(importJobId.toString(), SuppressionImportJobDocument.class, SUPPRESSION_IMPORT_JOB_COLLECTION))
+                .orElseThrow(() -> new SuppressionImportNotFound("Suppression import not found"));
+    }
+
+    private void runImport(String importJobId, Path spoolFile, SuppressionImportFormat format, UUID configurationSetId) {
+        updateJob(importJobId, new Update().set("status", SuppressionImportStatus.RUNNING));
+        ImportProgress progress = new ImportProgress();
+        try (ImportRowReader rows = openRows(spoolFile, format)) {
+            Map<String, SuppressionEntryDocument> batch = new LinkedHashMap<>();
+            Map<String, Long> lineNumbersByValue = new HashMap<>();
+            ImportRow row;
+            while ((row = rows.next()) != null) {
+                progress.processedRows++;
+                if (row.error() != null) {
+                    progress.addError(row.lineNumber(), row.error());
+                } else if (batch.putIfAbsent(row.entry().getNormalizedValue(), row.entry()) == null) {
+                    lineNumbersByValue.put(row.entry().getNormalizedValue(), row.lineNumber());
+                } else {
+                    progress.duplicateCount++;
+                }
+                if (batch.size() >= importConfiguration.getBatchSize()) {
+                    writeBatch(batch, lineNumbersByValue, configurationSetId, progress);
+                    reportProgress(importJobId, progress);
+                }
+            }
+            writeBatch(batch, lineNumbersByValue, configurationSetId, progress);
+            reportProgress(importJobId, progress);
+            updateJob(importJobId, new Update().set("status", SuppressionImportStatus.COMPLETED).set("completedAt", Instant.now()));
+            log.info("Suppression import {} completed: {} rows, {} inserted, {} duplicates, {} failed", importJobId, progress.processedRows, progress.insertedCount, progress.duplicateCount, progress.failedCount);
+        } catch (IOException | RuntimeException e) {
+            log.error("Suppression import {} failed: {}", importJobId, e.getMessage());
+            reportProgress(importJobId, progress);
+            updateJob(importJobId, new Update().set("status", SuppressionImportStatus.FAILED).set("failureReason", e.getMessage()).set("completedAt", Instant.now()));
+        } finally {
+            if (progress.attachedEntries) {
+                this.configurationSetManagementService.refreshConfigurationSet(configurationSetId);
+            }
+            try {
+                Files.deleteIfExists(spoolFile);
+            } catch (IOException e) {
+                log.warn("Failed to delete spooled suppression import {}: {}", spoolFile, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Insert a batch with an unordered bulk write and add it to the configuration set. A row rejected by the unique
+     * index on the normalized value is counted as a duplicate and the existing entry with that value is added instead,
+     * any other rejected row is counted as an error; the rest of the batch is inserted either way.
+     */
+    private void writeBatch(Map<String, SuppressionEntryDocument> batch, Map<String, Long> lineNumbersByValue, UUID configurationSetId, ImportProgress progress) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<SuppressionEntryDocument> entries = new ArrayList<>(batch.values());
+        BulkOperations bulkInsert = this.mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SuppressionEntryDocument.class, SUPPRESSION_LIST_COLLECTION);
+        bulkInsert.insert(entries);
+        Set<Integer> rejectedIndexes = new HashSet<>();
+        List<String> duplicateValues = new ArrayList<>();
+        try {
+            progress.insertedCount += bulkInsert.execute().getInsertedCount();
+        } catch (BulkOperationException e) {
+            progress.insertedCount += e.getResult().getInsertedCount();
+            for (BulkWriteError writeError : e.getErrors()) {
+                SuppressionEntryDocument rejectedEntry = entries.get(writeError.getIndex());
+                rejectedIndexes.add(writeError.getIndex());
+                if (writeError.getCode() == DUPLICATE_KEY_ERROR) {
+                    progress.duplicateCount++;
+                    duplicateValues.add(rejectedEntry.getNormalizedValue());
+                } else {
+                    progress.addError(lineNumbersByValue.getOrDefault(rejectedEntry.getNormalizedValue(), 0L), writeError.getMessage());
+                }
+            }
+        }
+        List<String> attachedEntryIds = new ArrayList<>(entries.size());
+        for (int index = 0; index < entries.size(); index++) {
+            if (!rejectedIndexes.contains(index)) {
+                attachedEntryIds.add(entries.get(index).getId());
+            }
+        }
+        if (!duplicateValues.isEmpty()) {
+            Query existingEntriesQuery = Query.query(Criteria.where("normalizedValue").in(duplicateValues));
+            existingEntriesQuery.fields().include("_id");
+            this.mongoTemplate.find(existingEntriesQuery, SuppressionEntryDocument.class, SUPPRESSION_LIST_COLLECTION)
+                    .forEach(existingEntry -> attachedEntryIds.add(existingEntry.getId()));
+        }
+        if (!attachedEntryIds.isEmpty()) {
+            this.emailSuppressionManagementService.attachSuppressionEntries(configurationSetId, attachedEntryIds);
+            progress.attachedEntries = true;
+        }
+        batch.clear();
+        lineNumbersByValue.clear();
+    }
+
+    private ImportRowReader openRows(Path spoolFile, SuppressionImportFormat format) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(spoolFile, StandardCharsets.UTF_8);
+        try {
+            return format == SuppressionImportFormat.NDJSON ? new NdjsonRowReader(reader) : new CsvRowReader(reader);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    private static SuppressionEntryDocument toEntry(String value, SuppressionListEntryType entryType, SuppressionReason reason) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing suppression value");
+        }
+        Instant now = Instant.now();
+        return SuppressionEntryDocument.builder()
+                .id(UUID.randomUUID().toString())
+                .entryType(entryType)
+                .value(value.trim())
+                .normalizedValue(EmailSuppressionIndex.normalize(value))
+                .reason(reason)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+
+    private static String column(List<String> columns, int index) {
+        return index < columns.size() && columns.get(index) != null ? columns.get(index).trim() : "";
+    }
+
+    /**
+     * A parsed row of an upload, holding either the entry or the reason the row was rejected.
+     */
+    private record ImportRow(long lineNumber, SuppressionEntryDocument entry, String error) {
+    }
+
+    /**
+     * Reads the rows of an upload one at a time, skipping blank lines and the CSV header.
+     */
+    private interface ImportRowReader extends Closeable {
+        /**
+         * @return The next row, or null at the end of the upload.
+         * @throws IOException If the upload cannot be read, or is malformed beyond the current row.
+         */
+        ImportRow next() throws IOException;
+    }
+
+    private final class NdjsonRowReader implements ImportRowReader {
+        private final BufferedReader reader;
+        private long lineNumber;
+
+        private NdjsonRowReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    CreateSuppressionEntryDTO suppressionEntry = objectMapper.readValue(line, CreateSuppressionEntryDTO.class);
+                    return new ImportRow(lineNumber, toEntry(suppressionEntry.value(), suppressionEntry.entryType(), suppressionEntry.reason()), null);
+                } catch (IllegalArgumentException | JsonProcessingException e) {
+                    return new ImportRow(lineNumber, null, e.getMessage());
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * CSV rows as parsed by Jackson, so quoted fields may contain commas, escaped quotes and line breaks.
+     * Rows are numbered by the line they start on.
+     */
+    private static final class CsvRowReader implements ImportRowReader {
+        private final MappingIterator<List<String>> rows;
+        private boolean firstRow = true;
+
+        private CsvRowReader(BufferedReader reader) throws IOException {
+            this.rows = CSV_MAPPER.readerForListOf(String.class).readValues(reader);
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            while (rows.hasNextValue()) {
+                long lineNumber = rows.getParser().currentTokenLocation().getLineNr();
+                List<String> columns = rows.nextValue();
+                boolean headerCandidate = firstRow;
+                firstRow = false;
+                if (column(columns, 0).isEmpty() && columns.size() <= 1) {
+                    continue;
+                }
+                if (headerCandidate && column(columns, 0).equalsIgnoreCase(CSV_HEADER_VALUE_COLUMN)) {
+                    continue;
+                }
+                try {
+                    String entryType = column(columns, 1);
+                    String reason = column(columns, 2);
+                    return new ImportRow(lineNumber, toEntry(column(columns, 0),
+                            entryType.isEmpty() ? null : SuppressionListEntryType.valueOf(entryType.toUpperCase(Locale.ROOT)),
+                            reason.isEmpty() ? null : SuppressionReason.valueOf(reason.toUpperCase(Locale.ROOT))), null);
+                } catch (IllegalArgumentException e) {
+                    return new ImportRow(lineNumber, null, e.getMessage());
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            rows.close();
+        }
+    }
+
+    private void reportProgress(String importJobId, ImportProgress progress) {
+        Update progressUpdate = new Update()
+                .set("processedRows", progress.processedRows)
+                .set("insertedCount", progress.insertedCount)
+                .set("duplicateCount", progress.duplicateCount)
+                .set("failedCount", progress.failedCount);
+        if (!progress.pendingErrors.isEmpty()) {
+            progressUpdate.push("errors").each(progress.pendingErrors.toArray());
+            progress.pendingErrors.clear();
+        }
+        updateJob(importJobId, progressUpdate);
+    }
+
+    private void updateJob(String importJobId, Update update) {
+        this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(importJobId)), update.set("updatedAt", Instant.now()), SuppressionImportJobDocument.class, SUPPRESSION_IMPORT_JOB_COLLECTION);
+    }
+
+    /**
+     * Counters of a running import. Errors beyond the reporting limit are only counted.
+     */
+    private final class ImportProgress {
+        private final List<RowError> pendingErrors = new ArrayList<>();
+        private long processedRows;
+        private long insertedCount;
+        private long duplicateCount;
+        private long failedCount;
+        private long reportedErrorCount;
+        private boolean attachedEntries;
+
+        private void addError(long lineNumber, String message) {
+            failedCount++;
+            if (reportedErrorCount < importConfiguration.getMaxReportedErrors()) {
+                reportedErrorCount++;
+                pendingErrors.add(new RowError(lineNumber, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.heimdallauth.server.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors used for blocking SMTP and Mongo work.
+ * When {@code spring.threads.virtual.enabled} is set every task runs on its own virtual thread and only the
+ * concurrency limit is enforced, otherwise a fixed pool of platform threads is used.
+ * Submitting never blocks: with virtual threads a task waits for its concurrency permit on its own thread, so a
+ * {@code @Scheduled} method handing out work is not held up by a busy executor.
+ */
+@Service
+@Slf4j
+public class TaskExecutorFactory {
+    private static final long TASK_TERMINATION_TIMEOUT_MILLIS = 30_000;
+
+    @Getter
+    private final boolean virtualThreads;
+    private final Executor cacheLoaderExecutor;
+    private final List<AutoCloseable> managedExecutors = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public TaskExecutorFactory(Environment environment) {
+        this(Threading.VIRTUAL.isActive(environment));
+    }
+
+    TaskExecutorFactory(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        if (virtualThreads) {
+            ExecutorService virtualThreadPerTaskExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            this.managedExecutors.add(virtualThreadPerTaskExecutor::close);
+            this.cacheLoaderExecutor = virtualThreadPerTaskExecutor;
+        } else {
+            this.cacheLoaderExecutor = ForkJoinPool.commonPool();
+        }
+        log.info("Using {} threads for SMTP and Mongo I/O", virtualThreads ? "virtual" : "platform");
+    }
+
+    /**
+     * Create an executor that runs at most {@code concurrency} tasks at the same time and queues the rest without bound.
+     *
+     * @param threadNamePrefix The prefix of the thread names.
+     * @param concurrency      The maximum number of concurrently running tasks.
+     * @return The executor, shut down together with the application context.
+     */
+    public AsyncTaskExecutor createExecutor(String threadNamePrefix, int concurrency) {
+        return createExecutor(threadNamePrefix, concurrency, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create an executor that runs at most {@code concurrency} tasks at the same time and queues at most
+     * {@code queueCapacity} more.
+     *
+     * @param threadNamePrefix The prefix of the thread names.
+     * @param concurrency      The maximum number of concurrently running tasks.
+     * @param queueCapacity    The maximum number of tasks waiting to run. Tasks beyond it are rejected with a
+     *                         {@link TaskRejectedException}.
+     * @return The executor, shut down together with the application context.
+     */
+    public AsyncTaskExecutor createExecutor(String threadNamePrefix, int concurrency, int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(new ConcurrencyLimit(threadNamePrefix, concurrency, queueCapacity));
+            executor.setTaskTerminationTimeout(TASK_TERMINATION_TIMEOUT_MILLIS);
+            managedExecutors.add(executor);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationMillis(TASK_TERMINATION_TIMEOUT_MILLIS);
+        executor.initialize();
+        managedExecutors.add(executor::shutdown);
+        return executor;
+    }
+
+    /**
+     * Executor for cache loaders and refreshes that query Mongo. Loads run outside the cache's internal lock, so a caller
+     * waiting on the query does not pin its carrier thread. With platform threads this is Caffeine's default executor.
+     *
+     * @return The cache loader executor.
+     */
+    public Executor cacheLoaderExecutor() {
+        return cacheLoaderExecutor;
+    }
+
+    /**
+     * Concurrency limit for virtual thread executors, enforced inside the task. Unlike the concurrency limit of
+     * {@link SimpleAsyncTaskExecutor}, which blocks the submitting thread until a running task finishes, a task is
+     * started right away and its virtual thread waits for a permit. Tasks beyond the queue capacity are rejected.
+     */
+    static final class ConcurrencyLimit implements TaskDecorator {
+        private final String executorName;
+        private final Semaphore permits;
+        private final AtomicInteger admittedTasks = new AtomicInteger();
+        private final long maxAdmittedTasks;
+
+        ConcurrencyLimit(String executorName, int concurrency, int queueCapacity) {
+            this.executorName = executorName;
+            this.permits = new Semaphore(concurrency);
+            this.maxAdmittedTasks = (long) concurrency + queueCapacity;
+        }
+
+        @Override
+        public Runnable decorate(Runnable task) {
+            if (admittedTasks.incrementAndGet() > maxAdmittedTasks) {
+                admittedTasks.decrementAndGet();
+                throw new TaskRejectedException("Executor %s has no capacity left".formatted(executorName));
+            }
+            return () -> {
+                try {
+                    permits.acquire();
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    admittedTasks.decrementAndGet();
+                }
+            };
+        }
+    }
+
+    @PreDestroy
+    void shutdownExecutors() {
+        for (AutoCloseable executor : managedExecutors) {
+            try {
+                executor.close();
+            } catch (Exception e) {
+                log.warn("Failed to shut down executor: {}", e.getMessage());
+            }
+        }
+    }
+}
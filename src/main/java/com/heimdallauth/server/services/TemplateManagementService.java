@@ -1,15 +1,18 @@
 package com.heimdallauth.server.services;
 
+import com.heimdallauth.server.dto.KeysetPage;
 import com.heimdallauth.server.dto.bifrost.CreateEmailTemplateDTO;
 import com.heimdallauth.server.models.bifrost.Template;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface TemplateManagementService {
     Template getTemplateById(UUID templateId);
     List<Template> getAllTemplatesByTenantId(UUID tenantId);
-    List<Template> getAllTemplates();
+    KeysetPage<Template> getTemplatesPage(String afterTemplateId, int limit);
+    Stream<Template> streamAllTemplates();
     List<Template> getTemplateByTenantIdAndTemplateName(UUID tenantId, String templateName);
     Template createNewTemplate(CreateEmailTemplateDTO createEmailTemplateDTO);
     List<Template> updateTemplate(UUID templateId, CreateEmailTemplateDTO createEmailTemplateDTO);
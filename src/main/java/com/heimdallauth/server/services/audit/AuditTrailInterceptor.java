@@ -0,0 +1,83 @@
+package com.heimdallauth.server.services.audit;
+
+import com.heimdallauth.server.documents.AuditTrailDocument;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Records every completed state-changing API request, i.e. management changes and send requests, in the audit trail.
+ * The event holds the handler, the route, the caller and the response status. Of the request itself only the IDs in the
+ * path and the names of the query parameters are recorded. Request bodies and parameter values are not, since they may
+ * hold message content, recipient addresses and SMTP credentials.
+ */
+@Component
+public class AuditTrailInterceptor implements HandlerInterceptor {
+    private static final Set<String> AUDITED_METHODS = Set.of(HttpMethod.POST.name(), HttpMethod.PUT.name(), HttpMethod.PATCH.name(), HttpMethod.DELETE.name());
+    private static final String ANONYMOUS = "anonymous";
+    private static final String REDACTED = "[redacted]";
+    private final AuditTrailWriter auditTrailWriter;
+
+    public AuditTrailInterceptor(AuditTrailWriter auditTrailWriter) {
+        this.auditTrailWriter = auditTrailWriter;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(handler instanceof HandlerMethod handlerMethod) || !AUDITED_METHODS.contains(request.getMethod())) {
+            return;
+        }
+        Object routePattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Principal principal = request.getUserPrincipal();
+        AuditTrailDocument auditEvent = AuditTrailDocument.builder()
+                .id(UUID.randomUUID())
+                .transactionId(UUID.randomUUID())
+                .auditClassName(handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName())
+                .action(request.getMethod() + " " + (routePattern != null ? routePattern : request.getRequestURI()))
+                .actor(principal != null ? principal.getName() : ANONYMOUS)
+                .statusCode(response.getStatus())
+                .metadata(requestMetadata(request, ex))
+                .updateTimestamp(Instant.now())
+                .build();
+        auditTrailWriter.record(auditEvent);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> requestMetadata(HttpServletRequest request, Exception ex) {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        Object pathVariables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (pathVariables instanceof Map<?, ?> pathVariableMap) {
+            ((Map<String, String>) pathVariableMap).forEach((name, value) -> metadata.put("path." + name, isId(value) ? value : REDACTED));
+        }
+        if (!request.getParameterMap().isEmpty()) {
+            metadata.put("queryParameters", String.join(",", request.getParameterMap().keySet()));
+        }
+        if (ex != null) {
+            metadata.put("exception", ex.getClass().getName());
+        }
+        return metadata;
+    }
+
+    /**
+     * Resource IDs say which resource was changed without revealing anything else, every other value is redacted.
+     */
+    private static boolean isId(String value) {
+        try {
+            UUID.fromString(value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
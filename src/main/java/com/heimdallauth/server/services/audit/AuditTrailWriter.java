@@ -0,0 +1,181 @@
+package com.heimdallauth.server.services.audit;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostAuditConfiguration;
+import com.heimdallauth.server.constants.AuditOverflowPolicy;
+import com.heimdallauth.server.documents.AuditTrailDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.AUDIT_TRAIL_COLLECTION;
+
+/**
+ * Write-behind audit trail. Request threads only put events into a bounded lock-free ring buffer; a single background
+ * writer drains it and inserts the events in batches, once a batch is full or its oldest event has waited for the
+ * flush interval. When the buffer is full the configured overflow policy either drops the event or writes it through.
+ * The writer stops after the web server, so the events of in-flight requests are still written on a graceful shutdown.
+ * <p>
+ * Meters: {@code bifrost.audit.events} by outcome (buffered, dropped, written_through, failed),
+ * {@code bifrost.audit.flush} for the batch inserts and {@code bifrost.audit.buffer.depth}.
+ */
+@Component
+@Slf4j
+public class AuditTrailWriter implements SmartLifecycle {
+    /**
+     * Stop after the web server, which stops gracefully in phase {@code DEFAULT_PHASE - 1024}.
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final MongoTemplate mongoTemplate;
+    private final HeimdallBifrostAuditConfiguration auditConfiguration;
+    private final MpscRingBuffer<AuditTrailDocument> buffer;
+    private final Counter bufferedEvents;
+    private final Counter droppedEvents;
+    private final Counter writtenThroughEvents;
+    private final Counter failedEvents;
+    private final Timer flushTimer;
+    private volatile Thread writerThread;
+    private volatile boolean running = false;
+
+    public AuditTrailWriter(MongoTemplate mongoTemplate, HeimdallBifrostAuditConfiguration auditConfiguration, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.auditConfiguration = auditConfiguration;
+        this.buffer = new MpscRingBuffer<>(auditConfiguration.getBufferCapacity());
+        this.bufferedEvents = eventCounter(meterRegistry, "buffered");
+        this.droppedEvents = eventCounter(meterRegistry, "dropped");
+        this.writtenThroughEvents = eventCounter(meterRegistry, "written_through");
+        this.failedEvents = eventCounter(meterRegistry, "failed");
+        this.flushTimer = Timer.builder("bifrost.audit.flush")
+                .description("Time to insert one batch of audit events")
+                .register(meterRegistry);
+        Gauge.builder("bifrost.audit.buffer.depth", buffer, MpscRingBuffer::size)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+    }
+
+    private static Counter eventCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("bifrost.audit.events")
+                .description("Audit events by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record an audit event without waiting for it to be written.
+     *
+     * @param auditEvent The event to record.
+     */
+    public void record(AuditTrailDocument auditEvent) {
+        if (!auditConfiguration.isEnabled()) {
+            return;
+        }
+        if (running && buffer.offer(auditEvent)) {
+            bufferedEvents.increment();
+            if (buffer.size() >= auditConfiguration.getBatchSize()) {
+                LockSupport.unpark(writerThread);
+            }
+            return;
+        }
+        if (running && auditConfiguration.getOverflowPolicy() == AuditOverflowPolicy.DROP) {
+            droppedEvents.increment();
+            log.debug("Audit buffer full, dropped audit event {}", auditEvent.getAuditClassName());
+            return;
+        }
+        // Buffer full with write-through, or the writer is not running: write on the caller
+        if (insert(List.of(auditEvent))) {
+            writtenThroughEvents.increment();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!auditConfiguration.isEnabled()) {
+            log.debug("Audit trail is disabled");
+            return;
+        }
+        this.running = true;
+        this.writerThread = Thread.ofPlatform().name("bifrost-audit-writer").daemon(true).start(this::writeBehind);
+        log.info("Audit trail writer started with a buffer of {} events", buffer.capacity());
+    }
+
+    @Override
+    public void stop() {
+        Thread writer = this.writerThread;
+        this.running = false;
+        if (writer == null) {
+            return;
+        }
+        LockSupport.unpark(writer);
+        try {
+            if (!writer.join(auditConfiguration.getShutdownTimeout())) {
+                log.warn("Audit trail writer did not finish within {}, {} audit events were not written", auditConfiguration.getShutdownTimeout(), buffer.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void writeBehind() {
+        int batchSize = auditConfiguration.getBatchSize();
+        long flushIntervalNanos = auditConfiguration.getFlushInterval().toNanos();
+        long idleParkNanos = Math.min(flushIntervalNanos, MAX_IDLE_PARK_NANOS);
+        List<AuditTrailDocument> batch = new ArrayList<>(batchSize);
+        long batchDeadline = 0;
+        while (running) {
+            boolean wasEmpty = batch.isEmpty();
+            int drained = buffer.drainTo(batch, batchSize - batch.size());
+            if (wasEmpty && drained > 0) {
+                batchDeadline = System.nanoTime() + flushIntervalNanos;
+            }
+            if (batch.size() >= batchSize || (!batch.isEmpty() && System.nanoTime() - batchDeadline >= 0)) {
+                flush(batch);
+            } else if (drained == 0) {
+                LockSupport.parkNanos(this, idleParkNanos);
+            }
+        }
+        // Shutting down: write everything that is left, requests still completing may add a few more events
+        do {
+            flush(batch);
+        } while (buffer.drainTo(batch, batchSize) > 0);
+    }
+
+    private void flush(List<AuditTrailDocument> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        flushTimer.record(() -> insert(batch));
+        batch.clear();
+    }
+
+    private boolean insert(List<AuditTrailDocument> auditEvents) {
+        try {
+            this.mongoTemplate.insert(auditEvents, AUDIT_TRAIL_COLLECTION);
+            return true;
+        } catch (RuntimeException e) {
+            failedEvents.increment(auditEvents.size());
+            log.error("Failed to write {} audit events: {}", auditEvents.size(), e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.heimdallauth.server.services.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer.
+ * Every slot carries a sequence number: a producer claims the slot at the tail with a CAS when the sequence equals the
+ * tail position, writes the element and publishes it by advancing the sequence. The consumer takes a slot once its
+ * sequence shows it published and hands it back to the producers one lap ahead. A full buffer is reported to the
+ * producer instead of blocking it.
+ *
+ * @param <E> The element type.
+ */
+public final class MpscRingBuffer<E> {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param requestedCapacity The minimum capacity, rounded up to a power of two.
+     */
+    public MpscRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 1 || requestedCapacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring buffer capacity must be between 1 and 2^30, got " + requestedCapacity);
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity) == requestedCapacity ? requestedCapacity : Integer.highestOneBit(requestedCapacity) << 1;
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            sequences.set(slot, slot);
+        }
+    }
+
+    /**
+     * Add an element at the tail. Safe to call from any thread.
+     *
+     * @param element The element to add.
+     * @return false if the buffer is full.
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                // The consumer has not taken the element written one lap ago yet
+                return false;
+            }
+            // Otherwise another producer claimed the slot first, retry with the new tail
+        }
+    }
+
+    /**
+     * Move published elements from the head to a list. Must only be called from the consumer thread.
+     *
+     * @param target      The list to add the elements to.
+     * @param maxElements The maximum number of elements to move.
+     * @return The number of elements moved.
+     */
+    public int drainTo(List<? super E> target, int maxElements) {
+        long position = head;
+        int drained = 0;
+        while (drained < maxElements) {
+            int slot = (int) position & mask;
+            if (sequences.get(slot) != position + 1) {
+                // Empty, or the producer that claimed the slot has not published its element yet
+                break;
+            }
+            target.add(elements.get(slot));
+            elements.lazySet(slot, null);
+            sequences.set(slot, position + capacity);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    /**
+     * @return The number of claimed slots not yet drained, including slots whose element is still being published.
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - head));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,258 @@
+package com.heimdallauth.server.services.mongo;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostCacheConfiguration;
+import com.heimdallauth.server.documents.ChangeStreamResumeTokenDocument;
+import com.heimdallauth.server.services.EmailSuppressionIndex;
+import com.heimdallauth.server.services.JavaMailSenderFactory;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListener;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.*;
+
+/**
+ * Watches the collections backing the local caches through MongoDB change streams and evicts the matching
+ * cache entries, so that a write handled by one replica is visible on every replica without waiting for the TTL.
+ * The last processed resume token is kept per collection, so a subscription opened again after a failure picks up where
+ * it left off. It is also stored per node and collection, at most every few events or seconds rather than on every event,
+ * under the configured node identity, so a restarted node resumes from its own tokens and replays the deletions it missed.
+ * Send profiles are watched as well, because a replica that reloads a configuration set between the master write and
+ * the profile refresh would otherwise keep the stale profile until the TTL.
+ * Suppression entries are applied to the suppression indexes in place instead of evicting them: written entries are
+ * read with the full document and added to the indexes of the configuration sets they are attached to, deleted entries
+ * are removed.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationChangeStreamListener implements SmartLifecycle {
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final List<String> WATCHED_COLLECTIONS = List.of(CONFIGURATION_SET_COLLECTION, SEND_PROFILE_COLLECTION, SMTP_PROPERTIES_COLLECTION, TEMPLATES_COLLECTION, SUPPRESSION_LIST_COLLECTION);
+    private final MongoTemplate mongoTemplate;
+    private final JavaMailSenderFactory javaMailSenderFactory;
+    private final ConfigurationServiceManagementServiceMongoImpl configurationSetService;
+    private final TemplateManagementServiceMongoImpl templateService;
+    private final EmailSuppressionIndex emailSuppressionIndex;
+    private final HeimdallBifrostCacheConfiguration cacheConfiguration;
+    private final TaskScheduler taskScheduler;
+    private final String nodeId;
+    private final ConcurrentMap<String, ResumePosition> resumePositions = new ConcurrentHashMap<>();
+    private volatile MessageListenerContainer listenerContainer;
+    private volatile boolean running = false;
+
+    public CacheInvalidationChangeStreamListener(MongoTemplate mongoTemplate, JavaMailSenderFactory javaMailSenderFactory, ConfigurationServiceManagementServiceMongoImpl configurationSetService, TemplateManagementServiceMongoImpl templateService, EmailSuppressionIndex emailSuppressionIndex, HeimdallBifrostCacheConfiguration cacheConfiguration, TaskScheduler taskScheduler) {
+        this.mongoTemplate = mongoTemplate;
+        this.javaMailSenderFactory = javaMailSenderFactory;
+        this.configurationSetService = configurationSetService;
+        this.templateService = templateService;
+        this.emailSuppressionIndex = emailSuppressionIndex;
+        this.cacheConfiguration = cacheConfiguration;
+        this.taskScheduler = taskScheduler;
+        this.nodeId = cacheConfiguration.getChangeStreamNodeId();
+    }
+
+    /**
+     * The last processed resume token of a collection and how much of it is not stored yet. Only updated by the
+     * container thread of the collection's subscription, the token is read when the subscription is opened again.
+     */
+    private static final class ResumePosition {
+        private volatile BsonDocument resumeToken;
+        private int unsavedEvents;
+        private long lastSavedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void start() {
+        if (!cacheConfiguration.isChangeStreamsEnabled()) {
+            log.debug("Change stream cache invalidation is disabled");
+            return;
+        }
+        this.listenerContainer = new DefaultMessageListenerContainer(mongoTemplate);
+        this.listenerContainer.start();
+        this.running = true;
+        WATCHED_COLLECTIONS.forEach(this::subscribe);
+        log.info("Watching {} for cache invalidation as node {}", WATCHED_COLLECTIONS, nodeId);
+    }
+
+    @Override
+    public void stop() {
+        this.running = false;
+        if (this.listenerContainer != null) {
+            this.listenerContainer.stop();
+            // The stored tokens are kept for the restart, those of retired nodes expire after the retention
+            resumePositions.forEach((collectionName, resumePosition) -> {
+                if (resumePosition.resumeToken != null && resumePosition.unsavedEvents > 0) {
+                    saveResumeToken(collectionName, resumePosition.resumeToken);
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void subscribe(String collectionName) {
+        MessageListener<ChangeStreamDocument<Document>, Document> listener = message -> onChange(collectionName, message.getRaw());
+        ChangeStreamRequest.ChangeStreamRequestBuilder<Document> requestBuilder = ChangeStreamRequest.builder(listener).collection(collectionName);
+        if (SUPPRESSION_LIST_COLLECTION.equals(collectionName)) {
+            requestBuilder.fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        }
+        Optional.ofNullable(resumePositions.get(collectionName))
+                .map(resumePosition -> (BsonValue) resumePosition.resumeToken)
+                .or(() -> loadResumeToken(collectionName))
+                .ifPresent(requestBuilder::resumeAfter);
+        this.listenerContainer.register(requestBuilder.build(), Document.class, error -> onError(collectionName, error));
+    }
+
+    private void onChange(String collectionName, ChangeStreamDocument<Document> changeEvent) {
+        if (changeEvent == null) {
+            return;
+        }
+        OperationType operationType = changeEvent.getOperationType();
+        Optional<String> documentId = extractDocumentId(changeEvent.getDocumentKey());
+        log.debug("Received {} on {} for document: {}", operationType, collectionName, documentId.orElse(null));
+        if (documentId.isEmpty() || operationType == OperationType.DROP || operationType == OperationType.DROP_DATABASE || operationType == OperationType.RENAME || operationType == OperationType.INVALIDATE) {
+            evictAll(collectionName);
+        } else {
+            evict(collectionName, operationType, documentId.get(), changeEvent.getFullDocument());
+        }
+        if (changeEvent.getResumeToken() != null) {
+            advanceResumeToken(collectionName, changeEvent.getResumeToken());
+        }
+    }
+
+    private void evict(String collectionName, OperationType operationType, String documentId, Document fullDocument) {
+        try {
+            switch (collectionName) {
+                case CONFIGURATION_SET_COLLECTION -> {
+                    configurationSetService.evictConfigurationSet(UUID.fromString(documentId));
+                    if (operationType == OperationType.DELETE) {
+                        emailSuppressionIndex.deleteConfigurationSet(documentId);
+                    }
+                }
+                case SEND_PROFILE_COLLECTION -> configurationSetService.evictConfigurationSet(UUID.fromString(documentId));
+                case SMTP_PROPERTIES_COLLECTION -> {
+                    javaMailSenderFactory.evictMailSender(documentId);
+                    configurationSetService.evictAllConfigurationSets();
+                }
+                case TEMPLATES_COLLECTION -> templateService.evictTemplate(UUID.fromString(documentId));
+                case SUPPRESSION_LIST_COLLECTION -> {
+                    if (operationType == OperationType.DELETE) {
+                        emailSuppressionIndex.removeSuppressionEntry(UUID.fromString(documentId));
+                    } else if (fullDocument != null) {
+                        emailSuppressionIndex.addSuppressionEntry(documentId, fullDocument.getString("value"), fullDocument.getList("configurationSetIds", String.class, List.of()));
+                    }
+                }
+                default -> log.warn("Received change event for unwatched collection: {}", collectionName);
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Unexpected document ID {} in {}, evicting all entries", documentId, collectionName);
+            evictAll(collectionName);
+        }
+    }
+
+    private void evictAll(String collectionName) {
+        switch (collectionName) {
+            case CONFIGURATION_SET_COLLECTION, SEND_PROFILE_COLLECTION -> configurationSetService.evictAllConfigurationSets();
+            case SMTP_PROPERTIES_COLLECTION -> {
+                javaMailSenderFactory.evictAllMailSenders();
+                configurationSetService.evictAllConfigurationSets();
+            }
+            case TEMPLATES_COLLECTION -> templateService.evictAllTemplates();
+            case SUPPRESSION_LIST_COLLECTION -> emailSuppressionIndex.evictAllConfigurationSets();
+            default -> log.warn("Received change event for unwatched collection: {}", collectionName);
+        }
+    }
+
+    /**
+     * A failed subscription is opened again after a delay, scheduled on the task scheduler so the container thread is not
+     * held. If the resume token fell off the oplog, changes may have been missed, so the token is dropped and the caches
+     * for that collection are cleared before watching from now on.
+     */
+    private void onError(String collectionName, Throwable error) {
+        if (!running) {
+            return;
+        }
+        if (error instanceof MongoException mongoException && mongoException.getCode() == CHANGE_STREAM_HISTORY_LOST) {
+            log.warn("Change stream history lost for {}, clearing caches and resuming from now", collectionName);
+            resumePositions.remove(collectionName);
+            deleteResumeToken(collectionName);
+            evictAll(collectionName);
+        } else {
+            log.error("Change stream for {} failed: {}", collectionName, error.getMessage());
+        }
+        taskScheduler.schedule(() -> {
+            if (running) {
+                subscribe(collectionName);
+            }
+        }, Instant.now().plus(cacheConfiguration.getChangeStreamRetryDelay()));
+    }
+
+    private Optional<String> extractDocumentId(BsonDocument documentKey) {
+        if (documentKey == null || !documentKey.containsKey("_id")) {
+            return Optional.empty();
+        }
+        BsonValue documentId = documentKey.get("_id");
+        return documentId.isString() ? Optional.of(documentId.asString().getValue()) : Optional.empty();
+    }
+
+    private String resumeTokenId(String collectionName) {
+        return "%s:%s".formatted(nodeId, collectionName);
+    }
+
+    private Optional<BsonValue> loadResumeToken(String collectionName) {
+        return Optional.ofNullable(this.mongoTemplate.findById(resumeTokenId(collectionName), ChangeStreamResumeTokenDocument.class, CHANGE_STREAM_RESUME_TOKEN_COLLECTION))
+                .map(ChangeStreamResumeTokenDocument::getResumeToken)
+                .map(BsonDocument::parse);
+    }
+
+    private void advanceResumeToken(String collectionName, BsonDocument resumeToken) {
+        ResumePosition resumePosition = resumePositions.computeIfAbsent(collectionName, ignored -> new ResumePosition());
+        resumePosition.resumeToken = resumeToken;
+        resumePosition.unsavedEvents++;
+        long now = System.nanoTime();
+        if (resumePosition.unsavedEvents >= cacheConfiguration.getChangeStreamResumeTokenSaveEvents()
+                || now - resumePosition.lastSavedNanos >= cacheConfiguration.getChangeStreamResumeTokenSaveInterval().toNanos()) {
+            saveResumeToken(collectionName, resumeToken);
+            resumePosition.unsavedEvents = 0;
+            resumePosition.lastSavedNanos = now;
+        }
+    }
+
+    private void saveResumeToken(String collectionName, BsonDocument resumeToken) {
+        Update update = new Update()
+                .set("nodeId", nodeId)
+                .set("collectionName", collectionName)
+                .set("resumeToken", resumeToken.toJson())
+                .set("updatedAt", Instant.now());
+        this.mongoTemplate.upsert(Query.query(Criteria.where("_id").is(resumeTokenId(collectionName))), update, ChangeStreamResumeTokenDocument.class, CHANGE_STREAM_RESUME_TOKEN_COLLECTION);
+    }
+
+    private void deleteResumeToken(String collectionName) {
+        this.mongoTemplate.remove(Query.query(Criteria.where("_id").is(resumeTokenId(collectionName))), ChangeStreamResumeTokenDocument.class, CHANGE_STREAM_RESUME_TOKEN_COLLECTION);
+    }
+}
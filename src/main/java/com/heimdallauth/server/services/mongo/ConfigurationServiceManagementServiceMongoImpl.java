@@ -1,41 +1,56 @@
 package com.heimdallauth.server.services.mongo;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.heimdallauth.server.configuration.HeimdallBifrostCacheConfiguration;
 import com.heimdallauth.server.constants.bifrost.EmailConnectionType;
 import com.heimdallauth.server.documents.ConfigurationSetAggregationModel;
 import com.heimdallauth.server.documents.ConfigurationSetMasterDocument;
 import com.heimdallauth.server.documents.SmtpPropertiesDocument;
 import com.heimdallauth.server.documents.SuppressionEntryDocument;
+import com.heimdallauth.server.dto.KeysetPage;
 import com.heimdallauth.server.dto.bifrost.CreateConfigurationSetDTO;
 import com.heimdallauth.server.dto.bifrost.CreateSmtpPropertiesDTO;
 import com.heimdallauth.server.dto.bifrost.CreateSuppressionEntryDTO;
 import com.heimdallauth.server.exceptions.ConfigurationSetAlreadyExists;
 import com.heimdallauth.server.exceptions.ConfigurationSetNotFound;
 import com.heimdallauth.server.exceptions.SmtpPropertiesExist;
+import com.heimdallauth.server.exceptions.SuppressionEntryAlreadyExists;
 import com.heimdallauth.server.exceptions.SuppressionListNotFound;
 import com.heimdallauth.server.models.bifrost.ConfigurationSetModel;
 import com.heimdallauth.server.models.bifrost.SmtpProperties;
 import com.heimdallauth.server.models.bifrost.SuppressionEntryModel;
 import com.heimdallauth.server.services.ConfigurationSetManagementService;
+import com.heimdallauth.server.services.EmailSuppressionIndex;
 import com.heimdallauth.server.services.EmailSuppressionManagementService;
 import com.heimdallauth.server.services.SmtpPropertiesManagementService;
+import com.heimdallauth.server.services.TaskExecutorFactory;
 import com.heimdallauth.server.utils.mapper.ConfigurationMapper;
 import com.heimdallauth.server.utils.mapper.SuppressionEntryMapper;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static com.heimdallauth.server.constants.MongoCollectionNames.SEND_PROFILE_COLLECTION;
 import static org.bson.assertions.Assertions.assertNotNull;
 
 @Repository
@@ -45,14 +60,25 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
     private static final String COLLECTION_CONFIGURATION_SETS = "configuration_sets";
     private static final String COLLECTION_SUPPRESSION_LIST = "suppression_list";
     private static final String COLLECTION_SMTP_PROPERTIES = "smtp_properties";
+    private static final int STREAM_BATCH_SIZE = 1000;
     private final MongoTemplate mongoTemplate;
     private final ConfigurationMapper configurationMapper;
     private final SuppressionEntryMapper suppressionEntryMapper;
+    private final EmailSuppressionIndex emailSuppressionIndex;
+    private final AsyncCache<UUID, ConfigurationSetModel> configurationSetCache;
 
-    public ConfigurationServiceManagementServiceMongoImpl(MongoTemplate mongoTemplate, ConfigurationMapper configurationMapper, SuppressionEntryMapper suppressionEntryMapper) {
+    public ConfigurationServiceManagementServiceMongoImpl(MongoTemplate mongoTemplate, ConfigurationMapper configurationMapper, SuppressionEntryMapper suppressionEntryMapper, EmailSuppressionIndex emailSuppressionIndex, HeimdallBifrostCacheConfiguration cacheConfiguration, MeterRegistry meterRegistry, TaskExecutorFactory taskExecutorFactory) {
         this.mongoTemplate = mongoTemplate;
         this.configurationMapper = configurationMapper;
         this.suppressionEntryMapper = suppressionEntryMapper;
+        this.emailSuppressionIndex = emailSuppressionIndex;
+        this.configurationSetCache = Caffeine.newBuilder()
+                .expireAfterWrite(cacheConfiguration.getConfigurationSetTtl())
+                .maximumSize(cacheConfiguration.getConfigurationSetMaxSize())
+                .executor(taskExecutorFactory.cacheLoaderExecutor())
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, configurationSetCache, "bifrost.configuration-sets");
     }
 
     /**
@@ -82,11 +108,14 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
                 .isEnabled(false)
                 .configurationSetName(createConfigurationSetPayload.configurationSetName())
                 .configurationSetDescription(createConfigurationSetPayload.configurationSetDescription())
-                .suppressionListIds(createConfigurationSetPayload.suppressionEntryIds().stream().map(UUID::toString).collect(Collectors.toList()))
                 .createdAt(Instant.now())
                 .updatedAt(Instant.now())
                 .build();
         this.mongoTemplate.save(configurationSetMasterDocument, COLLECTION_CONFIGURATION_SETS);
+        if (createConfigurationSetPayload.suppressionEntryIds() != null && !createConfigurationSetPayload.suppressionEntryIds().isEmpty()) {
+            this.attachSuppressionEntries(configurationSetId, createConfigurationSetPayload.suppressionEntryIds().stream().map(UUID::toString).toList());
+        }
+        this.refreshSendProfiles(List.of(configurationSetId));
         return this.getConfigurationSetById(configurationSetId);
     }
 
@@ -98,12 +127,14 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
      * @return true if the configuration set exists, false otherwise.
      */
     private boolean isConfigurationSetExists(String configurationSetName, UUID tenantId) {
-        Query configurationSetSearchQueryForTenant = Query.query(Criteria.where("tenantId").is(tenantId).and("configurationSetName").is(configurationSetName));
+        Query configurationSetSearchQueryForTenant = Query.query(Criteria.where("tenantId").is(tenantId.toString()).and("configurationSetName").is(configurationSetName));
         return this.mongoTemplate.exists(configurationSetSearchQueryForTenant, ConfigurationSetMasterDocument.class, COLLECTION_CONFIGURATION_SETS);
     }
 
     /**
-     * Get a configuration set by its ID.
+     * Get a configuration set by its ID. Results are served from a local read-through cache,
+     * which every write to the configuration set or its SMTP properties invalidates.
+     * Misses are loaded on the cache loader executor with a point read of the configuration set's send profile.
      *
      * @param configurationSetId The ID of the configuration set to retrieve.
      * @return The ConfigurationSetModel associated with the given ID.
@@ -111,11 +142,116 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
      */
     @Override
     public ConfigurationSetModel getConfigurationSetById(UUID configurationSetId) throws ConfigurationSetNotFound {
-        ConfigurationSetAggregationModel aggregationResult = getConfigurationSetMasterDocumentById(configurationSetId);
-        if (aggregationResult != null) {
-            return configurationMapper.toConfigurationSetModel(aggregationResult);
+        try {
+            return this.configurationSetCache.get(configurationSetId, this::loadConfigurationSetById).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
-        return null;
+    }
+
+    /**
+     * Load a configuration set from its send profile. Configuration sets written before send profiles existed have none,
+     * so a miss materializes the profile once and reads it again.
+     */
+    private ConfigurationSetModel loadConfigurationSetById(UUID configurationSetId) throws ConfigurationSetNotFound {
+        ConfigurationSetAggregationModel sendProfile = findSendProfile(configurationSetId);
+        if (sendProfile == null) {
+            log.debug("No send profile for configuration set: {}, materializing it", configurationSetId);
+            this.refreshSendProfiles(List.of(configurationSetId));
+            sendProfile = findSendProfile(configurationSetId);
+        }
+        if (sendProfile == null) {
+            throw new ConfigurationSetNotFound("Configuration set not found");
+        }
+        return configurationMapper.toConfigurationSetModel(sendProfile);
+    }
+
+    private ConfigurationSetAggregationModel findSendProfile(UUID configurationSetId) {
+        return this.mongoTemplate.findById(configurationSetId.toString(), ConfigurationSetAggregationModel.class, SEND_PROFILE_COLLECTION);
+    }
+
+    /**
+     * Rebuild the send profiles of the given configuration sets. A send profile is the configuration set master document
+     * with its SMTP properties and suppression entries embedded, written to its own collection under the configuration set's ID,
+     * so the send path resolves a configuration set with a single read by {@code _id} instead of running the lookups.
+     * The profiles are rebuilt server side by running the lookup aggregation into the profile collection; the profiles of
+     * configuration sets that no longer exist are removed.
+     *
+     * @param configurationSetIds The IDs of the configuration sets whose master data, SMTP properties or suppression entries changed.
+     */
+    private void refreshSendProfiles(Collection<UUID> configurationSetIds) {
+        if (configurationSetIds.isEmpty()) {
+            return;
+        }
+        List<String> profileIds = configurationSetIds.stream().map(UUID::toString).toList();
+        List<AggregationOperation> pipeline = new ArrayList<>(configurationSetLookupPipeline(profileIds));
+        pipeline.add(Aggregation.merge()
+                .intoCollection(SEND_PROFILE_COLLECTION)
+                .on("_id")
+                .whenMatched(MergeOperation.WhenDocumentsMatch.replaceDocument())
+                .whenNotMatched(MergeOperation.WhenDocumentsDontMatch.insertNewDocument())
+                .build());
+        this.mongoTemplate.aggregate(Aggregation.newAggregation(pipeline), COLLECTION_CONFIGURATION_SETS, ConfigurationSetAggregationModel.class);
+        Query existingConfigurationSetsQuery = Query.query(Criteria.where("_id").in(profileIds));
+        existingConfigurationSetsQuery.fields().include("_id");
+        Set<String> existingConfigurationSetIds = this.mongoTemplate.find(existingConfigurationSetsQuery, ConfigurationSetMasterDocument.class, COLLECTION_CONFIGURATION_SETS)
+                .stream().map(ConfigurationSetMasterDocument::getConfigurationId).collect(Collectors.toSet());
+        List<String> orphanedProfileIds = profileIds.stream().filter(profileId -> !existingConfigurationSetIds.contains(profileId)).toList();
+        if (!orphanedProfileIds.isEmpty()) {
+            this.mongoTemplate.remove(Query.query(Criteria.where("_id").in(orphanedProfileIds)), SEND_PROFILE_COLLECTION);
+        }
+        log.debug("Refreshed send profiles for configuration sets: {}", configurationSetIds);
+    }
+
+    private static List<AggregationOperation> configurationSetLookupPipeline(List<String> configurationSetIds) {
+        return List.of(
+                Aggregation.match(Criteria.where("_id").in(configurationSetIds)),
+                Aggregation.lookup(COLLECTION_SMTP_PROPERTIES, "smtpPropertiesId", "_id", "smtpProperties"),
+                Aggregation.unwind("smtpProperties", true)
+        );
+    }
+
+    /**
+     * Check whether a configuration set exists, without loading it.
+     *
+     * @param configurationSetId The ID of the configuration set.
+     * @return true if the configuration set exists.
+     */
+    @Override
+    public boolean configurationSetExists(UUID configurationSetId) {
+        return this.mongoTemplate.exists(Query.query(Criteria.where("_id").is(configurationSetId.toString())), ConfigurationSetMasterDocument.class, COLLECTION_CONFIGURATION_SETS);
+    }
+
+    /**
+     * Rebuild the send profile of a configuration set and drop it from the local caches, after writes that bypassed the
+     * per-write refresh, e.g. the batches of a suppression import.
+     *
+     * @param configurationSetId The ID of the configuration set.
+     */
+    @Override
+    public void refreshConfigurationSet(UUID configurationSetId) {
+        this.refreshSendProfiles(List.of(configurationSetId));
+        this.evictConfigurationSet(configurationSetId);
+    }
+
+    /**
+     * Drop a configuration set from the local cache. The suppression index is built from the suppression list rather
+     * than the configuration set, and is kept.
+     *
+     * @param configurationSetId The ID of the configuration set to evict.
+     */
+    public void evictConfigurationSet(UUID configurationSetId) {
+        this.configurationSetCache.synchronous().invalidate(configurationSetId);
+    }
+
+    /**
+     * Drop all configuration sets from the local cache, used when a change may affect any of them.
+     */
+    public void evictAllConfigurationSets() {
+        this.configurationSetCache.synchronous().invalidateAll();
     }
 
     /**
@@ -136,6 +272,8 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
         }
         Update updateSpec = Update.update("isEnabled", isEnabled);
         UpdateResult result = this.mongoTemplate.updateMulti(configurationSetSearchQuery, updateSpec, ConfigurationSetMasterDocument.class, COLLECTION_CONFIGURATION_SETS);
+        this.refreshSendProfiles(List.of(configurationSetId));
+        this.evictConfigurationSet(configurationSetId);
         if (result.getModifiedCount() > 0) {
             log.debug("Updated configuration set with ID: {}. Updated count: {}", configurationSetId, result.getModifiedCount());
             return this.getConfigurationSetById(configurationSetId);
@@ -147,6 +285,8 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
         Query configurationSetMasterSearchQuery = Query.query(Criteria.where("_id").is(configurationSetId.toString()));
         Update updateSpec = Update.update("smtpPropertiesId", Objects.nonNull(smtpPropertiesId) ? smtpPropertiesId.toString() : null);
         UpdateResult mongoUpdateResult = this.mongoTemplate.updateMulti(configurationSetMasterSearchQuery, updateSpec, ConfigurationSetMasterDocument.class, COLLECTION_CONFIGURATION_SETS);
+        this.refreshSendProfiles(List.of(configurationSetId));
+        this.evictConfigurationSet(configurationSetId);
         if (mongoUpdateResult.getModifiedCount() > 0) {
             log.debug("Updated configuration set with ID: {}, Set smtpProperties = {}. Updated count: {}", configurationSetId, smtpPropertiesId, mongoUpdateResult.getModifiedCount());
         } else {
@@ -168,7 +308,8 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
     }
 
     /**
-     * Delete a configuration set by its ID.
+     * Delete a configuration set by its ID and detach it from its suppression entries, so that entries no other
+     * configuration set references become eligible for garbage collection.
      *
      * @param configurationSetId The ID of the configuration set to delete.
      */
@@ -176,6 +317,10 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
     public void deleteConfigurationSetById(UUID configurationSetId) {
         Query deleteConfigurationSetQuery = Query.query(Criteria.where("_id").is(configurationSetId.toString()));
         DeleteResult deleteResult = this.mongoTemplate.remove(deleteConfigurationSetQuery, COLLECTION_CONFIGURATION_SETS);
+        this.mongoTemplate.remove(deleteConfigurationSetQuery, SEND_PROFILE_COLLECTION);
+        this.mongoTemplate.updateMulti(Query.query(Criteria.where("configurationSetIds").is(configurationSetId.toString())), new Update().pull("configurationSetIds", configurationSetId.toString()), SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST);
+        this.evictConfigurationSet(configurationSetId);
+        this.emailSuppressionIndex.deleteConfigurationSet(configurationSetId.toString());
         if (deleteResult.getDeletedCount() > 0) {
             log.debug("Deleted configuration set with ID: {}. Deleted count: {}", configurationSetId, deleteResult.getDeletedCount());
         } else {
@@ -191,12 +336,7 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
      * @throws ConfigurationSetNotFound If no configuration set is found for the given ID.
      */
     private List<ConfigurationSetAggregationModel> getConfigurationSetMasterDocumentById(List<UUID> configurationSetIds) throws ConfigurationSetNotFound {
-        Aggregation configurationSetAggregation = Aggregation.newAggregation(
-                Aggregation.match(Criteria.where("_id").in(configurationSetIds.stream().map(UUID::toString).toList())),
-                Aggregation.lookup(COLLECTION_SUPPRESSION_LIST, "suppressionListIds", "_id", "suppressionEntries"),
-                Aggregation.lookup(COLLECTION_SMTP_PROPERTIES, "smtpPropertiesId", "_id", "smtpProperties"),
-                Aggregation.unwind("smtpProperties", true)
-        );
+        Aggregation configurationSetAggregation = Aggregation.newAggregation(configurationSetLookupPipeline(configurationSetIds.stream().map(UUID::toString).toList()));
         return this.mongoTemplate.aggregate(configurationSetAggregation, COLLECTION_CONFIGURATION_SETS, ConfigurationSetAggregationModel.class).getMappedResults();
     }
 
@@ -228,14 +368,12 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
     public ConfigurationSetModel getConfigurationSetByNameAndTenantId(String configurationSetName, String tenantId) throws ConfigurationSetNotFound {
         Aggregation aggregationPipelineQuery = Aggregation.newAggregation(
                 Aggregation.match(Criteria.where("configurationSetName").is(configurationSetName).and("tenantId").is(tenantId)),
-                Aggregation.lookup(COLLECTION_SUPPRESSION_LIST, "suppressionListIds", "id", "suppressionEntries")
+                Aggregation.limit(1)
         );
-        ConfigurationSetAggregationModel aggregationModel = this.mongoTemplate.aggregate(aggregationPipelineQuery, COLLECTION_CONFIGURATION_SETS, ConfigurationSetAggregationModel.class).getMappedResults().getFirst();
-        if (aggregationModel != null) {
-            return configurationMapper.toConfigurationSetModel(aggregationModel);
-        } else {
-            throw new ConfigurationSetNotFound("Configuration set not found");
-        }
+        return this.mongoTemplate.aggregate(aggregationPipelineQuery, COLLECTION_CONFIGURATION_SETS, ConfigurationSetAggregationModel.class).getMappedResults()
+                .stream().findFirst()
+                .map(configurationMapper::toConfigurationSetModel)
+                .orElseThrow(() -> new ConfigurationSetNotFound("Configuration set not found"));
     }
 
     /**
@@ -249,10 +387,12 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
      */
     @Override
     public ConfigurationSetModel updateConfigurationSetMasterData(String configurationSetId, String configurationSetName, String configurationSetDescription) throws ConfigurationSetNotFound {
-        Query configurationSetSearchQuery = Query.query(Criteria.where("id").is(configurationSetId));
+        Query configurationSetSearchQuery = Query.query(Criteria.where("_id").is(configurationSetId));
         Update updateSpec = Update.update("configurationSetDescription", configurationSetDescription);
         updateSpec.set("configurationSetName", configurationSetName);
-        this.mongoTemplate.updateFirst(configurationSetSearchQuery, updateSpec, ConfigurationSetMasterDocument.class);
+        this.mongoTemplate.updateFirst(configurationSetSearchQuery, updateSpec, ConfigurationSetMasterDocument.class, COLLECTION_CONFIGURATION_SETS);
+        this.refreshSendProfiles(List.of(UUID.fromString(configurationSetId)));
+        this.evictConfigurationSet(UUID.fromString(configurationSetId));
         ConfigurationSetAggregationModel aggregationResult = getConfigurationSetMasterDocumentById(UUID.fromString(configurationSetId));
         if (aggregationResult != null) {
             return configurationMapper.toConfigurationSetModel(aggregationResult);
@@ -262,14 +402,32 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
     }
 
     /**
-     * Get all suppression entries.
+     * Get one page of all suppression entries in ID order.
+     *
+     * @param afterSuppressionEntryId The cursor returned with the previous page, or null for the first page.
+     * @param limit                   The maximum number of suppression entries to return.
+     * @return The page of suppression entries.
+     */
+    @Override
+    public KeysetPage<SuppressionEntryModel> getSuppressionEntriesPage(String afterSuppressionEntryId, int limit) {
+        int pageSize = KeysetPage.clampLimit(limit);
+        Query pageQuery = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).limit(pageSize + 1);
+        if (afterSuppressionEntryId != null && !afterSuppressionEntryId.isBlank()) {
+            pageQuery.addCriteria(Criteria.where("_id").gt(afterSuppressionEntryId));
+        }
+        List<SuppressionEntryDocument> fetchedEntries = this.mongoTemplate.find(pageQuery, SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST);
+        return KeysetPage.of(fetchedEntries, pageSize, SuppressionEntryDocument::getId, this::mapSuppressionEntryDocumentToModel);
+    }
+
+    /**
+     * Stream all suppression entries from a database cursor. The caller must close the stream to release the cursor.
      *
-     * @return A list of SuppressionEntryModel objects representing all suppression entries.
+     * @return A stream of all suppression entries.
      */
     @Override
-    public List<SuppressionEntryModel> getAllSuppressionEntries() {
-        List<SuppressionEntryDocument> allEntriesDocuments = this.mongoTemplate.findAll(SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST);
-        return allEntriesDocuments.stream().map(this::mapSuppressionEntryDocumentToModel).toList();
+    public Stream<SuppressionEntryModel> streamAllSuppressionEntries() {
+        Query streamQuery = new Query().cursorBatchSize(STREAM_BATCH_SIZE);
+        return this.mongoTemplate.stream(streamQuery, SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST).map(this::mapSuppressionEntryDocumentToModel);
     }
 
     /**
@@ -281,7 +439,7 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
      */
     @Override
     public List<SuppressionEntryModel> getAllSuppressionEntriesById(List<UUID> suppressionEntryId) throws SuppressionListNotFound {
-        Query suppressionEntrySearchQuery = Query.query(Criteria.where("id").in(suppressionEntryId.stream().map(UUID::toString).toList()));
+        Query suppressionEntrySearchQuery = Query.query(Criteria.where("_id").in(suppressionEntryId.stream().map(UUID::toString).toList()));
         List<SuppressionEntryModel> matchedSuppressionEntries = this.mongoTemplate.find(suppressionEntrySearchQuery, SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST)
                 .stream().map(this::mapSuppressionEntryDocumentToModel).toList();
         if (matchedSuppressionEntries.isEmpty()) {
@@ -295,6 +453,7 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
      *
      * @param createSuppressionEntryPayload The payload containing the suppression entry details.
      * @return The created SuppressionEntryModel.
+     * @throws SuppressionEntryAlreadyExists If an entry with the same normalized value exists.
      */
     @Override
     public SuppressionEntryModel createSuppressionEntry(CreateSuppressionEntryDTO createSuppressionEntryPayload) {
@@ -302,11 +461,17 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
                 .id(UUID.randomUUID().toString())
                 .entryType(createSuppressionEntryPayload.entryType())
                 .value(createSuppressionEntryPayload.value())
+                .normalizedValue(EmailSuppressionIndex.normalize(createSuppressionEntryPayload.value()))
                 .reason(createSuppressionEntryPayload.reason())
                 .createdAt(Instant.now())
                 .updatedAt(Instant.now())
                 .build();
-        SuppressionEntryDocument createdSuppressionEntryDocument = this.mongoTemplate.save(suppressionEntryDocument, COLLECTION_SUPPRESSION_LIST);
+        SuppressionEntryDocument createdSuppressionEntryDocument;
+        try {
+            createdSuppressionEntryDocument = this.mongoTemplate.insert(suppressionEntryDocument, COLLECTION_SUPPRESSION_LIST);
+        } catch (DuplicateKeyException e) {
+            throw new SuppressionEntryAlreadyExists("Suppression entry already exists for value");
+        }
         return suppressionEntryMapper.map(createdSuppressionEntryDocument);
     }
 
@@ -337,30 +502,55 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
      */
     @Override
     public List<SuppressionEntryModel> getSuppressionEntryByConfigurationSetId(UUID configurationSetId) throws SuppressionListNotFound {
-        return List.of();
+        Query attachedEntriesQuery = Query.query(Criteria.where("configurationSetIds").is(configurationSetId.toString()));
+        List<SuppressionEntryModel> attachedEntries = this.mongoTemplate.find(attachedEntriesQuery, SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST)
+                .stream().map(this::mapSuppressionEntryDocumentToModel).toList();
+        if (attachedEntries.isEmpty()) {
+            throw new SuppressionListNotFound("No suppression list found for configuration set");
+        }
+        return attachedEntries;
     }
 
     /**
      * Delete a suppression entry by its ID.
+     * The entry is removed from the suppression indexes in place, and only the configuration sets it was attached to are
+     * dropped from the configuration set cache.
      *
      * @param suppressionEntryId The ID of the suppression entry to delete.
      */
     @Override
     public void deleteSuppressionEntryById(UUID suppressionEntryId) {
-        Query suppressionCollectionSearchQuery = Query.query(Criteria.where("id").is(suppressionEntryId.toString()));
-        DeleteResult deleteResult = this.mongoTemplate.remove(suppressionCollectionSearchQuery, SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST);
-        log.debug("Deleted suppression entry with ID: {}. Deleted count: {}", suppressionEntryId, deleteResult.getDeletedCount());
+        Query suppressionCollectionSearchQuery = Query.query(Criteria.where("_id").is(suppressionEntryId.toString()));
+        SuppressionEntryDocument deletedSuppressionEntry = this.mongoTemplate.findAndRemove(suppressionCollectionSearchQuery, SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST);
+        this.emailSuppressionIndex.removeSuppressionEntry(suppressionEntryId);
+        List<UUID> referencingConfigurationSetIds = Optional.ofNullable(deletedSuppressionEntry)
+                .map(SuppressionEntryDocument::getConfigurationSetIds)
+                .orElse(List.of())
+                .stream().map(UUID::fromString).toList();
+        this.refreshSendProfiles(referencingConfigurationSetIds);
+        this.configurationSetCache.synchronous().invalidateAll(referencingConfigurationSetIds);
+        log.debug("Deleted suppression entry with ID: {}. Deleted: {}", suppressionEntryId, deletedSuppressionEntry != null);
     }
 
     /**
-     * Delete suppression entries by their IDs.
+     * Add suppression entries to a configuration set by adding its ID to each entry. Only the entries are updated;
+     * callers adding entries in batches call {@link #refreshConfigurationSet(UUID)} once after the last batch instead
+     * of rebuilding the send profile for every batch.
      *
-     * @param suppressionEntryIds The list of suppression entry IDs to delete.
+     * @param configurationSetId  The ID of the configuration set.
+     * @param suppressionEntryIds The IDs of the suppression entries to add.
+     * @throws ConfigurationSetNotFound If the configuration set does not exist.
      */
-    private void deleteSuppressionEntryByIds(List<String> suppressionEntryIds) {
-        Query suppressionEntrySearchQuery = Query.query(Criteria.where("id").in(suppressionEntryIds));
-        this.mongoTemplate.remove(suppressionEntrySearchQuery, SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST);
-        log.debug("Deleted suppression entries with IDs: {}", suppressionEntryIds);
+    @Override
+    public void attachSuppressionEntries(UUID configurationSetId, Collection<String> suppressionEntryIds) throws ConfigurationSetNotFound {
+        if (!this.configurationSetExists(configurationSetId)) {
+            throw new ConfigurationSetNotFound("Configuration set not found");
+        }
+        Query suppressionEntriesQuery = Query.query(Criteria.where("_id").in(suppressionEntryIds));
+        Update updateSpec = new Update().addToSet("configurationSetIds", configurationSetId.toString());
+        UpdateResult updateResult = this.mongoTemplate.updateMulti(suppressionEntriesQuery, updateSpec, SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST);
+        this.emailSuppressionIndex.attachSuppressionEntries(configurationSetId.toString(), suppressionEntryIds);
+        log.debug("Attached {} suppression entries to configuration set: {}", updateResult.getMatchedCount(), configurationSetId);
     }
 
     /**
@@ -384,28 +574,6 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
         return idsToValidate.stream().filter(id -> !idsMatchedInDB.contains(id)).toList();
     }
 
-    /**
-     * Trigger the unused suppression list cleanup.
-     * This method is scheduled to run daily at midnight.
-     */
-    @Scheduled(cron = "0 0 0 * * ?")
-    void triggerDatabaseMaintenance() {
-        log.debug("Database maintenance triggered");
-        triggerUnusedSuppressionList();
-    }
-
-    /**
-     * Trigger the unused suppression list cleanup.
-     * This method is scheduled to run daily at midnight.
-     */
-    private void triggerUnusedSuppressionList() {
-        Set<String> allSuppressionListIds = this.mongoTemplate.findAll(ConfigurationSetMasterDocument.class, COLLECTION_CONFIGURATION_SETS).stream().map(ConfigurationSetMasterDocument::getSuppressionListIds).flatMap(List::stream).collect(Collectors.toSet());
-        Set<String> allSuppressionIds = this.mongoTemplate.findAll(SuppressionEntryDocument.class, COLLECTION_SUPPRESSION_LIST).stream().map(SuppressionEntryDocument::getId).collect(Collectors.toSet());
-        Set<String> unusedSuppressionIds = allSuppressionIds.stream().filter(id -> !allSuppressionListIds.contains(id)).collect(Collectors.toSet());
-        log.debug("Unused Suppression List: {}", unusedSuppressionIds);
-        this.deleteSuppressionEntryByIds(unusedSuppressionIds.stream().toList());
-    }
-
     @Override
     public void createSmtpProperties(UUID configurationSetId, CreateSmtpPropertiesDTO smtpProperties) throws ConfigurationSetNotFound, SmtpPropertiesExist {
         UUID smtpPropertiesId = UUID.randomUUID();
@@ -446,6 +614,8 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
                 .connectionLimit(smtpProperties.connectionLimit())
                 .build();
         this.mongoTemplate.save(smtpPropertiesDocument, COLLECTION_SMTP_PROPERTIES);
+        this.refreshSendProfiles(List.of(configurationSetId));
+        this.evictConfigurationSet(configurationSetId);
     }
 
     @Override
@@ -456,6 +626,8 @@ public class ConfigurationServiceManagementServiceMongoImpl implements Configura
         Query smtpPropertiesSearchQuery = Query.query(Criteria.where("_id").is(fetchedConfigurationSet.getSmtpPropertiesId()));
         this.updateConfigurationSetSmtpPropertiesId(configurationSetId, null);
         DeleteResult smtpPropertiesDeleteResult = this.mongoTemplate.remove(smtpPropertiesSearchQuery, SmtpPropertiesDocument.class, COLLECTION_SMTP_PROPERTIES);
+        this.refreshSendProfiles(List.of(configurationSetId));
+        this.evictConfigurationSet(configurationSetId);
         if (smtpPropertiesDeleteResult.getDeletedCount() > 0) {
             log.debug("Deleted SMTP properties with ID: {}. Deleted count: {}", fetchedConfigurationSet.getSmtpPropertiesId(), smtpPropertiesDeleteResult.getDeletedCount());
         }
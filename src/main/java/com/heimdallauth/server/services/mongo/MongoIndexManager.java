@@ -0,0 +1,174 @@
+package com.heimdallauth.server.services.mongo;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostCacheConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostIdempotencyConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostOutboxConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostSuppressionImportConfiguration;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.CHANGE_STREAM_RESUME_TOKEN_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.CONFIGURATION_SET_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.EMAIL_DEAD_LETTER_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.EMAIL_OUTBOX_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.IDEMPOTENCY_KEY_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.SUPPRESSION_IMPORT_JOB_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.SUPPRESSION_LIST_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.TEMPLATES_COLLECTION;
+
+/**
+ * Declares every index Bifrost's queries rely on and creates them at startup.
+ * Automatic index creation from {@code @Indexed} annotations is disabled, so this is the single place indexes come from.
+ * After creation the indexes of every collection are read back, and startup fails if one of them is missing,
+ * rather than letting the hot queries silently fall back to collection scans.
+ * A changed TTL is applied to the existing TTL index with {@code collMod}, so reconfiguring a retention does not
+ * fail startup on conflicting index options.
+ */
+@Component
+@Slf4j
+public class MongoIndexManager {
+    private final MongoTemplate mongoTemplate;
+    private final HeimdallBifrostIdempotencyConfiguration idempotencyConfiguration;
+    private final HeimdallBifrostSuppressionImportConfiguration importConfiguration;
+    private final HeimdallBifrostCacheConfiguration cacheConfiguration;
+    private final HeimdallBifrostOutboxConfiguration outboxConfiguration;
+
+    public MongoIndexManager(MongoTemplate mongoTemplate, HeimdallBifrostIdempotencyConfiguration idempotencyConfiguration, HeimdallBifrostSuppressionImportConfiguration importConfiguration, HeimdallBifrostCacheConfiguration cacheConfiguration, HeimdallBifrostOutboxConfiguration outboxConfiguration) {
+        this.mongoTemplate = mongoTemplate;
+        this.idempotencyConfiguration = idempotencyConfiguration;
+        this.importConfiguration = importConfiguration;
+        this.cacheConfiguration = cacheConfiguration;
+        this.outboxConfiguration = outboxConfiguration;
+    }
+
+    /**
+     * An index and the collection it belongs to.
+     */
+    record RequiredIndex(String collectionName, Index index) {
+    }
+
+    /**
+     * @return The indexes required by Bifrost's queries, beyond the {@code _id} index of every collection.
+     */
+    List<RequiredIndex> requiredIndexes() {
+        return List.of(
+                // getConfigurationSetByNameAndTenantId and the duplicate check on create. Not unique, existing data may hold duplicates
+                new RequiredIndex(CONFIGURATION_SET_COLLECTION, new Index().on("tenantId", Sort.Direction.ASC).on("configurationSetName", Sort.Direction.ASC)),
+                // getTemplateByTenantIdAndTemplateName and the duplicate check on create
+                new RequiredIndex(TEMPLATES_COLLECTION, new Index().on("tenantId", Sort.Direction.ASC).on("templateName", Sort.Direction.ASC)),
+                // Suppression entries are unique on their normalized value. Sparse, so entries written before the normalized value existed are not checked
+                new RequiredIndex(SUPPRESSION_LIST_COLLECTION, new Index().on("normalizedValue", Sort.Direction.ASC).unique().sparse()),
+                // Suppression entries attached to a configuration set, for lookups, snapshots and configuration set deletes
+                new RequiredIndex(SUPPRESSION_LIST_COLLECTION, new Index().on("configurationSetIds", Sort.Direction.ASC)),
+                // Outbox claims: due messages overall, per priority lane, and per tenant within a lane
+                new RequiredIndex(EMAIL_OUTBOX_COLLECTION, new Index().on("status", Sort.Direction.ASC).on("nextAttemptAt", Sort.Direction.ASC)),
+                new RequiredIndex(EMAIL_OUTBOX_COLLECTION, new Index().on("status", Sort.Direction.ASC).on("priority", Sort.Direction.ASC).on("nextAttemptAt", Sort.Direction.ASC)),
+                new RequiredIndex(EMAIL_OUTBOX_COLLECTION, new Index().on("status", Sort.Direction.ASC).on("priority", Sort.Direction.ASC).on("tenantId", Sort.Direction.ASC).on("nextAttemptAt", Sort.Direction.ASC)),
+                // Sent messages are kept only as long as their status may be read
+                new RequiredIndex(EMAIL_OUTBOX_COLLECTION, new Index().on("sentAt", Sort.Direction.ASC).expire(outboxConfiguration.getSentRetention())),
+                // Dead letter listing, most recent first, paged by (deadLetteredAt, _id)
+                new RequiredIndex(EMAIL_DEAD_LETTER_COLLECTION, new Index().on("deadLetteredAt", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)),
+                new RequiredIndex(IDEMPOTENCY_KEY_COLLECTION, new Index().on("createdAt", Sort.Direction.ASC).expire(idempotencyConfiguration.getKeyTtl())),
+                new RequiredIndex(SUPPRESSION_IMPORT_JOB_COLLECTION, new Index().on("createdAt", Sort.Direction.ASC).expire(importConfiguration.getJobRetention())),
+                // Resume tokens of nodes that did not shut down cleanly
+                new RequiredIndex(CHANGE_STREAM_RESUME_TOKEN_COLLECTION, new Index().on("updatedAt", Sort.Direction.ASC).expire(cacheConfiguration.getChangeStreamResumeTokenRetention()))
+        );
+    }
+
+    /**
+     * Create the required indexes and verify that all of them exist.
+     *
+     * @throws IllegalStateException If an index cannot be created, e.g. because an index on the same keys exists with
+     *                               different options other than its TTL, or is missing afterwards.
+     */
+    @PostConstruct
+    void ensureIndexes() {
+        List<RequiredIndex> requiredIndexes = requiredIndexes();
+        for (RequiredIndex requiredIndex : requiredIndexes) {
+            try {
+                updateExpiry(requiredIndex);
+                this.mongoTemplate.indexOps(requiredIndex.collectionName()).ensureIndex(requiredIndex.index());
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Failed to create index " + requiredIndex.index().getIndexKeys().toJson() + " on " + requiredIndex.collectionName() + ": " + e.getMessage(), e);
+            }
+        }
+        List<String> missingIndexes = new ArrayList<>();
+        for (RequiredIndex requiredIndex : requiredIndexes) {
+            if (!indexExists(requiredIndex)) {
+                missingIndexes.add(requiredIndex.collectionName() + " " + requiredIndex.index().getIndexKeys().toJson());
+            }
+        }
+        if (!missingIndexes.isEmpty()) {
+            throw new IllegalStateException("Required MongoDB indexes are missing: " + missingIndexes);
+        }
+        log.info("Verified {} MongoDB indexes", requiredIndexes.size());
+    }
+
+    /**
+     * Bring the expiry of an existing index on the keys of a TTL index in line with the required one. A TTL index with
+     * a different expiry is changed in place; an index on the same keys without an expiry is dropped, so that
+     * {@code ensureIndex} creates it again as a TTL index.
+     */
+    private void updateExpiry(RequiredIndex requiredIndex) {
+        if (!(requiredIndex.index().getIndexOptions().get("expireAfterSeconds") instanceof Number requiredExpiry)) {
+            return;
+        }
+        Optional<Document> existingIndex = findIndex(requiredIndex);
+        if (existingIndex.isEmpty()) {
+            return;
+        }
+        Object existingExpiry = existingIndex.get().get("expireAfterSeconds");
+        if (existingExpiry instanceof Number existingSeconds && existingSeconds.longValue() == requiredExpiry.longValue()) {
+            return;
+        }
+        String indexName = existingIndex.get().getString("name");
+        if (existingExpiry instanceof Number existingSeconds) {
+            log.info("Changing the TTL of index {} on {} from {}s to {}s", indexName, requiredIndex.collectionName(), existingSeconds, requiredExpiry);
+            this.mongoTemplate.getDb().runCommand(new Document("collMod", requiredIndex.collectionName())
+                    .append("index", new Document("name", indexName).append("expireAfterSeconds", requiredExpiry.longValue())));
+        } else {
+            log.info("Recreating index {} on {} as a TTL index of {}s", indexName, requiredIndex.collectionName(), requiredExpiry);
+            this.mongoTemplate.indexOps(requiredIndex.collectionName()).dropIndex(indexName);
+        }
+    }
+
+    private boolean indexExists(RequiredIndex requiredIndex) {
+        return findIndex(requiredIndex).isPresent();
+    }
+
+    private Optional<Document> findIndex(RequiredIndex requiredIndex) {
+        Document requiredKeys = requiredIndex.index().getIndexKeys();
+        for (Document existingIndex : this.mongoTemplate.getCollection(requiredIndex.collectionName()).listIndexes()) {
+            if (sameKeys(requiredKeys, existingIndex.get("key", Document.class))) {
+                return Optional.of(existingIndex);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Compare index keys in order, since a compound index only serves queries on a prefix of its keys.
+     */
+    private static boolean sameKeys(Document requiredKeys, Document existingKeys) {
+        if (existingKeys == null || !List.copyOf(requiredKeys.keySet()).equals(List.copyOf(existingKeys.keySet()))) {
+            return false;
+        }
+        for (Map.Entry<String, Object> requiredKey : requiredKeys.entrySet()) {
+            Object existingDirection = existingKeys.get(requiredKey.getKey());
+            if (!(requiredKey.getValue() instanceof Number requiredDirection) || !(existingDirection instanceof Number existingNumber) || requiredDirection.intValue() != existingNumber.intValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,197 @@
+package com.heimdallauth.server.services.mongo;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostSuppressionGcConfiguration;
+import com.heimdallauth.server.documents.MaintenanceLeaseDocument;
+import com.heimdallauth.server.services.TaskExecutorFactory;
+import com.mongodb.client.result.DeleteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.*;
+
+/**
+ * Deletes suppression entries that no configuration set references.
+ * Entries carry the IDs of the configuration sets they are attached to, so an entry is unreferenced when its
+ * {@code configurationSetIds} is empty and no join against the configuration sets is needed. Entries are walked in
+ * {@code _id} order in bounded batches, and the delete repeats the emptiness check so that an entry attached since the
+ * batch was read is kept. A Mongo-backed lease makes sure a single node collects at a time, and the last examined ID is
+ * stored with the lease so that a run interrupted by a restart or a lost lease resumes where it stopped.
+ */
+@Component
+@Slf4j
+public class SuppressionGarbageCollector {
+    private static final String LEASE_ID = "suppression-gc";
+    private static final String REFERENCES_FIELD = "configurationSetIds";
+    private final MongoTemplate mongoTemplate;
+    private final HeimdallBifrostSuppressionGcConfiguration gcConfiguration;
+    private final AsyncTaskExecutor gcExecutor;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final String nodeId;
+
+    public SuppressionGarbageCollector(MongoTemplate mongoTemplate, HeimdallBifrostSuppressionGcConfiguration gcConfiguration, TaskExecutorFactory taskExecutorFactory, @Value("${HOSTNAME:bifrost}") String hostname) {
+        this.mongoTemplate = mongoTemplate;
+        this.gcConfiguration = gcConfiguration;
+        this.gcExecutor = taskExecutorFactory.createExecutor("bifrost-suppression-gc-", 1);
+        this.nodeId = "%s:%s".formatted(hostname, UUID.randomUUID());
+    }
+
+    /**
+     * Start a collection on its own thread, so the throttled run does not hold up the other scheduled tasks.
+     */
+    @Scheduled(cron = "${heimdall.bifrost.suppression-gc.cron:0 0 0 * * ?}")
+    void triggerCollection() {
+        if (!gcConfiguration.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        gcExecutor.execute(() -> {
+            try {
+                collect();
+            } catch (RuntimeException e) {
+                log.error("Suppression garbage collection failed: {}", e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    private void collect() {
+        Optional<MaintenanceLeaseDocument> lease = acquireLease();
+        if (lease.isEmpty()) {
+            log.debug("Suppression garbage collection is running on another node");
+            return;
+        }
+        String checkpoint = lease.get().getCheckpoint();
+        log.info("Suppression garbage collection started on {}{}", nodeId, checkpoint != null ? " resuming after " + checkpoint : "");
+        Instant createdBefore = Instant.now().minus(gcConfiguration.getMinimumEntryAge());
+        long examinedCount = 0;
+        long deletedCount = 0;
+        boolean completed = false;
+        while (!completed) {
+            List<Document> batch = nextBatch(checkpoint, createdBefore);
+            if (batch.isEmpty()) {
+                completed = true;
+                continue;
+            }
+            List<String> unreferencedIds = batch.stream()
+                    .filter(candidate -> candidate.getList(REFERENCES_FIELD, String.class, List.of()).isEmpty())
+                    .map(candidate -> candidate.getString("_id"))
+                    .toList();
+            deletedCount += deleteUnreferenced(unreferencedIds);
+            examinedCount += batch.size();
+            checkpoint = batch.getLast().getString("_id");
+            if (!renewLease(checkpoint)) {
+                log.warn("Lost the suppression garbage collection lease after {} entries, stopping", examinedCount);
+                return;
+            }
+            completed = batch.size() < gcConfiguration.getBatchSize();
+            if (!completed && !pause()) {
+                break;
+            }
+        }
+        releaseLease(checkpoint, completed);
+        log.info("Suppression garbage collection examined {} entries and deleted {}", examinedCount, deletedCount);
+    }
+
+    /**
+     * The next batch of entries after the checkpoint, each with the ID of at most one configuration set referencing it.
+     */
+    private List<Document> nextBatch(String checkpoint, Instant createdBefore) {
+        Criteria candidateCriteria = new Criteria().orOperator(Criteria.where("createdAt").lt(createdBefore), Criteria.where("createdAt").exists(false));
+        if (checkpoint != null) {
+            candidateCriteria = new Criteria().andOperator(Criteria.where("_id").gt(checkpoint), candidateCriteria);
+        }
+        Query candidateQuery = Query.query(candidateCriteria)
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(gcConfiguration.getBatchSize());
+        candidateQuery.fields().include("_id").slice(REFERENCES_FIELD, 1);
+        return this.mongoTemplate.find(candidateQuery, Document.class, SUPPRESSION_LIST_COLLECTION);
+    }
+
+    /**
+     * Delete the given entries, skipping any that were attached to a configuration set since the batch was read.
+     */
+    private long deleteUnreferenced(List<String> unreferencedIds) {
+        if (unreferencedIds.isEmpty()) {
+            return 0;
+        }
+        Query stillUnreferencedQuery = Query.query(Criteria.where("_id").in(unreferencedIds).and(REFERENCES_FIELD + ".0").exists(false));
+        DeleteResult deleteResult = this.mongoTemplate.remove(stillUnreferencedQuery, SUPPRESSION_LIST_COLLECTION);
+        log.debug("Deleted {} unreferenced suppression entries", deleteResult.getDeletedCount());
+        return deleteResult.getDeletedCount();
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(gcConfiguration.getBatchPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Take the lease if it is free, expired or already held by this node. The lease document is created on first use;
+     * a concurrent creation by another node surfaces as a duplicate key and means the lease is taken.
+     */
+    private Optional<MaintenanceLeaseDocument> acquireLease() {
+        Instant now = Instant.now();
+        Query acquirableLeaseQuery = Query.query(Criteria.where("_id").is(LEASE_ID)
+                .orOperator(Criteria.where("leasedUntil").lt(now), Criteria.where("holder").is(nodeId), Criteria.where("leasedUntil").exists(false)));
+        Update acquireLease = new Update()
+                .set("holder", nodeId)
+                .set("leasedUntil", now.plus(gcConfiguration.getLeaseDuration()))
+                .set("updatedAt", now);
+        try {
+            return Optional.ofNullable(this.mongoTemplate.findAndModify(acquirableLeaseQuery, acquireLease, FindAndModifyOptions.options().upsert(true).returnNew(true), MaintenanceLeaseDocument.class, MAINTENANCE_LEASE_COLLECTION));
+        } catch (DuplicateKeyException e) {
+            return Optional.empty();
+        }
+    }
+
+    private boolean renewLease(String checkpoint) {
+        Instant now = Instant.now();
+        Update renewLease = new Update()
+                .set("checkpoint", checkpoint)
+                .set("leasedUntil", now.plus(gcConfiguration.getLeaseDuration()))
+                .set("updatedAt", now);
+        return this.mongoTemplate.updateFirst(heldLeaseQuery(), renewLease, MaintenanceLeaseDocument.class, MAINTENANCE_LEASE_COLLECTION).getModifiedCount() > 0;
+    }
+
+    /**
+     * Give the lease up. A completed run clears the checkpoint so that the next run starts from the beginning.
+     */
+    private void releaseLease(String checkpoint, boolean completed) {
+        Instant now = Instant.now();
+        Update releaseLease = new Update()
+                .set("leasedUntil", now)
+                .set("updatedAt", now);
+        if (completed) {
+            releaseLease.unset("checkpoint").set("lastCompletedAt", now);
+        } else {
+            releaseLease.set("checkpoint", checkpoint);
+        }
+        this.mongoTemplate.updateFirst(heldLeaseQuery(), releaseLease, MaintenanceLeaseDocument.class, MAINTENANCE_LEASE_COLLECTION);
+    }
+
+    private Query heldLeaseQuery() {
+        return Query.query(Criteria.where("_id").is(LEASE_ID).and("holder").is(nodeId));
+    }
+}
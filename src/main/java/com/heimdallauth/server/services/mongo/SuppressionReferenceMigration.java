@@ -0,0 +1,71 @@
+package com.heimdallauth.server.services.mongo;
+
+import jakarta.annotation.PostConstruct;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.CONFIGURATION_SET_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.SEND_PROFILE_COLLECTION;
+import static com.heimdallauth.server.constants.MongoCollectionNames.SUPPRESSION_LIST_COLLECTION;
+
+/**
+ * Moves suppression entry references written by earlier versions, which kept the IDs of the attached entries in a
+ * {@code suppressionListIds} array on the configuration set, onto the {@code configurationSetIds} of the entries.
+ * The array of a configuration set is only removed after its ID was added to all of its entries, so a migration
+ * interrupted by a restart is completed by the next startup. Send profiles written by those versions embedded the
+ * attached entries; the embedded entries are removed as well.
+ */
+@Component
+@Slf4j
+public class SuppressionReferenceMigration {
+    private static final String LEGACY_REFERENCES_FIELD = "suppressionListIds";
+    private static final String EMBEDDED_ENTRIES_FIELD = "suppressionEntries";
+    private static final int BATCH_SIZE = 1000;
+    private final MongoTemplate mongoTemplate;
+
+    public SuppressionReferenceMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    void migrate() {
+        Query legacyConfigurationSetsQuery = Query.query(Criteria.where(LEGACY_REFERENCES_FIELD).exists(true));
+        legacyConfigurationSetsQuery.fields().include("_id", LEGACY_REFERENCES_FIELD);
+        legacyConfigurationSetsQuery.cursorBatchSize(1);
+        int migratedCount = 0;
+        try (Stream<Document> legacyConfigurationSets = this.mongoTemplate.stream(legacyConfigurationSetsQuery, Document.class, CONFIGURATION_SET_COLLECTION)) {
+            Iterator<Document> configurationSets = legacyConfigurationSets.iterator();
+            while (configurationSets.hasNext()) {
+                Document configurationSet = configurationSets.next();
+                migrate(configurationSet.getString("_id"), configurationSet.getList(LEGACY_REFERENCES_FIELD, String.class, List.of()));
+                migratedCount++;
+            }
+        }
+        if (migratedCount > 0) {
+            log.info("Moved the suppression entry references of {} configuration sets onto the suppression entries", migratedCount);
+        }
+        UpdateResult sendProfilesResult = this.mongoTemplate.updateMulti(Query.query(Criteria.where(EMBEDDED_ENTRIES_FIELD).exists(true)), new Update().unset(EMBEDDED_ENTRIES_FIELD), SEND_PROFILE_COLLECTION);
+        if (sendProfilesResult.getModifiedCount() > 0) {
+            log.info("Removed the embedded suppression entries from {} send profiles", sendProfilesResult.getModifiedCount());
+        }
+    }
+
+    private void migrate(String configurationSetId, List<String> suppressionEntryIds) {
+        Update attachSpec = new Update().addToSet("configurationSetIds", configurationSetId);
+        for (int from = 0; from < suppressionEntryIds.size(); from += BATCH_SIZE) {
+            List<String> batch = suppressionEntryIds.subList(from, Math.min(from + BATCH_SIZE, suppressionEntryIds.size()));
+            this.mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(batch)), attachSpec, SUPPRESSION_LIST_COLLECTION);
+        }
+        this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(configurationSetId)), new Update().unset(LEGACY_REFERENCES_FIELD), CONFIGURATION_SET_COLLECTION);
+    }
+}
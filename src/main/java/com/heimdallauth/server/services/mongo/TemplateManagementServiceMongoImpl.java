@@ -1,18 +1,27 @@
 package com.heimdallauth.server.services.mongo;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.heimdallauth.server.configuration.HeimdallBifrostCacheConfiguration;
 import com.heimdallauth.server.documents.TemplateDocument;
+import com.heimdallauth.server.dto.KeysetPage;
 import com.heimdallauth.server.dto.bifrost.CreateEmailTemplateDTO;
 import com.heimdallauth.server.exceptions.TemplateAlreadyExists;
 import com.heimdallauth.server.exceptions.TemplateNotFound;
 import com.heimdallauth.server.models.bifrost.EmailContent;
 import com.heimdallauth.server.models.bifrost.MessageHeader;
 import com.heimdallauth.server.models.bifrost.Template;
+import com.heimdallauth.server.services.EmailTemplatingService;
+import com.heimdallauth.server.services.TaskExecutorFactory;
 import com.heimdallauth.server.services.TemplateManagementService;
 import com.heimdallauth.server.utils.mapper.TemplateMapper;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -23,7 +32,9 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.bson.assertions.Assertions.assertNotNull;
 
@@ -31,25 +42,71 @@ import static org.bson.assertions.Assertions.assertNotNull;
 @Slf4j
 public class TemplateManagementServiceMongoImpl implements TemplateManagementService {
     private static final String COLLECTION_TEMPLATES = "templates_collection";
+    private static final int STREAM_BATCH_SIZE = 500;
     private final MongoTemplate mongoTemplate;
     private final TemplateMapper templateMapper;
+    private final EmailTemplatingService emailTemplatingService;
+    private final AsyncLoadingCache<UUID, Template> templateCache;
 
     @Autowired
-    public TemplateManagementServiceMongoImpl(MongoTemplate mongoTemplate, TemplateMapper templateMapper) {
+    public TemplateManagementServiceMongoImpl(MongoTemplate mongoTemplate, TemplateMapper templateMapper, EmailTemplatingService emailTemplatingService, HeimdallBifrostCacheConfiguration cacheConfiguration, MeterRegistry meterRegistry, TaskExecutorFactory taskExecutorFactory) {
         this.mongoTemplate = mongoTemplate;
         this.templateMapper = templateMapper;
+        this.emailTemplatingService = emailTemplatingService;
+        this.templateCache = Caffeine.newBuilder()
+                .refreshAfterWrite(cacheConfiguration.getTemplateRefreshAfter())
+                .expireAfterWrite(cacheConfiguration.getTemplateTtl())
+                .maximumSize(cacheConfiguration.getTemplateMaxSize())
+                .executor(taskExecutorFactory.cacheLoaderExecutor())
+                .recordStats()
+                .buildAsync(this::loadTemplateById);
+        CaffeineCacheMetrics.monitor(meterRegistry, templateCache, "bifrost.templates");
     }
 
     /**
      * Retrieves a template by its ID.
+     * Templates are served from a local cache that refreshes hot entries in the background before they expire,
+     * and concurrent misses for the same ID share a single query.
      * @param templateId The ID of the template to retrieve.
      * @return The template matching the given ID.
      * @throws TemplateNotFound if no template is found with the given ID.
      */
     @Override
     public Template getTemplateById(UUID templateId) {
+        Template template;
+        try {
+            template = this.templateCache.get(templateId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return Optional.ofNullable(template).orElseThrow(() -> new TemplateNotFound("Template not found"));
+    }
+
+    /**
+     * Loads a template from the database, returning null when it does not exist so that nothing is cached for it.
+     * @param templateId The ID of the template to load.
+     * @return The template, or null if not found.
+     */
+    private Template loadTemplateById(UUID templateId) {
         Optional<TemplateDocument> matchedTemplateById = Optional.ofNullable(this.mongoTemplate.findById(templateId.toString(), TemplateDocument.class, COLLECTION_TEMPLATES));
-        return matchedTemplateById.map(templateMapper::mapToTemplateModel).orElseThrow(() -> new TemplateNotFound("Template not found"));
+        return matchedTemplateById.map(templateMapper::mapToTemplateModel).orElse(null);
+    }
+
+    /**
+     * Drop a template from the local caches, including its compiled form.
+     * @param templateId The ID of the template to evict.
+     */
+    public void evictTemplate(UUID templateId) {
+        this.templateCache.synchronous().invalidate(templateId);
+        this.emailTemplatingService.evictTemplate(templateId);
+    }
+
+    public void evictAllTemplates() {
+        this.templateCache.synchronous().invalidateAll();
+        this.emailTemplatingService.evictAllTemplates();
     }
 
     /**
@@ -69,12 +126,30 @@ public class TemplateManagementServiceMongoImpl implements TemplateManagementSer
     }
 
     /**
-     * Retrieves all templates.
-     * @return A list of all templates.
+     * Retrieves one page of all templates in ID order.
+     * @param afterTemplateId The cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of templates to return.
+     * @return The page of templates.
+     */
+    @Override
+    public KeysetPage<Template> getTemplatesPage(String afterTemplateId, int limit) {
+        int pageSize = KeysetPage.clampLimit(limit);
+        Query pageQuery = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).limit(pageSize + 1);
+        if (afterTemplateId != null && !afterTemplateId.isBlank()) {
+            pageQuery.addCriteria(Criteria.where("_id").gt(afterTemplateId));
+        }
+        List<TemplateDocument> fetchedTemplates = this.mongoTemplate.find(pageQuery, TemplateDocument.class, COLLECTION_TEMPLATES);
+        return KeysetPage.of(fetchedTemplates, pageSize, TemplateDocument::getId, templateMapper::mapToTemplateModel);
+    }
+
+    /**
+     * Streams all templates from a database cursor. The caller must close the stream to release the cursor.
+     * @return A stream of all templates.
      */
     @Override
-    public List<Template> getAllTemplates() {
-        return this.mongoTemplate.findAll(TemplateDocument.class, COLLECTION_TEMPLATES).stream().map(templateMapper::mapToTemplateModel).collect(Collectors.toList());
+    public Stream<Template> streamAllTemplates() {
+        Query streamQuery = new Query().cursorBatchSize(STREAM_BATCH_SIZE);
+        return this.mongoTemplate.stream(streamQuery, TemplateDocument.class, COLLECTION_TEMPLATES).map(templateMapper::mapToTemplateModel);
     }
 
     /**
@@ -131,6 +206,7 @@ public class TemplateManagementServiceMongoImpl implements TemplateManagementSer
                     .updatedAt(Instant.now())
                     .build();
             this.mongoTemplate.save(documentToSave, COLLECTION_TEMPLATES);
+            this.evictTemplate(templateId);
         }catch (TemplateAlreadyExists e){
             log.error("Template with same name already exists");
             throw e;
@@ -144,9 +220,10 @@ public class TemplateManagementServiceMongoImpl implements TemplateManagementSer
         List<MessageHeader> updatedDefaultEmailHeaders = createEmailTemplateDTO.defaultEmailHeaders();
         Instant updateTimestamp = Instant.now();
         Update mongoUpdate = Update.update("content",updatedEmailContent).set("defaultMessageHeaders", updatedDefaultEmailHeaders).set("updatedAt", updateTimestamp);
-        Query selectionQuery = Query.query(Criteria.where("id").is(templateId.toString()));
+        Query selectionQuery = Query.query(Criteria.where("_id").is(templateId.toString()));
         UpdateResult mongoUpdateResult = this.mongoTemplate.updateMulti(selectionQuery, mongoUpdate, TemplateDocument.class, COLLECTION_TEMPLATES);
         log.debug("Updated {} templates with ID {}", mongoUpdateResult.getModifiedCount(), templateId);
+        this.evictTemplate(templateId);
         if (mongoUpdateResult.getModifiedCount() == 0) {
             throw new TemplateNotFound("Template not found");
         }else{
@@ -159,8 +236,9 @@ public class TemplateManagementServiceMongoImpl implements TemplateManagementSer
 
     @Override
     public void deleteTemplate(UUID templateId) {
-        Query deleteTemplateQuery = Query.query(Criteria.where("id").is(templateId.toString()));
+        Query deleteTemplateQuery = Query.query(Criteria.where("_id").is(templateId.toString()));
         DeleteResult mongoDeleteResult = this.mongoTemplate.remove(deleteTemplateQuery, TemplateDocument.class, COLLECTION_TEMPLATES);
         log.debug("Deleted {} templates with ID {}", mongoDeleteResult.getDeletedCount(), templateId);
+        this.evictTemplate(templateId);
     }
 }
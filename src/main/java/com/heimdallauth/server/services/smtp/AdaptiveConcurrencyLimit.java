@@ -0,0 +1,159 @@
+package com.heimdallauth.server.services.smtp;
+
+import jakarta.mail.MessagingException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Additive-increase/multiplicative-decrease limit on the number of parallel sessions with one SMTP endpoint.
+ * Every message sent within {@code latencyTolerance} times the fastest observed send latency raises the limit by
+ * {@code 1 / limit}, i.e. by one session per round of sends. A slower send, or a 421/451 reply telling the client to
+ * back off, multiplies the limit by {@code backoffRatio}. The limit stays between {@code minLimit} and {@code maxLimit},
+ * the configured connectionLimit of the endpoint.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimit {
+    private static final double BASELINE_DRIFT = 0.01;
+
+    @Getter
+    private final String poolId;
+    private final int minLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition sessionAvailable = lock.newCondition();
+    private volatile int maxLimit;
+    private volatile double limit;
+    private volatile int inFlight = 0;
+    private long baselineLatencyNanos = Long.MAX_VALUE;
+
+    public AdaptiveConcurrencyLimit(String poolId, int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        this.poolId = poolId;
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.clamp(initialLimit, this.minLimit, maxLimit);
+    }
+
+    /**
+     * A limit that does not adapt, for endpoints with adaptive concurrency disabled.
+     */
+    public static AdaptiveConcurrencyLimit fixed(String poolId, int limit) {
+        return new AdaptiveConcurrencyLimit(poolId, limit, limit, limit, 1.0, Double.MAX_VALUE);
+    }
+
+    /**
+     * Wait for a session slot.
+     *
+     * @return true if a slot was taken and must be returned with {@link #release()}.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= getLimit()) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = sessionAvailable.awaitNanos(remainingNanos);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            sessionAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adjust the limit after a message was sent or rejected by the endpoint.
+     *
+     * @param latencyNanos The time the send took.
+     * @param overloaded   Whether the endpoint replied with 421 or 451.
+     */
+    public void onSample(long latencyNanos, boolean overloaded) {
+        lock.lock();
+        try {
+            if (!overloaded) {
+                baselineLatencyNanos = latencyNanos < baselineLatencyNanos
+                        ? latencyNanos
+                        : baselineLatencyNanos + (long) ((latencyNanos - baselineLatencyNanos) * BASELINE_DRIFT);
+            }
+            int previousLimit = getLimit();
+            if (overloaded || latencyNanos > baselineLatencyNanos * latencyTolerance) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight >= previousLimit - 1) {
+                // Only grow while the limit is actually in use, otherwise an idle endpoint would creep up to maxLimit
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            int currentLimit = getLimit();
+            if (currentLimit != previousLimit) {
+                log.debug("Concurrency limit of SMTP pool {} changed from {} to {}", poolId, previousLimit, currentLimit);
+                if (currentLimit > previousLimit) {
+                    sessionAvailable.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Change the upper bound, e.g. after the connectionLimit of the endpoint was edited.
+     */
+    public void setMaxLimit(int maxLimit) {
+        lock.lock();
+        try {
+            this.maxLimit = maxLimit;
+            this.limit = Math.clamp(limit, Math.min(minLimit, maxLimit), maxLimit);
+            sessionAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check a send failure for a 421 (service not available) or 451 (local error, try again later) reply.
+     */
+    public static boolean isOverloadReply(Exception failure) {
+        Exception current = failure;
+        while (current != null) {
+            int returnCode = -1;
+            if (current instanceof SMTPSendFailedException smtpSendFailedException) {
+                returnCode = smtpSendFailedException.getReturnCode();
+            } else if (current instanceof SMTPAddressFailedException smtpAddressFailedException) {
+                returnCode = smtpAddressFailedException.getReturnCode();
+            }
+            if (returnCode == 421 || returnCode == 451) {
+                return true;
+            }
+            current = current instanceof MessagingException messagingException ? messagingException.getNextException() : null;
+        }
+        return false;
+    }
+}
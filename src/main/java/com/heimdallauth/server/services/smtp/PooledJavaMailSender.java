@@ -0,0 +1,159 @@
+package com.heimdallauth.server.services.smtp;
+
+import com.heimdallauth.server.exceptions.SmtpCircuitOpen;
+import com.heimdallauth.server.exceptions.SmtpPoolUnavailable;
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link JavaMailSenderImpl} that sends over transports borrowed from a {@link SmtpTransportPool}
+ * instead of opening and closing a connection for every {@code send()} call.
+ * When a {@link SmtpCircuitBreaker} is set, sends fail fast while the circuit of the host is open. Only failures to
+ * connect to or talk to the server count against the circuit; a saturated or closed local pool does not.
+ * A connection lost in the middle of a batch is opened again once; if that fails, the rest of the batch fails with it.
+ */
+public class PooledJavaMailSender extends JavaMailSenderImpl implements AutoCloseable {
+    private static final String HEADER_MESSAGE_ID = "Message-ID";
+    private SmtpTransportPool transportPool;
+    private SmtpCircuitBreaker circuitBreaker;
+
+    public SmtpTransportPool getTransportPool() {
+        return transportPool;
+    }
+
+    public void setTransportPool(SmtpTransportPool transportPool) {
+        this.transportPool = transportPool;
+    }
+
+    public SmtpCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(SmtpCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        if (circuitBreaker != null && !circuitBreaker.tryAcquirePermission()) {
+            SmtpCircuitOpen circuitOpen = new SmtpCircuitOpen("Circuit for SMTP host %s is open".formatted(circuitBreaker.getHost()));
+            for (int i = 0; i < mimeMessages.length; i++) {
+                failedMessages.put(originalMessage(mimeMessages, originalMessages, i), circuitOpen);
+            }
+            throw new MailSendException("Mail server unavailable", circuitOpen, failedMessages);
+        }
+        Transport transport;
+        try {
+            transport = transportPool.borrow();
+        } catch (AuthenticationFailedException ex) {
+            recordOutcome(true);
+            throw new MailAuthenticationException(ex);
+        } catch (SmtpPoolUnavailable ex) {
+            if (circuitBreaker != null) {
+                circuitBreaker.releasePermission();
+            }
+            for (int i = 0; i < mimeMessages.length; i++) {
+                failedMessages.put(originalMessage(mimeMessages, originalMessages, i), ex);
+            }
+            throw new MailSendException("No SMTP connection available", ex, failedMessages);
+        } catch (Exception ex) {
+            recordOutcome(false);
+            for (int i = 0; i < mimeMessages.length; i++) {
+                failedMessages.put(originalMessage(mimeMessages, originalMessages, i), ex);
+            }
+            throw new MailSendException("Mail server connection failed", ex, failedMessages);
+        }
+        boolean serverReachable = true;
+        boolean resetRequired = false;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                Object originalMessage = originalMessage(mimeMessages, originalMessages, i);
+                if (transport == null) {
+                    try {
+                        transport = transportPool.reconnect();
+                        serverReachable = true;
+                    } catch (MessagingException ex) {
+                        // The server dropped the connection and refused a new one, the rest of the batch would fare no better
+                        serverReachable = false;
+                        for (int remaining = i; remaining < mimeMessages.length; remaining++) {
+                            failedMessages.put(originalMessage(mimeMessages, originalMessages, remaining), ex);
+                        }
+                        break;
+                    }
+                }
+                MimeMessage mimeMessage = mimeMessages[i];
+                try {
+                    if (mimeMessage.getSentDate() == null) {
+                        mimeMessage.setSentDate(new Date());
+                    }
+                    String messageId = mimeMessage.getMessageID();
+                    mimeMessage.saveChanges();
+                    if (messageId != null) {
+                        mimeMessage.setHeader(HEADER_MESSAGE_ID, messageId);
+                    }
+                    Address[] addresses = mimeMessage.getAllRecipients();
+                    long sendStartNanos = System.nanoTime();
+                    try {
+                        transport.sendMessage(mimeMessage, (addresses != null ? addresses : new Address[0]));
+                        transportPool.getConcurrencyLimit().onSample(System.nanoTime() - sendStartNanos, false);
+                    } catch (Exception ex) {
+                        if (AdaptiveConcurrencyLimit.isOverloadReply(ex)) {
+                            transportPool.getConcurrencyLimit().onSample(System.nanoTime() - sendStartNanos, true);
+                        }
+                        throw ex;
+                    }
+                } catch (Exception ex) {
+                    failedMessages.put(originalMessage, ex);
+                    if (transport.isConnected()) {
+                        resetRequired = true;
+                    } else {
+                        serverReachable = false;
+                        transportPool.closeQuietly(transport);
+                        transport = null;
+                    }
+                }
+            }
+        } finally {
+            transportPool.release(transport, resetRequired);
+            recordOutcome(serverReachable);
+        }
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    private void recordOutcome(boolean serverReachable) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (serverReachable) {
+            circuitBreaker.onSuccess();
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (transportPool != null) {
+            transportPool.close();
+        }
+    }
+
+    private static Object originalMessage(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages, int index) {
+        return originalMessages != null ? originalMessages[index] : mimeMessages[index];
+    }
+}
@@ -0,0 +1,102 @@
+package com.heimdallauth.server.services.smtp;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker for a single SMTP host. After {@code failureThreshold} consecutive connection failures the circuit
+ * opens and sends fail fast instead of waiting for the connect timeout. Once {@code openDuration} has passed a single
+ * trial send is let through: if it reaches the server the circuit closes, otherwise it opens again.
+ * Only failures to reach the server count; a server that answers with an SMTP error is up.
+ */
+@Slf4j
+public class SmtpCircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @Getter
+    private final String host;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+    @Getter
+    private volatile State state = State.CLOSED;
+    private volatile long openedAtNanos;
+
+    public SmtpCircuitBreaker(String host, int failureThreshold, Duration openDuration) {
+        this.host = host;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Ask for permission to send. Every granted permission must be followed by {@link #onSuccess()}, {@link #onFailure()}
+     * or {@link #releasePermission()}.
+     *
+     * @return true if the send may go ahead.
+     */
+    public boolean tryAcquirePermission() {
+        State currentState = state;
+        if (currentState == State.CLOSED) {
+            return true;
+        }
+        if (currentState == State.OPEN && openDurationElapsed() && trialInFlight.compareAndSet(false, true)) {
+            state = State.HALF_OPEN;
+            log.info("Circuit for SMTP host {} is half-open, sending a trial message", host);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if sends are currently rejected without being attempted.
+     */
+    public boolean isRejecting() {
+        State currentState = state;
+        return currentState == State.HALF_OPEN || (currentState == State.OPEN && !openDurationElapsed());
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            trialInFlight.set(false);
+            log.info("Circuit for SMTP host {} is closed", host);
+        }
+    }
+
+    /**
+     * Give back a permission without an outcome, e.g. when the send never reached the server because the local
+     * connection pool was saturated. A pending trial is handed to the next caller.
+     */
+    public void releasePermission() {
+        if (state == State.HALF_OPEN && trialInFlight.compareAndSet(true, false)) {
+            state = State.OPEN;
+        }
+    }
+
+    public void onFailure() {
+        if (state == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAtNanos = System.nanoTime();
+        if (state != State.OPEN) {
+            log.warn("Circuit for SMTP host {} is open after {} consecutive failures", host, consecutiveFailures.get());
+        }
+        state = State.OPEN;
+        trialInFlight.set(false);
+    }
+
+    private boolean openDurationElapsed() {
+        return System.nanoTime() - openedAtNanos >= openDurationNanos;
+    }
+}
@@ -0,0 +1,193 @@
+package com.heimdallauth.server.services.smtp;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostSmtpPoolConfiguration;
+import com.heimdallauth.server.exceptions.SmtpPoolUnavailable;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPTransport;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of connected and authenticated SMTP transports for a single SMTP server.
+ * At most as many transports as the {@link AdaptiveConcurrencyLimit} of the server allows are handed out at the same
+ * time, never more than {@code connectionLimit}; returned transports are kept open and reused so that the TCP, TLS and
+ * AUTH handshakes are paid once per connection instead of once per message.
+ */
+@Slf4j
+public class SmtpTransportPool implements AutoCloseable {
+    @Getter
+    private final String poolId;
+    @Getter
+    private final int connectionLimit;
+    private final Session session;
+    private final String protocol;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final HeimdallBifrostSmtpPoolConfiguration poolConfiguration;
+    private final Timer connectTimer;
+    @Getter
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final BlockingDeque<IdleTransport> idleTransports = new LinkedBlockingDeque<>();
+    private volatile boolean closed = false;
+
+    public SmtpTransportPool(String poolId, int connectionLimit, Session session, String protocol, String host, int port, String username, String password, HeimdallBifrostSmtpPoolConfiguration poolConfiguration, Timer connectTimer, AdaptiveConcurrencyLimit concurrencyLimit) {
+        this.poolId = poolId;
+        this.connectionLimit = connectionLimit;
+        this.session = session;
+        this.protocol = protocol;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.poolConfiguration = poolConfiguration;
+        this.connectTimer = connectTimer;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * Borrow a connected transport, reusing an idle one when possible.
+     * Every successful borrow must be paired with {@link #release(Transport, boolean)}.
+     *
+     * @return A connected transport.
+     * @throws SmtpPoolUnavailable If the pool is closed or no connection became available in time.
+     * @throws MessagingException   If connecting failed.
+     */
+    public Transport borrow() throws MessagingException {
+        if (closed) {
+            throw new SmtpPoolUnavailable("SMTP transport pool %s is closed".formatted(poolId));
+        }
+        try {
+            if (!concurrencyLimit.tryAcquire(poolConfiguration.getBorrowTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SmtpPoolUnavailable("Timed out waiting for an SMTP connection from pool %s".formatted(poolId));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmtpPoolUnavailable("Interrupted while waiting for an SMTP connection", e);
+        }
+        try {
+            IdleTransport idleTransport;
+            while ((idleTransport = idleTransports.pollFirst()) != null) {
+                if (isReusable(idleTransport)) {
+                    return idleTransport.transport();
+                }
+                closeQuietly(idleTransport.transport());
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException e) {
+            concurrencyLimit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a new connection for a caller that already holds a permit, e.g. after its transport dropped mid-batch.
+     *
+     * @return A connected transport.
+     * @throws MessagingException If connecting failed.
+     */
+    public Transport reconnect() throws MessagingException {
+        return connect();
+    }
+
+    /**
+     * Return a borrowed transport to the pool.
+     *
+     * @param transport     The borrowed transport, or null if it was already discarded.
+     * @param resetRequired Whether a message failed on this transport, in which case RSET is issued before reuse.
+     */
+    public void release(Transport transport, boolean resetRequired) {
+        try {
+            if (transport == null) {
+                return;
+            }
+            if (closed || (resetRequired && !resetSession(transport))) {
+                closeQuietly(transport);
+            } else {
+                idleTransports.offerFirst(new IdleTransport(transport, System.nanoTime()));
+            }
+        } finally {
+            concurrencyLimit.release();
+        }
+    }
+
+    /**
+     * Close idle transports that have not been used within the configured max idle time.
+     */
+    public void evictIdleTransports() {
+        long maxIdleNanos = poolConfiguration.getMaxIdleTime().toNanos();
+        for (IdleTransport idleTransport : idleTransports) {
+            if (System.nanoTime() - idleTransport.idleSinceNanos() > maxIdleNanos && idleTransports.remove(idleTransport)) {
+                log.debug("Evicting idle SMTP connection from pool {}", poolId);
+                closeQuietly(idleTransport.transport());
+            }
+        }
+    }
+
+    public void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Failed to close SMTP connection for pool {}: {}", poolId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        IdleTransport idleTransport;
+        while ((idleTransport = idleTransports.pollFirst()) != null) {
+            closeQuietly(idleTransport.transport());
+        }
+    }
+
+    private Transport connect() throws MessagingException {
+        log.debug("Opening new SMTP connection for pool {}", poolId);
+        long connectStartNanos = System.nanoTime();
+        try {
+            Transport transport = session.getTransport(protocol);
+            transport.connect(host, port, username, password);
+            return transport;
+        } finally {
+            connectTimer.record(System.nanoTime() - connectStartNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Idle transports are only probed with NOOP once they have been idle long enough for the server to have dropped them.
+     */
+    private boolean isReusable(IdleTransport idleTransport) {
+        long idleNanos = System.nanoTime() - idleTransport.idleSinceNanos();
+        if (idleNanos > poolConfiguration.getMaxIdleTime().toNanos()) {
+            return false;
+        }
+        if (idleNanos > poolConfiguration.getValidateAfterIdle().toNanos()) {
+            return idleTransport.transport().isConnected();
+        }
+        return true;
+    }
+
+    private boolean resetSession(Transport transport) {
+        if (transport instanceof SMTPTransport smtpTransport) {
+            try {
+                smtpTransport.simpleCommand("RSET");
+                return true;
+            } catch (MessagingException e) {
+                log.debug("RSET failed for pool {}, discarding connection: {}", poolId, e.getMessage());
+                return false;
+            }
+        }
+        return transport.isConnected();
+    }
+
+    private record IdleTransport(Transport transport, long idleSinceNanos) {
+    }
+}
@@ -0,0 +1,191 @@
+package com.heimdallauth.server.services.suppression;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * The suppressions of one configuration set: a snapshot plus the entries added and removed since it was taken.
+ * Writers publish a new immutable view under a lock, readers never lock. Once the delta reaches the compaction
+ * threshold it is folded into a new snapshot, which the persister writes in place of the old one.
+ */
+@Slf4j
+public final class ConfigurationSetSuppressions {
+    private final String configurationSetId;
+    private final int compactionThreshold;
+    private final UnaryOperator<SuppressionSnapshot> persister;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<Long, Long> addedFingerprintsByEntryId = new HashMap<>();
+    private final Set<Long> removedEntryIds = new HashSet<>();
+    private final Set<Long> removedFingerprints = new HashSet<>();
+    private volatile SuppressionView view;
+
+    /**
+     * @param configurationSetId  The ID of the configuration set.
+     * @param snapshot            The snapshot of the entries attached to the configuration set.
+     * @param compactionThreshold Number of entries added or removed after which the snapshot is rewritten.
+     * @param persister           Persists a compacted snapshot and returns the snapshot to read from then on.
+     */
+    public ConfigurationSetSuppressions(String configurationSetId, SuppressionSnapshot snapshot, int compactionThreshold, UnaryOperator<SuppressionSnapshot> persister) {
+        this.configurationSetId = configurationSetId;
+        this.compactionThreshold = compactionThreshold;
+        this.persister = persister;
+        this.view = new SuppressionView(snapshot, new long[0], new long[0]);
+    }
+
+    /**
+     * @return The snapshot lookups start from, without the entries added or removed since.
+     */
+    public SuppressionSnapshot snapshot() {
+        return view.snapshot();
+    }
+
+    /**
+     * Check whether an address or its domain is suppressed. Surrounding whitespace and case are ignored.
+     *
+     * @param emailAddress The recipient address.
+     * @return true if the address or its domain is suppressed.
+     */
+    public boolean contains(String emailAddress) {
+        if (emailAddress == null) {
+            return false;
+        }
+        int start = 0;
+        int end = emailAddress.length();
+        while (start < end && Character.isWhitespace(emailAddress.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(emailAddress.charAt(end - 1))) {
+            end--;
+        }
+        SuppressionView currentView = view;
+        if (currentView.contains(SuppressionSnapshot.addressFingerprint(emailAddress, start, end))) {
+            return true;
+        }
+        int domainSeparator = emailAddress.lastIndexOf('@', end - 1);
+        return domainSeparator >= start && currentView.contains(SuppressionSnapshot.domainFingerprint(emailAddress, domainSeparator + 1, end));
+    }
+
+    /**
+     * Add an entry. Adding an entry that is already present with the same value changes nothing, so the same
+     * attachment may be applied more than once, e.g. locally and again from a change stream.
+     */
+    public void add(long entryIdHash, long fingerprint) {
+        writeLock.lock();
+        try {
+            Long addedFingerprint = addedFingerprintsByEntryId.get(entryIdHash);
+            if (addedFingerprint != null && addedFingerprint == fingerprint) {
+                return;
+            }
+            if (addedFingerprint == null && !removedEntryIds.contains(entryIdHash)) {
+                SuppressionSnapshot snapshot = view.snapshot();
+                int entryIndex = snapshot.findEntry(entryIdHash);
+                if (entryIndex >= 0 && snapshot.entryFingerprintAt(entryIndex) == fingerprint) {
+                    return;
+                }
+            }
+            addedFingerprintsByEntryId.put(entryIdHash, fingerprint);
+            publish();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove an entry by ID. Entries the snapshot does not contain are rejected with a binary search. The fingerprint
+     * of a removed entry stops matching only when no other remaining entry has the same value, which takes a scan of
+     * the snapshot's entries; actual deletions from a configuration set are rare enough for that.
+     */
+    public void remove(long entryIdHash) {
+        writeLock.lock();
+        try {
+            if (addedFingerprintsByEntryId.remove(entryIdHash) != null) {
+                publish();
+                return;
+            }
+            if (removedEntryIds.contains(entryIdHash)) {
+                return;
+            }
+            SuppressionSnapshot snapshot = view.snapshot();
+            int removedEntryIndex = snapshot.findEntry(entryIdHash);
+            if (removedEntryIndex < 0) {
+                return;
+            }
+            long removedFingerprint = snapshot.entryFingerprintAt(removedEntryIndex);
+            boolean fingerprintStillUsed = addedFingerprintsByEntryId.containsValue(removedFingerprint);
+            for (int entryIndex = 0; entryIndex < snapshot.entryCount() && !fingerprintStillUsed; entryIndex++) {
+                long otherEntryIdHash = snapshot.entryIdHashAt(entryIndex);
+                fingerprintStillUsed = entryIndex != removedEntryIndex && snapshot.entryFingerprintAt(entryIndex) == removedFingerprint && !removedEntryIds.contains(otherEntryIdHash);
+            }
+            removedEntryIds.add(entryIdHash);
+            if (!fingerprintStillUsed) {
+                removedFingerprints.add(removedFingerprint);
+            }
+            publish();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void publish() {
+        if (addedFingerprintsByEntryId.size() + removedEntryIds.size() >= compactionThreshold) {
+            compact();
+            return;
+        }
+        view = new SuppressionView(view.snapshot(), sortedArray(addedFingerprintsByEntryId.values()), sortedArray(removedFingerprints));
+    }
+
+    /**
+     * Fold the delta into a new snapshot and persist it in place of the old one.
+     */
+    private void compact() {
+        SuppressionSnapshot snapshot = view.snapshot();
+        int capacity = snapshot.entryCount() + addedFingerprintsByEntryId.size();
+        long[] entryIdHashes = new long[capacity];
+        long[] entryFingerprints = new long[capacity];
+        int entryCount = 0;
+        for (int entryIndex = 0; entryIndex < snapshot.entryCount(); entryIndex++) {
+            long entryIdHash = snapshot.entryIdHashAt(entryIndex);
+            if (!removedEntryIds.contains(entryIdHash) && !addedFingerprintsByEntryId.containsKey(entryIdHash)) {
+                entryIdHashes[entryCount] = entryIdHash;
+                entryFingerprints[entryCount++] = snapshot.entryFingerprintAt(entryIndex);
+            }
+        }
+        for (Map.Entry<Long, Long> addedEntry : addedFingerprintsByEntryId.entrySet()) {
+            entryIdHashes[entryCount] = addedEntry.getKey();
+            entryFingerprints[entryCount++] = addedEntry.getValue();
+        }
+        SuppressionSnapshot compactedSnapshot = persister.apply(SuppressionSnapshot.build(entryIdHashes, entryFingerprints, entryCount));
+        addedFingerprintsByEntryId.clear();
+        removedEntryIds.clear();
+        removedFingerprints.clear();
+        view = new SuppressionView(compactedSnapshot, new long[0], new long[0]);
+        log.debug("Compacted suppression snapshot for configuration set: {} to {} entries", configurationSetId, entryCount);
+    }
+
+    private static long[] sortedArray(Collection<Long> fingerprints) {
+        long[] sortedFingerprints = fingerprints.stream().mapToLong(Long::longValue).distinct().toArray();
+        Arrays.sort(sortedFingerprints);
+        return sortedFingerprints;
+    }
+
+    /**
+     * Immutable view read by lookups: fingerprints added since the snapshot always match, fingerprints whose last entry
+     * was removed since the snapshot never do.
+     */
+    private record SuppressionView(SuppressionSnapshot snapshot, long[] addedFingerprints, long[] removedFingerprints) {
+        private boolean contains(long fingerprint) {
+            if (addedFingerprints.length > 0 && Arrays.binarySearch(addedFingerprints, fingerprint) >= 0) {
+                return true;
+            }
+            return snapshot.containsFingerprint(fingerprint) && (removedFingerprints.length == 0 || Arrays.binarySearch(removedFingerprints, fingerprint) < 0);
+        }
+    }
+}
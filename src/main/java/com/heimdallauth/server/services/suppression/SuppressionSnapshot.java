@@ -0,0 +1,279 @@
+package com.heimdallauth.server.services.suppression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Immutable set of suppression fingerprints of one configuration set, held in a byte buffer that is either on heap or
+ * a memory-mapped file. A fingerprint is a 64-bit hash of a lower-cased address or domain, seeded differently for the
+ * two kinds, so a million suppressed values take 8 MB and a lookup is a binary search without allocation. With 64-bit
+ * fingerprints the chance that an unsuppressed address collides with one of a million entries is below 10^-13.
+ * <p>
+ * Layout: a 32 byte header (magic, version, fingerprint count, entry count, entry digest), the distinct fingerprints in
+ * ascending order, then one (entry ID hash, fingerprint) pair per suppression entry, ordered by entry ID hash so that
+ * an entry can be found by ID without a scan.
+ * The entry digest is an order-independent hash of all pairs, used to tell whether a persisted snapshot still matches
+ * the entries of its configuration set.
+ */
+public final class SuppressionSnapshot {
+    private static final long MAGIC = 0x4246535550534E50L;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final long ADDRESS_SEED = 0x9E3779B97F4A7C15L;
+    private static final long DOMAIN_SEED = 0xC2B2AE3D27D4EB4FL;
+    private static final long UNIDENTIFIED_ENTRY_SEED = 0x165667B19E3779F9L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final ByteBuffer buffer;
+    private final int fingerprintCount;
+    private final int entryCount;
+    private final long entryDigest;
+
+    private SuppressionSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.fingerprintCount = buffer.getInt(12);
+        this.entryCount = buffer.getInt(16);
+        this.entryDigest = buffer.getLong(24);
+    }
+
+    /**
+     * Build a snapshot on heap.
+     *
+     * @param entryIdHashes     The entry ID hashes, see {@link #entryIdHash(UUID)}.
+     * @param entryFingerprints The fingerprint of each entry, at the same index.
+     * @param entryCount        The number of entries in the arrays.
+     * @return The snapshot.
+     */
+    public static SuppressionSnapshot build(long[] entryIdHashes, long[] entryFingerprints, int entryCount) {
+        entryIdHashes = Arrays.copyOf(entryIdHashes, entryCount);
+        entryFingerprints = Arrays.copyOf(entryFingerprints, entryCount);
+        sortEntriesByIdHash(entryIdHashes, entryFingerprints);
+        long[] distinctFingerprints = Arrays.copyOf(entryFingerprints, entryCount);
+        Arrays.sort(distinctFingerprints);
+        int fingerprintCount = 0;
+        for (int index = 0; index < distinctFingerprints.length; index++) {
+            if (index == 0 || distinctFingerprints[index] != distinctFingerprints[index - 1]) {
+                distinctFingerprints[fingerprintCount++] = distinctFingerprints[index];
+            }
+        }
+        long entryDigest = 0;
+        for (int index = 0; index < entryCount; index++) {
+            entryDigest ^= entryDigest(entryIdHashes[index], entryFingerprints[index]);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + fingerprintCount * 8 + entryCount * 16);
+        buffer.putLong(MAGIC).putInt(VERSION).putInt(fingerprintCount).putInt(entryCount).putInt(0).putLong(entryDigest);
+        for (int index = 0; index < fingerprintCount; index++) {
+            buffer.putLong(distinctFingerprints[index]);
+        }
+        for (int index = 0; index < entryCount; index++) {
+            buffer.putLong(entryIdHashes[index]).putLong(entryFingerprints[index]);
+        }
+        return new SuppressionSnapshot(buffer.clear());
+    }
+
+    /**
+     * Map a persisted snapshot.
+     *
+     * @param file The snapshot file.
+     * @return The snapshot backed by the mapped file.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static SuppressionSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Truncated suppression snapshot " + file);
+            }
+            ByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mappedBuffer.getLong(0) != MAGIC || mappedBuffer.getInt(8) != VERSION) {
+                throw new IOException("Unsupported suppression snapshot " + file);
+            }
+            SuppressionSnapshot snapshot = new SuppressionSnapshot(mappedBuffer);
+            if (size != HEADER_BYTES + snapshot.fingerprintCount * 8L + snapshot.entryCount * 16L) {
+                throw new IOException("Truncated suppression snapshot " + file);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Write the snapshot to a file and map it. The file is written next to the target and moved into place,
+     * so a reader never sees a partially written snapshot.
+     *
+     * @param file The snapshot file.
+     * @return The snapshot backed by the mapped file.
+     * @throws IOException If the file cannot be written.
+     */
+    public SuppressionSnapshot persist(Path file) throws IOException {
+        Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer source = buffer.duplicate().clear();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(file);
+    }
+
+    public boolean containsFingerprint(long fingerprint) {
+        int low = 0;
+        int high = fingerprintCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long candidate = buffer.getLong(HEADER_BYTES + middle * 8);
+            if (candidate < fingerprint) {
+                low = middle + 1;
+            } else if (candidate > fingerprint) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param entryIdHash The entry ID hash to look for.
+     * @return The index of the entry, or -1 if the snapshot does not contain it.
+     */
+    public int findEntry(long entryIdHash) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long candidate = entryIdHashAt(middle);
+            if (candidate < entryIdHash) {
+                low = middle + 1;
+            } else if (candidate > entryIdHash) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public int entryCount() {
+        return entryCount;
+    }
+
+    public long entryDigest() {
+        return entryDigest;
+    }
+
+    public long entryIdHashAt(int entryIndex) {
+        return buffer.getLong(entriesOffset() + entryIndex * 16);
+    }
+
+    public long entryFingerprintAt(int entryIndex) {
+        return buffer.getLong(entriesOffset() + entryIndex * 16 + 8);
+    }
+
+    private int entriesOffset() {
+        return HEADER_BYTES + fingerprintCount * 8;
+    }
+
+    /**
+     * Fingerprint of a normalized suppression value: an address if it contains an {@code @}, a domain otherwise.
+     */
+    public static long valueFingerprint(String normalizedValue) {
+        return normalizedValue.indexOf('@') >= 0 ? addressFingerprint(normalizedValue, 0, normalizedValue.length()) : domainFingerprint(normalizedValue, 0, normalizedValue.length());
+    }
+
+    public static long addressFingerprint(CharSequence value, int start, int end) {
+        return fingerprint(ADDRESS_SEED, value, start, end);
+    }
+
+    public static long domainFingerprint(CharSequence value, int start, int end) {
+        return fingerprint(DOMAIN_SEED, value, start, end);
+    }
+
+    public static long entryIdHash(UUID suppressionEntryId) {
+        return mix(suppressionEntryId.getMostSignificantBits() ^ mix(suppressionEntryId.getLeastSignificantBits()));
+    }
+
+    /**
+     * Entry ID hash of an entry without an ID, derived from its normalized value so that it is the same on every load
+     * and every replica.
+     */
+    public static long entryIdHash(String normalizedValue) {
+        return mix(fingerprint(UNIDENTIFIED_ENTRY_SEED, normalizedValue, 0, normalizedValue.length()));
+    }
+
+    public static long entryDigest(long entryIdHash, long fingerprint) {
+        return mix(entryIdHash ^ Long.rotateLeft(fingerprint, 29));
+    }
+
+    /**
+     * Heapsort of the entry pairs by entry ID hash, in place and without boxing.
+     */
+    private static void sortEntriesByIdHash(long[] entryIdHashes, long[] entryFingerprints) {
+        int size = entryIdHashes.length;
+        for (int root = size / 2 - 1; root >= 0; root--) {
+            siftDown(entryIdHashes, entryFingerprints, root, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(entryIdHashes, entryFingerprints, 0, end);
+            siftDown(entryIdHashes, entryFingerprints, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] entryIdHashes, long[] entryFingerprints, int root, int size) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && entryIdHashes[child + 1] > entryIdHashes[child]) {
+                child++;
+            }
+            if (entryIdHashes[root] >= entryIdHashes[child]) {
+                return;
+            }
+            swap(entryIdHashes, entryFingerprints, root, child);
+            root = child;
+        }
+    }
+
+    private static void swap(long[] entryIdHashes, long[] entryFingerprints, int first, int second) {
+        long entryIdHash = entryIdHashes[first];
+        entryIdHashes[first] = entryIdHashes[second];
+        entryIdHashes[second] = entryIdHash;
+        long entryFingerprint = entryFingerprints[first];
+        entryFingerprints[first] = entryFingerprints[second];
+        entryFingerprints[second] = entryFingerprint;
+    }
+
+    /**
+     * FNV-1a over the lower-cased characters of a region, finished with a 64-bit mixer so that similar values spread.
+     */
+    private static long fingerprint(long seed, CharSequence value, int start, int end) {
+        long hash = seed;
+        for (int index = start; index < end; index++) {
+            hash ^= Character.toLowerCase(value.charAt(index));
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,37 @@
+package com.heimdallauth.server.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a stream of items as newline-delimited JSON, one item per line. The stream is opened on the thread writing the
+ * response and closed when the response is complete, so a Mongo cursor behind it is drained in batches and never
+ * held in memory as a whole.
+ */
+public final class NdjsonStreamingResponseBody {
+    private NdjsonStreamingResponseBody() {
+    }
+
+    public static <T> StreamingResponseBody of(ObjectMapper objectMapper, Supplier<Stream<T>> itemStreamSupplier) {
+        // Lines are left to the generator's buffer instead of being flushed one by one
+        ObjectWriter itemWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return (OutputStream outputStream) -> {
+            try (Stream<T> items = itemStreamSupplier.get();
+                 JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(outputStream)) {
+                jsonGenerator.setRootValueSeparator(null);
+                jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                for (T item : (Iterable<T>) items::iterator) {
+                    itemWriter.writeValue(jsonGenerator, item);
+                    jsonGenerator.writeRaw('\n');
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.services.DeficitRoundRobinScheduler.DispatchResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeficitRoundRobinSchedulerTest {
+    private final Map<String, Double> weights = new HashMap<>();
+    private final DeficitRoundRobinScheduler scheduler = new DeficitRoundRobinScheduler(tenantId -> weights.getOrDefault(tenantId, 1.0));
+
+    /**
+     * Dispatches from per-tenant message counts until it runs out of workers, recording the order of the tenants.
+     */
+    private static final class RecordingDispatcher implements DeficitRoundRobinScheduler.TenantDispatcher {
+        private final Map<String, Integer> pendingMessages = new HashMap<>();
+        private final List<String> dispatchedTenants = new ArrayList<>();
+        private int availableWorkers;
+
+        RecordingDispatcher withMessages(String tenantId, int messages) {
+            pendingMessages.put(tenantId, messages);
+            return this;
+        }
+
+        RecordingDispatcher withWorkers(int workers) {
+            availableWorkers = workers;
+            return this;
+        }
+
+        @Override
+        public DispatchResult dispatch(String tenantId) {
+            if (availableWorkers == 0) {
+                return DispatchResult.NO_CAPACITY;
+            }
+            int pending = pendingMessages.getOrDefault(tenantId, 0);
+            if (pending == 0) {
+                return DispatchResult.EMPTY;
+            }
+            pendingMessages.put(tenantId, pending - 1);
+            availableWorkers--;
+            dispatchedTenants.add(tenantId);
+            return DispatchResult.DISPATCHED;
+        }
+    }
+
+    @Test
+    void drain_equalWeightsAlternate() {
+        RecordingDispatcher dispatcher = new RecordingDispatcher().withMessages("a", 100).withMessages("b", 100).withWorkers(6);
+        scheduler.activate(List.of("a", "b"));
+
+        assertEquals(6, scheduler.drain(dispatcher));
+        assertEquals(List.of("a", "b", "a", "b", "a", "b"), dispatcher.dispatchedTenants);
+    }
+
+    @Test
+    void drain_servesTenantsInProportionToWeight() {
+        weights.put("a", 2.0);
+        RecordingDispatcher dispatcher = new RecordingDispatcher().withMessages("a", 100).withMessages("b", 100).withWorkers(6);
+        scheduler.activate(List.of("a", "b"));
+
+        scheduler.drain(dispatcher);
+        assertEquals(List.of("a", "a", "b", "a", "a", "b"), dispatcher.dispatchedTenants);
+    }
+
+    @Test
+    void drain_fractionalWeightCarriesCreditOver() {
+        weights.put("a", 0.5);
+        RecordingDispatcher dispatcher = new RecordingDispatcher().withMessages("a", 100).withMessages("b", 100).withWorkers(6);
+        scheduler.activate(List.of("a", "b"));
+
+        scheduler.drain(dispatcher);
+        assertEquals(List.of("b", "a", "b", "b", "a", "b"), dispatcher.dispatchedTenants);
+    }
+
+    @Test
+    void drain_burstOfOneTenantDoesNotStarveOthers() {
+        RecordingDispatcher dispatcher = new RecordingDispatcher().withMessages("noisy", 10_000).withMessages("quiet", 2).withWorkers(4);
+        scheduler.activate(List.of("noisy", "quiet"));
+
+        scheduler.drain(dispatcher);
+        assertEquals(List.of("noisy", "quiet", "noisy", "quiet"), dispatcher.dispatchedTenants);
+    }
+
+    @Test
+    void drain_keepsPositionAndCreditWhenOutOfWorkers() {
+        weights.put("a", 2.0);
+        RecordingDispatcher dispatcher = new RecordingDispatcher().withMessages("a", 100).withMessages("b", 100).withWorkers(1);
+        scheduler.activate(List.of("a", "b"));
+        scheduler.drain(dispatcher);
+
+        dispatcher.withWorkers(4);
+        scheduler.activate(List.of("a", "b"));
+        scheduler.drain(dispatcher);
+        // The second drain finishes the turn of a with its remaining credit instead of crediting it again
+        assertEquals(List.of("a", "a", "b", "a", "a"), dispatcher.dispatchedTenants);
+    }
+
+    @Test
+    void drain_emptyTenantLeavesRotationAndLosesCredit() {
+        weights.put("a", 3.0);
+        RecordingDispatcher dispatcher = new RecordingDispatcher().withMessages("a", 1).withMessages("b", 100).withWorkers(2);
+        scheduler.activate(List.of("a", "b"));
+        scheduler.drain(dispatcher);
+        assertEquals(List.of("a", "b"), dispatcher.dispatchedTenants);
+
+        dispatcher.dispatchedTenants.clear();
+        dispatcher.withMessages("a", 100).withWorkers(5);
+        scheduler.activate(List.of("a", "b"));
+        scheduler.drain(dispatcher);
+        // b is still in the rotation and goes first, a starts again from zero credit and gets three messages per turn
+        assertEquals(List.of("b", "a", "a", "a", "b"), dispatcher.dispatchedTenants);
+    }
+
+    @Test
+    void drain_stopsWhenEveryTenantIsEmpty() {
+        RecordingDispatcher dispatcher = new RecordingDispatcher().withMessages("a", 1).withMessages("b", 2).withWorkers(100);
+        scheduler.activate(List.of("a", "b"));
+
+        assertEquals(3, scheduler.drain(dispatcher));
+        assertEquals(0, scheduler.drain(dispatcher));
+    }
+
+    @Test
+    void activate_doesNotDuplicateTenants() {
+        RecordingDispatcher dispatcher = new RecordingDispatcher().withMessages("a", 100).withMessages("b", 100).withWorkers(4);
+        scheduler.activate(List.of("a", "b"));
+        scheduler.activate(List.of("b", "a", "b"));
+
+        scheduler.drain(dispatcher);
+        assertEquals(List.of("a", "b", "a", "b"), dispatcher.dispatchedTenants);
+    }
+
+    @Test
+    void drain_zeroWeightStillMakesProgress() {
+        weights.put("a", 0.0);
+        RecordingDispatcher dispatcher = new RecordingDispatcher().withMessages("a", 1).withWorkers(1);
+        scheduler.activate(List.of("a"));
+
+        assertEquals(1, scheduler.drain(dispatcher));
+    }
+}
@@ -1,16 +1,26 @@
 package com.heimdallauth.server.services;
 
+import com.heimdallauth.server.configuration.HeimdallBifrostCacheConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 
 import java.util.Map;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class EmailTemplatingServiceTest {
-    final EmailTemplatingService emailTemplatingService = new EmailTemplatingService();
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final EmailTemplatingService emailTemplatingService = new EmailTemplatingService(meterRegistry, cacheConfiguration(100));
+
+    private static HeimdallBifrostCacheConfiguration cacheConfiguration(long compiledTemplateMaxSize) {
+        HeimdallBifrostCacheConfiguration cacheConfiguration = new HeimdallBifrostCacheConfiguration();
+        cacheConfiguration.setCompiledTemplateMaxSize(compiledTemplateMaxSize);
+        return cacheConfiguration;
+    }
 
     @BeforeEach
     void setUp() {
@@ -44,4 +54,33 @@ class EmailTemplatingServiceTest {
             fail("Exception should not be thrown for nested levels processing");
         }
     }
-}
\ No newline at end of file
+    @Test
+    void processString_reusesCompiledTemplate() throws Exception {
+        UUID templateId = UUID.randomUUID();
+        String templateString = "Hello, {{name}}!";
+        assertEquals("Hello, John!", emailTemplatingService.processString(templateId, templateString, Map.of("name", "John")));
+        assertEquals("Hello, Jane!", emailTemplatingService.processString(templateId, templateString, Map.of("name", "Jane")));
+        assertEquals(1.0, cacheGets("miss"));
+        assertEquals(1.0, cacheGets("hit"));
+    }
+    @Test
+    void processString_inlineSourcesOfSameLengthDoNotShareCompiledTemplate() throws Exception {
+        assertEquals("Hello, John!", emailTemplatingService.processString("Hello, {{name}}!", Map.of("name", "John", "nick", "Jo")));
+        assertEquals("Hallo, Jo!", emailTemplatingService.processString("Hallo, {{nick}}!", Map.of("name", "John", "nick", "Jo")));
+        assertEquals(2.0, cacheGets("miss"));
+    }
+    @Test
+    void evictTemplate_recompilesTemplate() throws Exception {
+        UUID templateId = UUID.randomUUID();
+        String templateString = "Hello, {{name}}!";
+        emailTemplatingService.processString(templateId, templateString, Map.of("name", "John"));
+        emailTemplatingService.evictTemplate(templateId);
+        emailTemplatingService.processString(templateId, templateString, Map.of("name", "John"));
+        assertEquals(2.0, cacheGets("miss"));
+        assertEquals(0.0, cacheGets("hit"));
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "bifrost.templates.compiled").tag("result", result).functionCounter().count();
+    }
+}
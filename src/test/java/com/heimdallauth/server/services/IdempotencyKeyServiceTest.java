@@ -0,0 +1,141 @@
+package com.heimdallauth.server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heimdallauth.server.TestcontainersConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostIdempotencyConfiguration;
+import com.heimdallauth.server.constants.OutboxMessageStatus;
+import com.heimdallauth.server.documents.IdempotencyKeyDocument;
+import com.heimdallauth.server.exceptions.IdempotencyKeyInProgress;
+import com.heimdallauth.server.exceptions.IdempotencyKeyReused;
+import com.heimdallauth.server.services.IdempotencyKeyService.IdempotentSendResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.IDEMPOTENCY_KEY_COLLECTION;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@Import(TestcontainersConfiguration.class)
+class IdempotencyKeyServiceTest {
+    private static final String SCOPED_KEY = IdempotencyKeyService.scopedKey("client", "key-1");
+    @Autowired
+    MongoTemplate mongoTemplate;
+    private HeimdallBifrostIdempotencyConfiguration idempotencyConfiguration;
+    private IdempotencyKeyService idempotencyKeyService;
+
+    @BeforeEach
+    void setUp() {
+        this.mongoTemplate.remove(new Query(), IDEMPOTENCY_KEY_COLLECTION);
+        this.idempotencyConfiguration = new HeimdallBifrostIdempotencyConfiguration();
+        this.idempotencyKeyService = newService();
+    }
+
+    /**
+     * A service with an empty local cache, standing in for another replica.
+     */
+    private IdempotencyKeyService newService() {
+        return new IdempotencyKeyService(mongoTemplate, new ObjectMapper(), idempotencyConfiguration);
+    }
+
+    @Test
+    void reserve_newKeyIsReservedOnce() {
+        String requestHash = idempotencyKeyService.requestHash("request");
+
+        assertTrue(idempotencyKeyService.reserve(SCOPED_KEY, requestHash).isEmpty());
+        assertThrows(IdempotencyKeyInProgress.class, () -> newService().reserve(SCOPED_KEY, requestHash));
+    }
+
+    @Test
+    void reserve_completedKeyReplaysOriginalResult() {
+        String requestHash = idempotencyKeyService.requestHash("request");
+        IdempotentSendResult result = new IdempotentSendResult(202, UUID.randomUUID(), OutboxMessageStatus.PENDING);
+        idempotencyKeyService.reserve(SCOPED_KEY, requestHash);
+        idempotencyKeyService.complete(SCOPED_KEY, requestHash, result);
+
+        assertEquals(Optional.of(result), idempotencyKeyService.reserve(SCOPED_KEY, requestHash));
+        assertEquals(Optional.of(result), newService().reserve(SCOPED_KEY, requestHash));
+    }
+
+    @Test
+    void reserve_keyReusedForDifferentRequestIsRejected() {
+        String requestHash = idempotencyKeyService.requestHash("request");
+        idempotencyKeyService.reserve(SCOPED_KEY, requestHash);
+        idempotencyKeyService.complete(SCOPED_KEY, requestHash, new IdempotentSendResult(200, null, null));
+        String otherRequestHash = idempotencyKeyService.requestHash("other request");
+
+        assertThrows(IdempotencyKeyReused.class, () -> idempotencyKeyService.reserve(SCOPED_KEY, otherRequestHash));
+        assertThrows(IdempotencyKeyReused.class, () -> newService().reserve(SCOPED_KEY, otherRequestHash));
+    }
+
+    @Test
+    void reserve_expiredReservationIsTakenOver() {
+        String requestHash = idempotencyKeyService.requestHash("request");
+        idempotencyKeyService.reserve(SCOPED_KEY, requestHash);
+        expireReservation();
+
+        assertTrue(newService().reserve(SCOPED_KEY, requestHash).isEmpty());
+        assertTrue(findKey().getReservedUntil().isAfter(Instant.now()));
+        assertThrows(IdempotencyKeyInProgress.class, () -> newService().reserve(SCOPED_KEY, requestHash));
+    }
+
+    @Test
+    void reserve_reservationWithoutLeaseIsTakenOver() {
+        String requestHash = idempotencyKeyService.requestHash("request");
+        idempotencyKeyService.reserve(SCOPED_KEY, requestHash);
+        this.mongoTemplate.updateFirst(keyQuery(), new Update().unset("reservedUntil"), IDEMPOTENCY_KEY_COLLECTION);
+
+        assertTrue(newService().reserve(SCOPED_KEY, requestHash).isEmpty());
+    }
+
+    @Test
+    void reserve_expiredReservationOfDifferentRequestIsRejected() {
+        idempotencyKeyService.reserve(SCOPED_KEY, idempotencyKeyService.requestHash("request"));
+        expireReservation();
+        String otherRequestHash = idempotencyKeyService.requestHash("other request");
+
+        assertThrows(IdempotencyKeyReused.class, () -> newService().reserve(SCOPED_KEY, otherRequestHash));
+    }
+
+    @Test
+    void release_allowsRetryWithSameKey() {
+        String requestHash = idempotencyKeyService.requestHash("request");
+        idempotencyKeyService.reserve(SCOPED_KEY, requestHash);
+        idempotencyKeyService.release(SCOPED_KEY);
+
+        assertTrue(newService().reserve(SCOPED_KEY, requestHash).isEmpty());
+    }
+
+    @Test
+    void complete_clearsReservation() {
+        String requestHash = idempotencyKeyService.requestHash("request");
+        idempotencyKeyService.reserve(SCOPED_KEY, requestHash);
+        idempotencyKeyService.complete(SCOPED_KEY, requestHash, new IdempotentSendResult(200, null, null));
+
+        IdempotencyKeyDocument storedKey = findKey();
+        assertTrue(storedKey.isCompleted());
+        assertNull(storedKey.getReservedUntil());
+    }
+
+    private void expireReservation() {
+        this.mongoTemplate.updateFirst(keyQuery(), new Update().set("reservedUntil", Instant.now().minusSeconds(1)), IDEMPOTENCY_KEY_COLLECTION);
+    }
+
+    private IdempotencyKeyDocument findKey() {
+        return this.mongoTemplate.findOne(keyQuery(), IdempotencyKeyDocument.class, IDEMPOTENCY_KEY_COLLECTION);
+    }
+
+    private static Query keyQuery() {
+        return Query.query(Criteria.where("_id").is(SCOPED_KEY));
+    }
+}
@@ -0,0 +1,116 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostOutboxConfiguration;
+import com.heimdallauth.server.configuration.HeimdallBifrostOutboxConfiguration.Lane;
+import com.heimdallauth.server.constants.SendPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxPriorityLanesTest {
+    /**
+     * Six workers: two reserved for transactional mail, one each for standard and bulk mail, two shared.
+     */
+    private static OutboxPriorityLanes lanes(int workerConcurrency, long maxQueueDepth) {
+        HeimdallBifrostOutboxConfiguration outboxConfiguration = new HeimdallBifrostOutboxConfiguration();
+        outboxConfiguration.setWorkerConcurrency(workerConcurrency);
+        outboxConfiguration.setLanes(new EnumMap<>(Map.of(
+                SendPriority.TRANSACTIONAL, new Lane(2, maxQueueDepth),
+                SendPriority.STANDARD, new Lane(1, maxQueueDepth),
+                SendPriority.BULK, new Lane(1, maxQueueDepth)
+        )));
+        return new OutboxPriorityLanes(outboxConfiguration, new SimpleMeterRegistry());
+    }
+
+    private static int acquireAll(OutboxPriorityLanes lanes, SendPriority lane) {
+        int acquired = 0;
+        while (lanes.tryAcquireWorker(lane)) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    @Test
+    void totalWorkers_includesReservedAndShared() {
+        assertEquals(6, lanes(6, 10).totalWorkers());
+        // Reservations beyond the worker concurrency leave nothing to share but are still honoured
+        assertEquals(4, lanes(2, 10).totalWorkers());
+    }
+
+    @Test
+    void tryAcquireWorker_lowerLaneBorrowsSharedWorkersButNotReservedOnes() {
+        OutboxPriorityLanes lanes = lanes(6, 10);
+        assertEquals(3, acquireAll(lanes, SendPriority.BULK));
+        assertFalse(lanes.hasAvailableWorker(SendPriority.BULK));
+
+        assertTrue(lanes.hasAvailableWorker(SendPriority.TRANSACTIONAL));
+        assertEquals(2, acquireAll(lanes, SendPriority.TRANSACTIONAL));
+        assertEquals(1, acquireAll(lanes, SendPriority.STANDARD));
+        assertFalse(lanes.hasAvailableWorker(SendPriority.STANDARD));
+    }
+
+    @Test
+    void releaseWorker_returnsSharedWorkersFirst() {
+        OutboxPriorityLanes lanes = lanes(6, 10);
+        assertEquals(3, acquireAll(lanes, SendPriority.BULK));
+        lanes.releaseWorker(SendPriority.BULK);
+
+        // The bulk lane still holds its reserved worker and one shared worker, one shared worker is free again
+        assertEquals(3, acquireAll(lanes, SendPriority.TRANSACTIONAL));
+        assertFalse(lanes.tryAcquireWorker(SendPriority.BULK));
+
+        // Releasing the rest frees the shared worker before the reserved one
+        lanes.releaseWorker(SendPriority.BULK);
+        lanes.releaseWorker(SendPriority.BULK);
+        assertEquals(1, acquireAll(lanes, SendPriority.TRANSACTIONAL));
+        assertEquals(1, acquireAll(lanes, SendPriority.BULK));
+    }
+
+    @Test
+    void tryReserveQueueSlot_enforcesMaxQueueDepth() {
+        OutboxPriorityLanes lanes = lanes(6, 3);
+        for (int message = 0; message < 3; message++) {
+            assertTrue(lanes.tryReserveQueueSlot(SendPriority.STANDARD), "message " + message);
+        }
+        assertFalse(lanes.tryReserveQueueSlot(SendPriority.STANDARD));
+        assertTrue(lanes.tryReserveQueueSlot(SendPriority.BULK));
+
+        lanes.onMessageDequeued(SendPriority.STANDARD);
+        assertTrue(lanes.tryReserveQueueSlot(SendPriority.STANDARD));
+    }
+
+    @Test
+    void onMessageQueued_countsAgainstTheBoundWithoutBeingRejected() {
+        OutboxPriorityLanes lanes = lanes(6, 2);
+        lanes.onMessageQueued(SendPriority.TRANSACTIONAL);
+        lanes.onMessageQueued(SendPriority.TRANSACTIONAL);
+        lanes.onMessageQueued(SendPriority.TRANSACTIONAL);
+        assertFalse(lanes.tryReserveQueueSlot(SendPriority.TRANSACTIONAL));
+    }
+
+    @Test
+    void updateQueueDepth_correctsDrift() {
+        OutboxPriorityLanes lanes = lanes(6, 5);
+        lanes.updateQueueDepth(SendPriority.STANDARD, 5);
+        assertFalse(lanes.tryReserveQueueSlot(SendPriority.STANDARD));
+
+        lanes.updateQueueDepth(SendPriority.STANDARD, 4);
+        assertTrue(lanes.tryReserveQueueSlot(SendPriority.STANDARD));
+        assertFalse(lanes.tryReserveQueueSlot(SendPriority.STANDARD));
+    }
+
+    @Test
+    void onMessageDequeued_neverGoesBelowZero() {
+        OutboxPriorityLanes lanes = lanes(6, 2);
+        lanes.onMessageDequeued(SendPriority.BULK);
+        lanes.onMessageDequeued(SendPriority.BULK);
+
+        assertTrue(lanes.tryReserveQueueSlot(SendPriority.BULK));
+        assertTrue(lanes.tryReserveQueueSlot(SendPriority.BULK));
+        assertFalse(lanes.tryReserveQueueSlot(SendPriority.BULK));
+    }
+}
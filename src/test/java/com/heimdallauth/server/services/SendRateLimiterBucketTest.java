@@ -0,0 +1,97 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostRateLimitConfiguration.Limit;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SendRateLimiterBucketTest {
+    private static final long EMISSION_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * 10 messages per second with a burst of 5: one permit every 100 ms, five back to back.
+     */
+    private static SendRateLimiter.Bucket bucket(long nowNanos) {
+        return new SendRateLimiter.Bucket(new Limit(10, 5), nowNanos);
+    }
+
+    @Test
+    void tryAcquire_allowsBurstThenRejects() {
+        SendRateLimiter.Bucket bucket = bucket(0);
+        for (int permit = 0; permit < 5; permit++) {
+            assertEquals(0, bucket.tryAcquire(1, 0), "permit " + permit);
+        }
+        assertEquals(EMISSION_INTERVAL_NANOS, bucket.tryAcquire(1, 0));
+    }
+
+    @Test
+    void tryAcquire_rejectedAttemptDoesNotConsume() {
+        SendRateLimiter.Bucket bucket = bucket(0);
+        assertEquals(0, bucket.tryAcquire(5, 0));
+        long firstWait = bucket.tryAcquire(1, 0);
+        assertEquals(firstWait, bucket.tryAcquire(1, 0));
+        assertEquals(0, bucket.tryAcquire(1, firstWait));
+    }
+
+    @Test
+    void tryAcquire_refillsAtSustainedRate() {
+        SendRateLimiter.Bucket bucket = bucket(0);
+        assertEquals(0, bucket.tryAcquire(5, 0));
+        assertEquals(0, bucket.tryAcquire(1, EMISSION_INTERVAL_NANOS));
+        assertTrue(bucket.tryAcquire(1, EMISSION_INTERVAL_NANOS) > 0);
+        assertEquals(0, bucket.tryAcquire(2, 3 * EMISSION_INTERVAL_NANOS));
+    }
+
+    @Test
+    void tryAcquire_idleTimeDoesNotExceedBurst() {
+        SendRateLimiter.Bucket bucket = bucket(0);
+        long muchLater = TimeUnit.HOURS.toNanos(1);
+        assertEquals(0, bucket.tryAcquire(5, muchLater));
+        assertEquals(EMISSION_INTERVAL_NANOS, bucket.tryAcquire(1, muchLater));
+    }
+
+    @Test
+    void tryAcquire_moreThanBurstIsNeverAllowedAtOnce() {
+        SendRateLimiter.Bucket bucket = bucket(0);
+        assertEquals(EMISSION_INTERVAL_NANOS, bucket.tryAcquire(6, 0));
+    }
+
+    @Test
+    void tryAcquire_worksWithNegativeNanoTime() {
+        long origin = -TimeUnit.SECONDS.toNanos(30);
+        SendRateLimiter.Bucket bucket = bucket(origin);
+        assertEquals(0, bucket.tryAcquire(5, origin));
+        assertEquals(EMISSION_INTERVAL_NANOS, bucket.tryAcquire(1, origin));
+        assertEquals(0, bucket.tryAcquire(1, origin + EMISSION_INTERVAL_NANOS));
+    }
+
+    @Test
+    void reserve_queuesPermitsBehindEachOther() {
+        SendRateLimiter.Bucket bucket = bucket(0);
+        assertEquals(0, bucket.reserve(5, 0));
+        assertEquals(EMISSION_INTERVAL_NANOS, bucket.reserve(1, 0));
+        assertEquals(2 * EMISSION_INTERVAL_NANOS, bucket.reserve(1, 0));
+        assertEquals(2 * EMISSION_INTERVAL_NANOS, bucket.tryAcquire(1, EMISSION_INTERVAL_NANOS));
+    }
+
+    @Test
+    void extremeLimits_saturateInsteadOfOverflowing() {
+        SendRateLimiter.Bucket slowBucket = new SendRateLimiter.Bucket(new Limit(1e-12, Integer.MAX_VALUE), 0);
+        long wait = slowBucket.tryAcquire(Integer.MAX_VALUE, 0);
+        assertTrue(wait >= 0);
+        assertTrue(slowBucket.reserve(Integer.MAX_VALUE, 0) >= 0);
+
+        SendRateLimiter.Bucket fastBucket = new SendRateLimiter.Bucket(new Limit(1e18, 1), 0);
+        assertEquals(0, fastBucket.tryAcquire(1, 0));
+    }
+
+    @Test
+    void invalidLimits_areRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SendRateLimiter.Bucket(new Limit(0, 5), 0));
+        assertThrows(IllegalArgumentException.class, () -> new SendRateLimiter.Bucket(new Limit(-1, 5), 0));
+        assertThrows(IllegalArgumentException.class, () -> new SendRateLimiter.Bucket(new Limit(Double.NaN, 5), 0));
+        assertThrows(IllegalArgumentException.class, () -> new SendRateLimiter.Bucket(new Limit(10, 0), 0));
+    }
+}
@@ -0,0 +1,112 @@
+package com.heimdallauth.server.services;
+
+import com.heimdallauth.server.configuration.HeimdallBifrostRetryConfiguration;
+import com.heimdallauth.server.constants.SendFailureType;
+import com.heimdallauth.server.exceptions.SendRateLimitExceeded;
+import com.heimdallauth.server.exceptions.SmtpCircuitOpen;
+import com.heimdallauth.server.exceptions.SmtpPoolUnavailable;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SendRetryPolicyTest {
+    private static SMTPSendFailedException smtpReply(int returnCode) {
+        return new SMTPSendFailedException("DATA", returnCode, returnCode + " reply", null, null, null, null);
+    }
+
+    private static MailSendException failedMessages(Exception... messageExceptions) {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        for (int message = 0; message < messageExceptions.length; message++) {
+            failedMessages.put("message-" + message, messageExceptions[message]);
+        }
+        return new MailSendException(failedMessages);
+    }
+
+    @Test
+    void classify_smtp4xxIsTransient() {
+        assertEquals(SendFailureType.TRANSIENT, SendRetryPolicy.classify(smtpReply(451)));
+    }
+
+    @Test
+    void classify_smtp5xxIsPermanent() {
+        assertEquals(SendFailureType.PERMANENT, SendRetryPolicy.classify(smtpReply(554)));
+    }
+
+    @Test
+    void classify_rejectedRecipientIsPermanent() throws AddressException {
+        SMTPAddressFailedException rejectedRecipient = new SMTPAddressFailedException(new InternetAddress("user@example.com"), "RCPT TO", 550, "550 no such user");
+        assertEquals(SendFailureType.PERMANENT, SendRetryPolicy.classify(rejectedRecipient));
+    }
+
+    @Test
+    void classify_rejectedCredentialsArePermanent() {
+        assertEquals(SendFailureType.PERMANENT, SendRetryPolicy.classify(new AuthenticationFailedException("535 authentication failed")));
+        assertEquals(SendFailureType.PERMANENT, SendRetryPolicy.classify(new MailAuthenticationException("Authentication failed")));
+    }
+
+    @Test
+    void classify_malformedAddressIsPermanent() {
+        assertEquals(SendFailureType.PERMANENT, SendRetryPolicy.classify(new AddressException("Missing domain", "user@")));
+    }
+
+    @Test
+    void classify_localBackPressureIsTransient() {
+        assertEquals(SendFailureType.TRANSIENT, SendRetryPolicy.classify(new SendRateLimitExceeded("Send rate limit reached", Duration.ofSeconds(1))));
+        assertEquals(SendFailureType.TRANSIENT, SendRetryPolicy.classify(new SmtpCircuitOpen("Circuit is open")));
+        assertEquals(SendFailureType.TRANSIENT, SendRetryPolicy.classify(new SmtpPoolUnavailable("Timed out waiting for an SMTP connection")));
+    }
+
+    @Test
+    void classify_lostConnectionIsTransient() {
+        assertEquals(SendFailureType.TRANSIENT, SendRetryPolicy.classify(new MessagingException("Connection lost")));
+        assertEquals(SendFailureType.TRANSIENT, SendRetryPolicy.classify(new MailSendException("Mail server connection failed", new MessagingException("Could not connect", new SocketTimeoutException("connect timed out")))));
+    }
+
+    @Test
+    void classify_nonTransportFailureIsPermanent() {
+        assertEquals(SendFailureType.PERMANENT, SendRetryPolicy.classify(new IllegalArgumentException("Template not found")));
+        assertEquals(SendFailureType.PERMANENT, SendRetryPolicy.classify(new MessagingException("Failed to build message", new IllegalStateException("Unknown charset"))));
+    }
+
+    @Test
+    void classify_walksMessageExceptionsAndNextExceptions() {
+        MessagingException chained = new MessagingException("Send failed");
+        chained.setNextException(smtpReply(421));
+        assertEquals(SendFailureType.TRANSIENT, SendRetryPolicy.classify(failedMessages(new IllegalStateException("Unrelated"), chained)));
+    }
+
+    @Test
+    void classify_permanentReplyAnywhereInTheChainWins() {
+        MessagingException chained = new MessagingException("Send failed", smtpReply(550));
+        assertEquals(SendFailureType.PERMANENT, SendRetryPolicy.classify(failedMessages(smtpReply(451), new IOException("Connection reset"), chained)));
+    }
+
+    @Test
+    void shouldRetry_onlyTransientFailuresBelowMaxAttempts() {
+        HeimdallBifrostRetryConfiguration retryConfiguration = new HeimdallBifrostRetryConfiguration();
+        retryConfiguration.setEnabled(true);
+        retryConfiguration.setMaxAttempts(3);
+        SendRetryPolicy retryPolicy = new SendRetryPolicy(retryConfiguration);
+
+        assertTrue(retryPolicy.shouldRetry(smtpReply(451), 2));
+        assertFalse(retryPolicy.shouldRetry(smtpReply(451), 3));
+        assertFalse(retryPolicy.shouldRetry(smtpReply(550), 1));
+
+        retryConfiguration.setEnabled(false);
+        assertFalse(retryPolicy.shouldRetry(smtpReply(451), 1));
+    }
+}
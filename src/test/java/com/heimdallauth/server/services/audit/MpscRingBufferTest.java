@@ -0,0 +1,126 @@
+package com.heimdallauth.server.services.audit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBufferTest {
+    @Test
+    void capacity_isRoundedUpToPowerOfTwo() {
+        assertEquals(1, new MpscRingBuffer<>(1).capacity());
+        assertEquals(8, new MpscRingBuffer<>(8).capacity());
+        assertEquals(16, new MpscRingBuffer<>(9).capacity());
+    }
+
+    @Test
+    void constructor_rejectsInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(0));
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>((1 << 30) + 1));
+    }
+
+    @Test
+    void offer_rejectsWhenFullUntilDrained() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int element = 0; element < 4; element++) {
+            assertTrue(buffer.offer(element));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(1, buffer.drainTo(drained, 1));
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+    }
+
+    @Test
+    void drainTo_returnsElementsInOrderAcrossLaps() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        List<Integer> drained = new ArrayList<>();
+        for (int element = 0; element < 10; element++) {
+            assertTrue(buffer.offer(element));
+            if (element % 3 == 2) {
+                buffer.drainTo(drained, Integer.MAX_VALUE);
+            }
+        }
+        buffer.drainTo(drained, Integer.MAX_VALUE);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), drained);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void drainTo_movesAtMostMaxElements() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(8);
+        for (int element = 0; element < 5; element++) {
+            buffer.offer(element);
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(drained, 3));
+        assertEquals(List.of(0, 1, 2), drained);
+        assertEquals(2, buffer.size());
+        assertEquals(2, buffer.drainTo(drained, 3));
+        assertEquals(0, buffer.drainTo(drained, 3));
+    }
+
+    @Test
+    void offer_concurrentProducersLoseAndDuplicateNothing() throws InterruptedException {
+        int producers = 4;
+        int elementsPerProducer = 50_000;
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producerThreads = new ArrayList<>();
+        for (int producer = 0; producer < producers; producer++) {
+            int firstElement = producer * elementsPerProducer;
+            producerThreads.add(Thread.ofPlatform().daemon(true).start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int element = firstElement; element < firstElement + elementsPerProducer; element++) {
+                    while (!buffer.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        int totalElements = producers * elementsPerProducer;
+        BitSet received = new BitSet(totalElements);
+        int[] lastElementOfProducer = new int[producers];
+        Arrays.fill(lastElementOfProducer, -1);
+        List<Integer> batch = new ArrayList<>();
+        int receivedCount = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        start.countDown();
+        while (receivedCount < totalElements) {
+            assertTrue(System.nanoTime() < deadline, "Timed out after receiving " + receivedCount + " elements");
+            batch.clear();
+            if (buffer.drainTo(batch, 32) == 0) {
+                Thread.yield();
+            }
+            for (int element : batch) {
+                assertFalse(received.get(element), "Duplicate element " + element);
+                received.set(element);
+                // Elements of one producer arrive in the order they were offered
+                int producer = element / elementsPerProducer;
+                assertTrue(element > lastElementOfProducer[producer], "Out of order element " + element);
+                lastElementOfProducer[producer] = element;
+            }
+            receivedCount += batch.size();
+        }
+        for (Thread producerThread : producerThreads) {
+            producerThread.join();
+        }
+        assertEquals(totalElements, received.cardinality());
+        assertEquals(0, buffer.size());
+    }
+}
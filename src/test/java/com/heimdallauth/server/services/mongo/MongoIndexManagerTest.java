@@ -0,0 +1,147 @@
+package com.heimdallauth.server.services.mongo;
+
+import com.heimdallauth.server.TestcontainersConfiguration;
+import com.mongodb.client.FindIterable;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static com.heimdallauth.server.constants.MongoCollectionNames.*;
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Sorts.descending;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the hot queries against a real MongoDB with the indexes of {@link MongoIndexManager} and fails if the winning
+ * plan of any of them scans a whole collection.
+ */
+@DataMongoTest
+@Import({TestcontainersConfiguration.class, MongoIndexManager.class})
+class MongoIndexManagerTest {
+    @Autowired
+    MongoTemplate mongoTemplate;
+    @Autowired
+    MongoIndexManager mongoIndexManager;
+
+    @Test
+    void ensureIndexes_isIdempotent() {
+        assertDoesNotThrow(() -> mongoIndexManager.ensureIndexes());
+    }
+
+    @Test
+    void ensureIndexes_appliesChangedTtl() {
+        MongoIndexManager.RequiredIndex ttlIndex = mongoIndexManager.requiredIndexes().stream()
+                .filter(requiredIndex -> requiredIndex.collectionName().equals(IDEMPOTENCY_KEY_COLLECTION))
+                .findFirst()
+                .orElseThrow();
+        long requiredExpiry = ttlIndex.index().getIndexOptions().get("expireAfterSeconds", Number.class).longValue();
+        String indexName = findIndex(IDEMPOTENCY_KEY_COLLECTION, ttlIndex.index().getIndexKeys()).getString("name");
+        this.mongoTemplate.getDb().runCommand(new Document("collMod", IDEMPOTENCY_KEY_COLLECTION)
+                .append("index", new Document("name", indexName).append("expireAfterSeconds", requiredExpiry + 60)));
+
+        assertDoesNotThrow(() -> mongoIndexManager.ensureIndexes());
+        assertEquals(requiredExpiry, findIndex(IDEMPOTENCY_KEY_COLLECTION, ttlIndex.index().getIndexKeys()).get("expireAfterSeconds", Number.class).longValue());
+    }
+
+    @Test
+    void ensureIndexes_recreatesIndexWithoutTtl() {
+        MongoIndexManager.RequiredIndex ttlIndex = mongoIndexManager.requiredIndexes().stream()
+                .filter(requiredIndex -> requiredIndex.collectionName().equals(SUPPRESSION_IMPORT_JOB_COLLECTION))
+                .findFirst()
+                .orElseThrow();
+        String indexName = findIndex(SUPPRESSION_IMPORT_JOB_COLLECTION, ttlIndex.index().getIndexKeys()).getString("name");
+        this.mongoTemplate.indexOps(SUPPRESSION_IMPORT_JOB_COLLECTION).dropIndex(indexName);
+        this.mongoTemplate.getCollection(SUPPRESSION_IMPORT_JOB_COLLECTION).createIndex(ttlIndex.index().getIndexKeys());
+
+        assertDoesNotThrow(() -> mongoIndexManager.ensureIndexes());
+        assertNotNull(findIndex(SUPPRESSION_IMPORT_JOB_COLLECTION, ttlIndex.index().getIndexKeys()).get("expireAfterSeconds"));
+    }
+
+    @Test
+    void templateByTenantIdAndTemplateName_usesIndex() {
+        assertNoCollectionScan(TEMPLATES_COLLECTION, and(eq("tenantId", UUID.randomUUID().toString()), eq("templateName", "welcome")));
+    }
+
+    @Test
+    void configurationSetByTenantIdAndName_usesIndex() {
+        assertNoCollectionScan(CONFIGURATION_SET_COLLECTION, and(eq("tenantId", UUID.randomUUID().toString()), eq("configurationSetName", "default")));
+    }
+
+    @Test
+    void suppressionEntriesById_useIndex() {
+        assertNoCollectionScan(SUPPRESSION_LIST_COLLECTION, in("_id", UUID.randomUUID().toString(), UUID.randomUUID().toString()));
+    }
+
+    @Test
+    void suppressionEntriesOfConfigurationSet_useIndex() {
+        assertNoCollectionScan(SUPPRESSION_LIST_COLLECTION, eq("configurationSetIds", UUID.randomUUID().toString()));
+    }
+
+    @Test
+    void suppressionEntryByNormalizedValue_usesIndex() {
+        assertNoCollectionScan(SUPPRESSION_LIST_COLLECTION, eq("normalizedValue", "user@example.com"));
+    }
+
+    @Test
+    void outboxClaim_usesIndex() {
+        Date now = new Date();
+        Bson claimableMessages = or(
+                and(eq("status", "PENDING"), lte("nextAttemptAt", now)),
+                and(eq("status", "PROCESSING"), lte("lockedUntil", now))
+        );
+        assertNoCollectionScan(EMAIL_OUTBOX_COLLECTION, and(claimableMessages, eq("priority", "TRANSACTIONAL"), eq("tenantId", UUID.randomUUID().toString())));
+    }
+
+    @Test
+    void deadLettersByDeadLetteredAt_useIndex() {
+        assertNoCollectionScan(this.mongoTemplate.getCollection(EMAIL_DEAD_LETTER_COLLECTION).find().sort(descending("deadLetteredAt", "_id")));
+    }
+
+    @Test
+    void deadLettersAfterCursor_useIndex() {
+        Date cursorTime = new Date();
+        Bson afterCursor = or(lt("deadLetteredAt", cursorTime), and(eq("deadLetteredAt", cursorTime), lt("_id", UUID.randomUUID().toString())));
+        assertNoCollectionScan(this.mongoTemplate.getCollection(EMAIL_DEAD_LETTER_COLLECTION).find(afterCursor).sort(descending("deadLetteredAt", "_id")));
+    }
+
+    private Document findIndex(String collectionName, Document keys) {
+        for (Document index : this.mongoTemplate.getCollection(collectionName).listIndexes()) {
+            if (keys.equals(index.get("key", Document.class))) {
+                return index;
+            }
+        }
+        return fail("No index on " + keys.toJson() + " in " + collectionName);
+    }
+
+    private void assertNoCollectionScan(String collectionName, Bson filter) {
+        assertNoCollectionScan(this.mongoTemplate.getCollection(collectionName).find(filter));
+    }
+
+    private void assertNoCollectionScan(FindIterable<Document> query) {
+        Document winningPlan = query.explain().get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        assertNotNull(winningPlan);
+        List<String> stages = new ArrayList<>();
+        collectStages(winningPlan, stages);
+        assertFalse(stages.contains("COLLSCAN"), () -> "Collection scan in winning plan " + winningPlan.toJson());
+    }
+
+    private static void collectStages(Object planNode, List<String> stages) {
+        if (planNode instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (planNode instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.heimdallauth.server.services.smtp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+    private static final long FAST_SEND_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Starts at four sessions, halves on back-off and treats anything over twice the fastest send as slow.
+     */
+    private static AdaptiveConcurrencyLimit limit(int maxLimit) {
+        return new AdaptiveConcurrencyLimit("smtp.example.com:587", 4, 1, maxLimit, 0.5, 2.0);
+    }
+
+    private static void acquire(AdaptiveConcurrencyLimit limit, int sessions) throws InterruptedException {
+        for (int session = 0; session < sessions; session++) {
+            assertTrue(limit.tryAcquire(0, TimeUnit.MILLISECONDS), "session " + session);
+        }
+    }
+
+    @Test
+    void onSample_growsByOneSessionPerRoundWhenSaturated() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = limit(8);
+        acquire(limit, 4);
+        for (int sample = 0; sample < 4; sample++) {
+            limit.onSample(FAST_SEND_NANOS, false);
+        }
+        assertEquals(4, limit.getLimit());
+        limit.onSample(FAST_SEND_NANOS, false);
+        assertEquals(5, limit.getLimit());
+        assertTrue(limit.tryAcquire(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void onSample_doesNotGrowWhileIdle() {
+        AdaptiveConcurrencyLimit limit = limit(8);
+        for (int sample = 0; sample < 50; sample++) {
+            limit.onSample(FAST_SEND_NANOS, false);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    void onSample_neverGrowsBeyondMaxLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = limit(5);
+        acquire(limit, 4);
+        for (int sample = 0; sample < 50; sample++) {
+            limit.onSample(FAST_SEND_NANOS, false);
+        }
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    void onSample_overloadReplyBacksOffDownToMinLimit() {
+        AdaptiveConcurrencyLimit limit = limit(8);
+        limit.onSample(FAST_SEND_NANOS, true);
+        assertEquals(2, limit.getLimit());
+        limit.onSample(FAST_SEND_NANOS, true);
+        assertEquals(1, limit.getLimit());
+        limit.onSample(FAST_SEND_NANOS, true);
+        assertEquals(1, limit.getLimit());
+    }
+
+    @Test
+    void onSample_slowSendBacksOff() {
+        AdaptiveConcurrencyLimit limit = limit(8);
+        limit.onSample(FAST_SEND_NANOS, false);
+        limit.onSample(FAST_SEND_NANOS * 3, false);
+        assertEquals(2, limit.getLimit());
+        // Within the tolerance of the fastest send
+        limit.onSample(FAST_SEND_NANOS * 3 / 2, false);
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    void onSample_overloadReplyDoesNotLowerBaseline() {
+        AdaptiveConcurrencyLimit limit = limit(8);
+        // A fast rejection must not make every later successful send look slow
+        limit.onSample(FAST_SEND_NANOS / 10, true);
+        assertEquals(2, limit.getLimit());
+        limit.onSample(FAST_SEND_NANOS, false);
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    void setMaxLimit_lowersCurrentLimit() {
+        AdaptiveConcurrencyLimit limit = limit(8);
+        limit.setMaxLimit(2);
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    void fixed_ignoresSamples() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = AdaptiveConcurrencyLimit.fixed("smtp.example.com:587", 3);
+        acquire(limit, 3);
+        limit.onSample(FAST_SEND_NANOS, false);
+        limit.onSample(FAST_SEND_NANOS * 100, false);
+        limit.onSample(FAST_SEND_NANOS, true);
+        assertEquals(3, limit.getLimit());
+        assertFalse(limit.tryAcquire(0, TimeUnit.MILLISECONDS));
+    }
+}
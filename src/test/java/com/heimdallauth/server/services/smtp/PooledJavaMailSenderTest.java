@@ -0,0 +1,86 @@
+package com.heimdallauth.server.services.smtp;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PooledJavaMailSenderTest {
+    private final Session session = Session.getInstance(new Properties());
+    private SmtpTransportPool transportPool;
+    private Transport transport;
+    private SmtpCircuitBreaker circuitBreaker;
+    private PooledJavaMailSender mailSender;
+
+    @BeforeEach
+    void setUp() throws MessagingException {
+        transportPool = mock(SmtpTransportPool.class);
+        transport = mock(Transport.class);
+        when(transportPool.borrow()).thenReturn(transport);
+        when(transportPool.getConcurrencyLimit()).thenReturn(mock(AdaptiveConcurrencyLimit.class));
+        circuitBreaker = new SmtpCircuitBreaker("smtp.example.com", 1, Duration.ofMinutes(1));
+        mailSender = new PooledJavaMailSender();
+        mailSender.setTransportPool(transportPool);
+        mailSender.setCircuitBreaker(circuitBreaker);
+    }
+
+    private MimeMessage message(String recipient) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("sender@example.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+        message.setText("body");
+        return message;
+    }
+
+    @Test
+    void send_sendsBatchOverOneTransport() throws MessagingException {
+        mailSender.send(message("a@example.com"), message("b@example.com"), message("c@example.com"));
+
+        verify(transport, times(3)).sendMessage(any(), any());
+        verify(transportPool, never()).reconnect();
+        verify(transportPool).release(transport, false);
+        assertEquals(SmtpCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void send_reconnectsOnceAfterLostConnection() throws MessagingException {
+        Transport reconnectedTransport = mock(Transport.class);
+        doThrow(new MessagingException("Connection reset")).when(transport).sendMessage(any(), any());
+        when(transport.isConnected()).thenReturn(false);
+        when(transportPool.reconnect()).thenReturn(reconnectedTransport);
+
+        MailSendException failure = assertThrows(MailSendException.class, () -> mailSender.send(message("a@example.com"), message("b@example.com"), message("c@example.com")));
+
+        assertEquals(1, failure.getFailedMessages().size());
+        verify(transportPool, times(1)).reconnect();
+        verify(reconnectedTransport, times(2)).sendMessage(any(), any());
+        assertEquals(SmtpCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void send_failsRestOfBatchWhenReconnectFails() throws MessagingException {
+        doThrow(new MessagingException("Connection reset")).when(transport).sendMessage(any(), any());
+        when(transport.isConnected()).thenReturn(false);
+        when(transportPool.reconnect()).thenThrow(new MessagingException("Connection refused"));
+
+        MailSendException failure = assertThrows(MailSendException.class, () -> mailSender.send(message("a@example.com"), message("b@example.com"), message("c@example.com"), message("d@example.com")));
+
+        assertEquals(4, failure.getFailedMessages().size());
+        verify(transport, times(1)).sendMessage(any(), any());
+        verify(transportPool, times(1)).reconnect();
+        verify(transportPool).closeQuietly(transport);
+        assertEquals(SmtpCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+}
@@ -0,0 +1,105 @@
+package com.heimdallauth.server.services.smtp;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmtpCircuitBreakerTest {
+    private static final String HOST = "smtp.example.com";
+
+    /**
+     * Opens after three consecutive failures. A zero open duration lets the trial send through right away.
+     */
+    private static SmtpCircuitBreaker circuitBreaker(Duration openDuration) {
+        return new SmtpCircuitBreaker(HOST, 3, openDuration);
+    }
+
+    private static SmtpCircuitBreaker openCircuitBreaker(Duration openDuration) {
+        SmtpCircuitBreaker circuitBreaker = circuitBreaker(openDuration);
+        for (int failure = 0; failure < 3; failure++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+            circuitBreaker.onFailure();
+        }
+        assertEquals(SmtpCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        return circuitBreaker;
+    }
+
+    @Test
+    void onFailure_staysClosedBelowThreshold() {
+        SmtpCircuitBreaker circuitBreaker = circuitBreaker(Duration.ofMinutes(1));
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertEquals(SmtpCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.isRejecting());
+    }
+
+    @Test
+    void onSuccess_resetsConsecutiveFailures() {
+        SmtpCircuitBreaker circuitBreaker = circuitBreaker(Duration.ofMinutes(1));
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertEquals(SmtpCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void onFailure_opensAtThresholdAndRejects() {
+        SmtpCircuitBreaker circuitBreaker = openCircuitBreaker(Duration.ofMinutes(1));
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        assertTrue(circuitBreaker.isRejecting());
+    }
+
+    @Test
+    void tryAcquirePermission_letsOneTrialThroughAfterOpenDuration() {
+        SmtpCircuitBreaker circuitBreaker = openCircuitBreaker(Duration.ZERO);
+        assertFalse(circuitBreaker.isRejecting());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertEquals(SmtpCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        assertTrue(circuitBreaker.isRejecting());
+    }
+
+    @Test
+    void onSuccess_closesAfterTrial() {
+        SmtpCircuitBreaker circuitBreaker = openCircuitBreaker(Duration.ZERO);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onSuccess();
+        assertEquals(SmtpCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void onFailure_reopensAfterFailedTrial() {
+        SmtpCircuitBreaker circuitBreaker = openCircuitBreaker(Duration.ZERO);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onFailure();
+        assertEquals(SmtpCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        // The open duration starts again, with a zero duration the next trial is due immediately
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertEquals(SmtpCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void releasePermission_handsTrialToNextCaller() {
+        SmtpCircuitBreaker circuitBreaker = openCircuitBreaker(Duration.ZERO);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.releasePermission();
+        assertEquals(SmtpCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void releasePermission_doesNotChangeClosedCircuit() {
+        SmtpCircuitBreaker circuitBreaker = circuitBreaker(Duration.ofMinutes(1));
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.releasePermission();
+        assertEquals(SmtpCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+}
@@ -0,0 +1,177 @@
+package com.heimdallauth.server.services.suppression;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigurationSetSuppressionsTest {
+    private static final String CONFIGURATION_SET_ID = UUID.randomUUID().toString();
+    private final List<SuppressionSnapshot> persistedSnapshots = new ArrayList<>();
+
+    private static long entryIdHash(UUID entryId) {
+        return SuppressionSnapshot.entryIdHash(entryId);
+    }
+
+    private static long fingerprint(String value) {
+        return SuppressionSnapshot.valueFingerprint(value);
+    }
+
+    /**
+     * Suppressions over a snapshot of the given entries, recording every snapshot handed to the persister.
+     */
+    private ConfigurationSetSuppressions suppressions(int compactionThreshold, List<UUID> entryIds, List<String> values) {
+        long[] entryIdHashes = entryIds.stream().mapToLong(ConfigurationSetSuppressionsTest::entryIdHash).toArray();
+        long[] entryFingerprints = values.stream().mapToLong(ConfigurationSetSuppressionsTest::fingerprint).toArray();
+        SuppressionSnapshot snapshot = SuppressionSnapshot.build(entryIdHashes, entryFingerprints, entryIds.size());
+        return new ConfigurationSetSuppressions(CONFIGURATION_SET_ID, snapshot, compactionThreshold, compactedSnapshot -> {
+            persistedSnapshots.add(compactedSnapshot);
+            return compactedSnapshot;
+        });
+    }
+
+    @Test
+    void contains_matchesAddressesAndDomains() {
+        ConfigurationSetSuppressions suppressions = suppressions(100, List.of(UUID.randomUUID(), UUID.randomUUID()), List.of("bounced@example.com", "example.net"));
+
+        assertTrue(suppressions.contains("bounced@example.com"));
+        assertTrue(suppressions.contains("  Bounced@Example.COM "));
+        assertTrue(suppressions.contains("anyone@example.net"));
+        assertFalse(suppressions.contains("delivered@example.com"));
+        assertFalse(suppressions.contains(null));
+    }
+
+    @Test
+    void add_suppressesRightAway() {
+        ConfigurationSetSuppressions suppressions = suppressions(100, List.of(), List.of());
+
+        suppressions.add(entryIdHash(UUID.randomUUID()), fingerprint("new@example.com"));
+
+        assertTrue(suppressions.contains("new@example.com"));
+        assertTrue(persistedSnapshots.isEmpty());
+    }
+
+    @Test
+    void add_entryAlreadyInSnapshotLeavesDeltaEmpty() {
+        UUID entryId = UUID.randomUUID();
+        ConfigurationSetSuppressions suppressions = suppressions(1, List.of(entryId), List.of("bounced@example.com"));
+
+        suppressions.add(entryIdHash(entryId), fingerprint("bounced@example.com"));
+        suppressions.add(entryIdHash(entryId), fingerprint("bounced@example.com"));
+
+        assertTrue(persistedSnapshots.isEmpty());
+        assertTrue(suppressions.contains("bounced@example.com"));
+    }
+
+    @Test
+    void remove_stopsMatchingRemovedValue() {
+        UUID removedEntryId = UUID.randomUUID();
+        ConfigurationSetSuppressions suppressions = suppressions(100, List.of(removedEntryId, UUID.randomUUID()), List.of("bounced@example.com", "example.net"));
+
+        suppressions.remove(entryIdHash(removedEntryId));
+
+        assertFalse(suppressions.contains("bounced@example.com"));
+        assertTrue(suppressions.contains("anyone@example.net"));
+    }
+
+    @Test
+    void remove_keepsValueOfRemainingEntryWithSameValue() {
+        UUID removedEntryId = UUID.randomUUID();
+        UUID remainingEntryId = UUID.randomUUID();
+        ConfigurationSetSuppressions suppressions = suppressions(100, List.of(removedEntryId, remainingEntryId), List.of("bounced@example.com", "bounced@example.com"));
+
+        suppressions.remove(entryIdHash(removedEntryId));
+        assertTrue(suppressions.contains("bounced@example.com"));
+
+        suppressions.remove(entryIdHash(remainingEntryId));
+        assertFalse(suppressions.contains("bounced@example.com"));
+    }
+
+    @Test
+    void remove_keepsValueOfAddedEntryWithSameValue() {
+        UUID removedEntryId = UUID.randomUUID();
+        ConfigurationSetSuppressions suppressions = suppressions(100, List.of(removedEntryId), List.of("bounced@example.com"));
+
+        suppressions.add(entryIdHash(UUID.randomUUID()), fingerprint("bounced@example.com"));
+        suppressions.remove(entryIdHash(removedEntryId));
+
+        assertTrue(suppressions.contains("bounced@example.com"));
+    }
+
+    @Test
+    void remove_addedEntryStopsMatching() {
+        UUID addedEntryId = UUID.randomUUID();
+        ConfigurationSetSuppressions suppressions = suppressions(100, List.of(), List.of());
+
+        suppressions.add(entryIdHash(addedEntryId), fingerprint("new@example.com"));
+        suppressions.remove(entryIdHash(addedEntryId));
+
+        assertFalse(suppressions.contains("new@example.com"));
+    }
+
+    @Test
+    void remove_unknownEntryChangesNothing() {
+        ConfigurationSetSuppressions suppressions = suppressions(1, List.of(UUID.randomUUID()), List.of("bounced@example.com"));
+
+        suppressions.remove(entryIdHash(UUID.randomUUID()));
+
+        assertTrue(persistedSnapshots.isEmpty());
+        assertTrue(suppressions.contains("bounced@example.com"));
+    }
+
+    @Test
+    void compact_foldsDeltaIntoPersistedSnapshot() {
+        UUID removedEntryId = UUID.randomUUID();
+        UUID keptEntryId = UUID.randomUUID();
+        UUID addedEntryId = UUID.randomUUID();
+        ConfigurationSetSuppressions suppressions = suppressions(3, List.of(removedEntryId, keptEntryId), List.of("bounced@example.com", "example.net"));
+
+        suppressions.add(entryIdHash(addedEntryId), fingerprint("new@example.com"));
+        suppressions.remove(entryIdHash(removedEntryId));
+        assertTrue(persistedSnapshots.isEmpty());
+        suppressions.add(entryIdHash(UUID.randomUUID()), fingerprint("example.org"));
+
+        assertEquals(1, persistedSnapshots.size());
+        SuppressionSnapshot compactedSnapshot = suppressions.snapshot();
+        assertSame(persistedSnapshots.getFirst(), compactedSnapshot);
+        assertEquals(3, compactedSnapshot.entryCount());
+        assertEquals(-1, compactedSnapshot.findEntry(entryIdHash(removedEntryId)));
+        assertTrue(compactedSnapshot.findEntry(entryIdHash(keptEntryId)) >= 0);
+        assertTrue(compactedSnapshot.findEntry(entryIdHash(addedEntryId)) >= 0);
+        assertFalse(suppressions.contains("bounced@example.com"));
+        assertTrue(suppressions.contains("anyone@example.net"));
+        assertTrue(suppressions.contains("new@example.com"));
+        assertTrue(suppressions.contains("anyone@example.org"));
+    }
+
+    @Test
+    void compact_appliesRemovalsAfterCompaction() {
+        UUID addedEntryId = UUID.randomUUID();
+        ConfigurationSetSuppressions suppressions = suppressions(1, List.of(), List.of());
+
+        suppressions.add(entryIdHash(addedEntryId), fingerprint("new@example.com"));
+        assertEquals(1, suppressions.snapshot().entryCount());
+
+        suppressions.remove(entryIdHash(addedEntryId));
+
+        assertEquals(2, persistedSnapshots.size());
+        assertEquals(0, suppressions.snapshot().entryCount());
+        assertFalse(suppressions.contains("new@example.com"));
+    }
+
+    @Test
+    void compact_reAddedEntryReplacesSnapshotEntry() {
+        UUID entryId = UUID.randomUUID();
+        ConfigurationSetSuppressions suppressions = suppressions(2, List.of(entryId), List.of("bounced@example.com"));
+
+        suppressions.remove(entryIdHash(entryId));
+        suppressions.add(entryIdHash(entryId), fingerprint("bounced@example.com"));
+
+        assertEquals(1, persistedSnapshots.size());
+        assertEquals(1, suppressions.snapshot().entryCount());
+        assertTrue(suppressions.contains("bounced@example.com"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.heimdallauth.server.services.suppression;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuppressionSnapshotTest {
+    private static final List<String> SUPPRESSED_VALUES = List.of("bounced@example.com", "complained@example.org", "example.net", "bounced@example.com");
+
+    @TempDir
+    Path snapshotDirectory;
+
+    private final UUID[] entryIds = SUPPRESSED_VALUES.stream().map(value -> UUID.randomUUID()).toArray(UUID[]::new);
+
+    private long[] entryIdHashes() {
+        return Arrays.stream(entryIds).mapToLong(SuppressionSnapshot::entryIdHash).toArray();
+    }
+
+    private static long[] entryFingerprints() {
+        return SUPPRESSED_VALUES.stream().mapToLong(SuppressionSnapshot::valueFingerprint).toArray();
+    }
+
+    private SuppressionSnapshot snapshot() {
+        return SuppressionSnapshot.build(entryIdHashes(), entryFingerprints(), SUPPRESSED_VALUES.size());
+    }
+
+    private static void assertFindsEveryEntry(SuppressionSnapshot snapshot, UUID[] entryIds) {
+        for (int entry = 0; entry < entryIds.length; entry++) {
+            int entryIndex = snapshot.findEntry(SuppressionSnapshot.entryIdHash(entryIds[entry]));
+            assertTrue(entryIndex >= 0, "entry " + entry);
+            assertEquals(SuppressionSnapshot.valueFingerprint(SUPPRESSED_VALUES.get(entry)), snapshot.entryFingerprintAt(entryIndex));
+        }
+        assertEquals(-1, snapshot.findEntry(SuppressionSnapshot.entryIdHash(UUID.randomUUID())));
+    }
+
+    @Test
+    void build_containsEveryFingerprint() {
+        SuppressionSnapshot snapshot = snapshot();
+        for (String suppressedValue : SUPPRESSED_VALUES) {
+            assertTrue(snapshot.containsFingerprint(SuppressionSnapshot.valueFingerprint(suppressedValue)), suppressedValue);
+        }
+        assertFalse(snapshot.containsFingerprint(SuppressionSnapshot.valueFingerprint("delivered@example.com")));
+        assertFalse(snapshot.containsFingerprint(SuppressionSnapshot.valueFingerprint("example.com")));
+    }
+
+    @Test
+    void build_keepsEveryEntryOfDuplicateValues() {
+        SuppressionSnapshot snapshot = snapshot();
+        assertEquals(SUPPRESSED_VALUES.size(), snapshot.entryCount());
+        assertFindsEveryEntry(snapshot, entryIds);
+    }
+
+    @Test
+    void build_onlyUsesEntryCountEntries() {
+        SuppressionSnapshot snapshot = SuppressionSnapshot.build(Arrays.copyOf(entryIdHashes(), 8), Arrays.copyOf(entryFingerprints(), 8), SUPPRESSED_VALUES.size());
+        assertEquals(SUPPRESSED_VALUES.size(), snapshot.entryCount());
+        assertFindsEveryEntry(snapshot, entryIds);
+    }
+
+    @Test
+    void entryDigest_doesNotDependOnEntryOrder() {
+        long[] reversedIdHashes = entryIdHashes();
+        long[] reversedFingerprints = entryFingerprints();
+        for (int low = 0, high = reversedIdHashes.length - 1; low < high; low++, high--) {
+            long idHash = reversedIdHashes[low];
+            reversedIdHashes[low] = reversedIdHashes[high];
+            reversedIdHashes[high] = idHash;
+            long fingerprint = reversedFingerprints[low];
+            reversedFingerprints[low] = reversedFingerprints[high];
+            reversedFingerprints[high] = fingerprint;
+        }
+        SuppressionSnapshot reversed = SuppressionSnapshot.build(reversedIdHashes, reversedFingerprints, reversedIdHashes.length);
+        assertEquals(snapshot().entryDigest(), reversed.entryDigest());
+
+        SuppressionSnapshot withoutLastEntry = SuppressionSnapshot.build(entryIdHashes(), entryFingerprints(), SUPPRESSED_VALUES.size() - 1);
+        assertNotEquals(snapshot().entryDigest(), withoutLastEntry.entryDigest());
+    }
+
+    @Test
+    void persist_roundTripsThroughMappedFile() throws IOException {
+        SuppressionSnapshot snapshot = snapshot();
+        Path snapshotFile = snapshotDirectory.resolve("configuration-set.snapshot");
+
+        SuppressionSnapshot persisted = snapshot.persist(snapshotFile);
+        SuppressionSnapshot reopened = SuppressionSnapshot.open(snapshotFile);
+
+        for (SuppressionSnapshot mapped : List.of(persisted, reopened)) {
+            assertEquals(snapshot.entryCount(), mapped.entryCount());
+            assertEquals(snapshot.entryDigest(), mapped.entryDigest());
+            assertTrue(mapped.containsFingerprint(SuppressionSnapshot.valueFingerprint("example.net")));
+            assertFindsEveryEntry(mapped, entryIds);
+        }
+    }
+
+    @Test
+    void persist_replacesExistingSnapshot() throws IOException {
+        Path snapshotFile = snapshotDirectory.resolve("configuration-set.snapshot");
+        SuppressionSnapshot.build(new long[0], new long[0], 0).persist(snapshotFile);
+
+        SuppressionSnapshot replaced = snapshot().persist(snapshotFile);
+        assertEquals(SUPPRESSED_VALUES.size(), replaced.entryCount());
+        try (var files = Files.list(snapshotDirectory)) {
+            assertEquals(List.of(snapshotFile), files.toList());
+        }
+    }
+
+    @Test
+    void open_rejectsInvalidFiles() throws IOException {
+        Path snapshotFile = snapshotDirectory.resolve("configuration-set.snapshot");
+        snapshot().persist(snapshotFile);
+        byte[] snapshotBytes = Files.readAllBytes(snapshotFile);
+
+        Path truncatedFile = Files.write(snapshotDirectory.resolve("truncated.snapshot"), Arrays.copyOf(snapshotBytes, snapshotBytes.length - 8));
+        assertThrows(IOException.class, () -> SuppressionSnapshot.open(truncatedFile));
+
+        byte[] corruptedBytes = snapshotBytes.clone();
+        corruptedBytes[0] ^= 0x01;
+        Path corruptedFile = Files.write(snapshotDirectory.resolve("corrupted.snapshot"), corruptedBytes);
+        assertThrows(IOException.class, () -> SuppressionSnapshot.open(corruptedFile));
+
+        Path emptyFile = Files.write(snapshotDirectory.resolve("empty.snapshot"), new byte[0]);
+        assertThrows(IOException.class, () -> SuppressionSnapshot.open(emptyFile));
+    }
+
+    @Test
+    void valueFingerprint_ignoresCaseAndSeparatesAddressesFromDomains() {
+        assertEquals(SuppressionSnapshot.valueFingerprint("bounced@example.com"), SuppressionSnapshot.valueFingerprint("Bounced@Example.COM"));
+        assertEquals(SuppressionSnapshot.domainFingerprint("example.com", 0, 11), SuppressionSnapshot.domainFingerprint("user@example.com", 5, 16));
+        assertNotEquals(SuppressionSnapshot.addressFingerprint("example.com", 0, 11), SuppressionSnapshot.domainFingerprint("example.com", 0, 11));
+    }
+
+    @Test
+    void entryIdHash_ofValueIsStable() {
+        assertEquals(SuppressionSnapshot.entryIdHash("bounced@example.com"), SuppressionSnapshot.entryIdHash("bounced@example.com"));
+        assertNotEquals(SuppressionSnapshot.entryIdHash("bounced@example.com"), SuppressionSnapshot.entryIdHash("example.com"));
+    }
+}